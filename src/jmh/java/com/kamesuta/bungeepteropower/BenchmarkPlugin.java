@@ -0,0 +1,36 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The plugin shared by the benchmarks.
+ * No panel is running, so the benchmarks must not send requests.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkPlugin {
+    public TestPlugin testPlugin;
+    public BungeePteroPower plugin;
+
+    @Setup
+    public void setUp() throws IOException {
+        File dataFolder = Files.createTempDirectory("BungeePteroPower-benchmark").toFile();
+        testPlugin = new TestPlugin(dataFolder, null, "pterodactyl");
+        plugin = testPlugin.plugin;
+
+        // Do not measure the console output
+        BungeePteroPower.logger.setUseParentHandlers(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        testPlugin.close();
+    }
+}
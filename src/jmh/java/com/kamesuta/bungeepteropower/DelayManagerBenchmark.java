@@ -0,0 +1,67 @@
+package com.kamesuta.bungeepteropower;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of arming and cancelling idle stop timers while players move between servers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DelayManagerBenchmark {
+    private static final Runnable NOTHING = () -> {
+    };
+
+    /**
+     * The number of servers the timers are spread over
+     */
+    @Param({"1", "64"})
+    public int servers;
+
+    private DelayManager delay;
+    private String[] serverNames;
+    private int next;
+
+    @Setup
+    public void setUp(BenchmarkPlugin env) {
+        delay = env.plugin.delay;
+        serverNames = new String[servers];
+        for (int i = 0; i < servers; i++) {
+            serverNames[i] = "server" + i;
+        }
+    }
+
+    @Benchmark
+    public void armThenCancel() {
+        String serverName = serverNames[next++ % serverNames.length];
+        delay.stopAfterWhile(serverName, 60, NOTHING);
+        delay.cancelStop(serverName);
+    }
+
+    @Benchmark
+    public void rearm() {
+        // Replaces the timer armed by the previous call for the same server
+        String serverName = serverNames[next++ % serverNames.length];
+        delay.stopAfterWhile(serverName, 60, NOTHING);
+    }
+
+    @Benchmark
+    public void cancelUnarmed() {
+        delay.cancelStop("unarmed");
+    }
+}
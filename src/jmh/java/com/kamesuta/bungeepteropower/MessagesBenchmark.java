@@ -0,0 +1,53 @@
+package com.kamesuta.bungeepteropower;
+
+import net.md_5.bungee.api.chat.BaseComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of translating messages and building chat components.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessagesBenchmark {
+    private Messages messages;
+
+    @Setup
+    public void setUp(BenchmarkPlugin env) {
+        messages = env.plugin.messages;
+    }
+
+    @Benchmark
+    public String getMessage() {
+        return messages.getMessage("join_autostart_title", "lobby");
+    }
+
+    @Benchmark
+    public String getMissingMessage() {
+        return messages.getMessage("no_such_key", "lobby");
+    }
+
+    @Benchmark
+    public BaseComponent[] success() {
+        return messages.success("server_start", "lobby");
+    }
+
+    @Benchmark
+    public BaseComponent[] warning() {
+        return messages.warning("server_start_warning", "lobby", 60);
+    }
+}
@@ -0,0 +1,89 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.ServerConnectEvent;
+import net.md_5.bungee.api.event.ServerSwitchEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the listener for a player connecting to and leaving a managed server.
+ * The power status is served from the status cache, so no request is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PlayerListenerBenchmark {
+    private PlayerListener listener;
+    private ServerConnectEvent connectToOccupied;
+    private ServerConnectEvent connectToEmptyRunning;
+    private ServerConnectEvent connectWithoutPermission;
+    private ServerSwitchEvent leaveAsLastPlayer;
+    private ServerSwitchEvent leaveWithOthers;
+
+    @Setup
+    public void setUp(BenchmarkPlugin env) {
+        listener = new PlayerListener();
+
+        ProxiedPlayer player = Stubs.player("player", true);
+        ProxiedPlayer other = Stubs.player("other", true);
+        ProxiedPlayer guest = Stubs.player("guest", false);
+
+        // "lobby" and "minigame" are managed servers in the config
+        ServerInfo occupied = Stubs.server("minigame", List.of(other));
+        ServerInfo empty = Stubs.server("lobby", Collections.emptyList());
+        ServerInfo onlyPlayer = Stubs.server("lobby", List.of(player));
+
+        // The empty server is running
+        env.plugin.statusCache.put("lobby", PowerStatus.RUNNING, 3600, System.nanoTime());
+
+        connectToOccupied = new ServerConnectEvent(player, occupied, ServerConnectEvent.Reason.COMMAND, null);
+        connectToEmptyRunning = new ServerConnectEvent(player, empty, ServerConnectEvent.Reason.COMMAND, null);
+        connectWithoutPermission = new ServerConnectEvent(guest, empty, ServerConnectEvent.Reason.COMMAND, null);
+        leaveAsLastPlayer = new ServerSwitchEvent(player, onlyPlayer);
+        leaveWithOthers = new ServerSwitchEvent(player, occupied);
+    }
+
+    @Benchmark
+    public void connectToOccupiedServer() {
+        listener.onServerConnect(connectToOccupied);
+    }
+
+    @Benchmark
+    public void connectToEmptyRunningServer() {
+        listener.onServerConnect(connectToEmptyRunning);
+    }
+
+    @Benchmark
+    public void connectWithoutPermission() {
+        listener.onServerConnect(connectWithoutPermission);
+    }
+
+    @Benchmark
+    public void leaveAsLastPlayer() {
+        // Arms the idle stop timer (and cancels the one armed by the previous call)
+        listener.onServerSwitch(leaveAsLastPlayer);
+    }
+
+    @Benchmark
+    public void leaveWithOtherPlayers() {
+        listener.onServerSwitch(leaveWithOthers);
+    }
+}
@@ -0,0 +1,90 @@
+package com.kamesuta.bungeepteropower;
+
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Lightweight proxy objects for the benchmarks.
+ * Only the methods used by the listener return values, all other methods do nothing.
+ */
+public final class Stubs {
+    private Stubs() {
+    }
+
+    /**
+     * Create a player
+     *
+     * @param name          The name of the player
+     * @param hasPermission The result of every permission check
+     * @return The player
+     */
+    public static ProxiedPlayer player(String name, boolean hasPermission) {
+        UUID uniqueId = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return (ProxiedPlayer) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{ProxiedPlayer.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "toString":
+                    return name;
+                case "getUniqueId":
+                    return uniqueId;
+                case "hasPermission":
+                    return hasPermission;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Create a server
+     *
+     * @param name    The name of the server
+     * @param players The players on the server
+     * @return The server
+     */
+    public static ServerInfo server(String name, Collection<ProxiedPlayer> players) {
+        return (ServerInfo) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{ServerInfo.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "toString":
+                    return name;
+                case "getPlayers":
+                    return players;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Get the default return value of a method
+     *
+     * @param method The method
+     * @return false or 0 for primitives, otherwise null
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of reading the power status from the panel responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StatusParsingBenchmark {
+    /**
+     * GET /api/client/servers/{id}/resources
+     */
+    private static final byte[] PTERODACTYL_RESOURCES = ("{\"object\":\"stats\",\"attributes\":{"
+            + "\"current_state\":\"running\",\"is_suspended\":false,"
+            + "\"resources\":{\"memory_bytes\":1073741824,\"cpu_absolute\":12.5,\"disk_bytes\":2147483648,"
+            + "\"network_rx_bytes\":123456,\"network_tx_bytes\":654321,\"uptime\":3600000}}}").getBytes(StandardCharsets.UTF_8);
+    /**
+     * GET /api/v2/servers/{id}/stats
+     */
+    private static final byte[] CRAFTY_STATS = ("{\"status\":\"ok\",\"data\":{"
+            + "\"stats_id\":1234,\"created\":\"2024-01-01T00:00:00\",\"server_id\":{\"server_id\":\"1\",\"server_name\":\"lobby\"},"
+            + "\"started\":\"2024-01-01 00:00:00\",\"running\":true,\"cpu\":12.5,\"mem\":\"1.0GB\",\"mem_percent\":25,"
+            + "\"world_name\":\"world\",\"world_size\":\"100MB\",\"server_port\":25565,\"int_ping_results\":\"True\","
+            + "\"online\":3,\"max\":20,\"players\":\"[]\",\"desc\":\"A Minecraft Server\",\"version\":\"1.20.4\","
+            + "\"updating\":false,\"waiting_start\":false,\"first_run\":false,\"crashed\":false,\"downloading\":false}}").getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public String pterodactylState() throws IOException {
+        return ResponseBodies.readField(new ByteArrayInputStream(PTERODACTYL_RESOURCES), "attributes", "current_state");
+    }
+
+    @Benchmark
+    public String pterodactylStateFromTree() {
+        // Parsing the whole tree, for comparison
+        return JsonParser.parseString(new String(PTERODACTYL_RESOURCES, StandardCharsets.UTF_8))
+                .getAsJsonObject().getAsJsonObject("attributes").get("current_state").getAsString();
+    }
+
+    @Benchmark
+    public String craftyRunning() throws IOException {
+        return ResponseBodies.readField(new ByteArrayInputStream(CRAFTY_STATS), "data", "running");
+    }
+}
@@ -4,11 +4,14 @@ import com.kamesuta.bungeepteropower.api.BungeePteroPowerAPI;
 import com.kamesuta.bungeepteropower.api.PowerController;
 import com.kamesuta.bungeepteropower.power.PterodactylController;
 import com.kamesuta.bungeepteropower.power.CraftyController;
+import com.kamesuta.bungeepteropower.power.RetryingPowerController;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.api.plugin.PluginManager;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,10 +43,62 @@ public final class BungeePteroPower extends Plugin implements BungeePteroPowerAP
      * Delayed stop task manager
      */
     public DelayManager delay;
+    /**
+     * Lifecycle state of the managed servers
+     */
+    public final ServerLifecycle lifecycle = new ServerLifecycle();
+    /**
+     * Server status cache
+     */
+    public final StatusCache statusCache = new StatusCache();
+    /**
+     * Background status checker
+     */
+    public final StatusSweeper statusSweeper = new StatusSweeper();
+    /**
+     * Shared waits for servers to become ready
+     */
+    public final ReadinessWaiter readiness = new ReadinessWaiter();
+    /**
+     * Startup check of the running servers
+     */
+    public final Reconciler reconciler = new Reconciler();
+    /**
+     * Starts servers ahead of the predicted joins
+     */
+    public final Prewarmer prewarmer = new Prewarmer();
+    /**
+     * Keeps members of the server groups running without players
+     */
+    public final StandbyPool standby = new StandbyPool();
+    /**
+     * Scales the server groups with the number of players
+     */
+    public final GroupAutoscaler autoscaler = new GroupAutoscaler();
+    /**
+     * Limits the number of servers booting at the same time
+     */
+    public final StartLimiter startLimiter = new StartLimiter();
+    /**
+     * Keeps the servers within the memory budget of their node
+     */
+    public final CapacityManager capacity = new CapacityManager();
+    /**
+     * Permission cache of the online players
+     */
+    public final PermissionCache permissionCache = new PermissionCache();
     /**
      * Power controllers
      */
     public Map<String, PowerController> powerControllers;
+    /**
+     * Power controllers for the panel profiles in the config
+     */
+    public final Map<String, PowerController> panelControllers = new ConcurrentHashMap<>();
+    /**
+     * The power controllers wrapped to retry failed power signals, keyed by the wrapped power controller
+     */
+    public final Map<PowerController, PowerController> retryingControllers = new ConcurrentHashMap<>();
     /**
      * Statistics
      */
@@ -103,6 +158,23 @@ public final class BungeePteroPower extends Plugin implements BungeePteroPowerAP
         // Statistics
         statistics = new Statistics();
         statistics.register();
+
+        // Resume the stop timers that were pending when the proxy stopped
+        delay.restore();
+        // Schedule the stop of the servers that are running without players (e.g. left up by a crashed proxy)
+        reconciler.reconcile();
+
+        // Start checking the server status in the background
+        statusSweeper.start();
+
+        // Start servers ahead of the times players usually join them
+        prewarmer.load();
+        prewarmer.start();
+
+        // Keep the warm standby members of the server groups running
+        standby.start();
+        // Scale the server groups with the number of players
+        autoscaler.start();
     }
 
     /**
@@ -123,23 +195,132 @@ public final class BungeePteroPower extends Plugin implements BungeePteroPowerAP
         }
         // Load messages.yml
         messages = Messages.load(config.language, resourceMessages);
+
+        // Starts in progress keep going, but the next start request uses the new config
+        ServerController.clearPendingStarts(false);
+
+        // Forget statuses and permissions cached with the old config
+        statusCache.clear();
+        permissionCache.clear();
+
+        // Create the power controllers for the panel profiles
+        reloadPanelControllers();
+
+        // Let the power controllers recreate their resources with the new config
+        panelControllers.values().forEach(PowerController::reload);
+        if (powerControllers != null) {
+            powerControllers.values().forEach(PowerController::reload);
+            // Restart the background status check with the new config
+            statusSweeper.start();
+            // Schedule the stop of the servers that are running without players
+            reconciler.reconcile();
+            // Restart the prediction with the new config
+            prewarmer.start();
+            standby.start();
+            autoscaler.start();
+        }
+    }
+
+    /**
+     * Create, keep or remove the power controllers of the panel profiles according to the config.
+     * Each panel profile has its own power controller with its own connection pool.
+     */
+    private void reloadPanelControllers() {
+        // Remove the controllers of panels that are removed or changed the type
+        panelControllers.entrySet().removeIf(entry -> {
+            Config.PanelConfig panel = config.getPanelConfig(entry.getKey());
+            boolean keep = panel != null && panel.type.equals(getPanelType(entry.getValue()));
+            if (!keep) {
+                entry.getValue().close();
+                retryingControllers.remove(entry.getValue());
+            }
+            return !keep;
+        });
+
+        // Create the controllers of new panels
+        for (String panelName : config.getPanelNames()) {
+            // The default panels are handled by the registered power controllers
+            if (panelName.equals("pterodactyl") || panelName.equals("crafty")) {
+                continue;
+            }
+            Config.PanelConfig panel = config.getPanelConfig(panelName);
+            if (panelControllers.containsKey(panelName)) {
+                continue;
+            }
+            switch (panel.type) {
+                case "pterodactyl":
+                    panelControllers.put(panelName, new PterodactylController(panelName));
+                    break;
+                case "crafty":
+                    panelControllers.put(panelName, new CraftyController(panelName));
+                    break;
+                default:
+                    logger.warning("Unsupported panel type: " + panel.type + " for panel: " + panelName);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Get the panel type of a built-in power controller
+     *
+     * @param controller The power controller
+     * @return The panel type, or null if it is not a built-in power controller
+     */
+    private static String getPanelType(PowerController controller) {
+        if (controller instanceof PterodactylController) {
+            return "pterodactyl";
+        } else if (controller instanceof CraftyController) {
+            return "crafty";
+        }
+        return null;
     }
 
     @Override
     public void onDisable() {
         // Plugin shutdown logic
+        statusSweeper.stop();
+        prewarmer.stop();
+        standby.stop();
+        autoscaler.stop();
+        if (delay != null) {
+            delay.close();
+        }
+        // Stop waiting for the servers that are being started
+        ServerController.clearPendingStarts(true);
+        // Close the HTTP clients of the power controllers
+        panelControllers.values().forEach(PowerController::close);
+        if (powerControllers != null) {
+            powerControllers.values().forEach(PowerController::close);
+        }
     }
 
     @Override
     public void registerPowerController(String name, PowerController controller) {
         Objects.requireNonNull(name, "Name cannot be null");
         Objects.requireNonNull(controller, "Controller cannot be null");
-        powerControllers.put(name, controller);
+        PowerController previous = powerControllers.put(name, controller);
+        if (previous != null) {
+            retryingControllers.remove(previous);
+        }
+        retryingControllers.put(controller, new RetryingPowerController(controller));
     }
 
     @Override
     public void unregisterPowerController(String name) {
         Objects.requireNonNull(name, "Name cannot be null");
-        powerControllers.remove(name);
+        PowerController removed = powerControllers.remove(name);
+        if (removed != null) {
+            retryingControllers.remove(removed);
+        }
+    }
+
+    @Override
+    public void invalidatePermissions(@Nullable UUID playerId) {
+        if (playerId == null) {
+            permissionCache.clear();
+        } else {
+            permissionCache.invalidate(playerId);
+        }
     }
 }
@@ -0,0 +1,157 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Keeps the memory of the servers on each node within the budget of the node.
+ * When starting a server would go over the budget, the empty running servers on the same node
+ * that were used the longest time ago are stopped first.
+ * The warm standby members of the groups are never stopped, since the pool would only start a replacement on the same node.
+ */
+public class CapacityManager {
+    /**
+     * The states in which a server holds its memory
+     */
+    private static final Set<ServerLifecycle.State> USING_MEMORY = EnumSet.of(
+            ServerLifecycle.State.STARTING, ServerLifecycle.State.RUNNING, ServerLifecycle.State.IDLE_COUNTDOWN,
+            ServerLifecycle.State.STOPPING, ServerLifecycle.State.RESTORING);
+    /**
+     * The states in which a server can be stopped to make room
+     */
+    private static final Set<ServerLifecycle.State> PREEMPTIBLE = EnumSet.of(
+            ServerLifecycle.State.RUNNING, ServerLifecycle.State.IDLE_COUNTDOWN);
+
+    /**
+     * The last time (epoch millis) a player joined or left each server, or the server finished starting
+     */
+    private final ConcurrentMap<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    /**
+     * Record that a player joined or left the server, or that the server finished starting
+     *
+     * @param serverName The name of the server
+     */
+    public void touch(String serverName) {
+        lastUsed.put(serverName, System.currentTimeMillis());
+    }
+
+    /**
+     * Make room on the node of the server before it is started.
+     * If the server does not fit in the budget of its node, the least recently used empty running servers on the node are stopped.
+     * If there are not enough of them, the start goes ahead anyway and the panel decides.
+     *
+     * @param serverName The name of the server to start
+     * @param server     The server configuration
+     * @return A future that completes when the stopped servers are offline, or right away if nothing needs to be stopped
+     */
+    public CompletableFuture<Void> makeRoom(String serverName, Config.ServerConfig server) {
+        String node = plugin.config.getNodeName(server);
+        int budget = plugin.config.getNodeMemory(node);
+        if (server.memory <= 0 || budget <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<String> victims = new ArrayList<>();
+        synchronized (this) {
+            int used = getUsedMemory(node, serverName);
+            int needed = used + server.memory - budget;
+            if (needed <= 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // Least recently used first, without the warm standby members of the groups
+            List<String> candidates = new ArrayList<>();
+            for (String name : plugin.config.getServerNames()) {
+                Config.ServerConfig candidate = plugin.config.getServerConfig(name);
+                if (name.equals(serverName) || candidate.memory <= 0 || !node.equals(plugin.config.getNodeName(candidate))
+                        || !PREEMPTIBLE.contains(plugin.lifecycle.get(name))) {
+                    continue;
+                }
+                ServerInfo serverInfo = plugin.getProxy().getServerInfo(name);
+                if (serverInfo != null && !serverInfo.getPlayers().isEmpty()) {
+                    continue;
+                }
+                if (plugin.standby.keepWarm(name)) {
+                    continue;
+                }
+                candidates.add(name);
+            }
+            candidates.sort(Comparator.comparingLong(name -> lastUsed.getOrDefault(name, 0L)));
+
+            int freed = 0;
+            for (String name : candidates) {
+                if (freed >= needed) {
+                    break;
+                }
+                // Claim the server, so that a join or another start does not take it at the same time
+                if (plugin.lifecycle.transition(name, PREEMPTIBLE, ServerLifecycle.State.STOPPING)) {
+                    victims.add(name);
+                    freed += plugin.config.getServerConfig(name).memory;
+                }
+            }
+
+            logger.info(String.format("Node %s: %d/%d MB used, starting server %s (%d MB) needs %d MB more, stopping %s",
+                    node, used, budget, serverName, server.memory, needed, victims.isEmpty() ? "nothing" : String.join(", ", victims)));
+            if (freed < needed) {
+                logger.warning(String.format("Node %s does not have enough idle servers to make room for server %s (%d MB short), starting it anyway",
+                        node, serverName, needed - freed));
+                plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.CAPACITY_SHORTAGE);
+            }
+        }
+
+        // Stop the servers and wait until they are offline
+        List<CompletableFuture<Void>> stopped = new ArrayList<>();
+        for (String name : victims) {
+            Config.ServerConfig victim = plugin.config.getServerConfig(name);
+            Long used = lastUsed.get(name);
+            String lastUse = used != null ? TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - used) + " min ago" : "never";
+            logger.info(String.format("Stopping server %s (%d MB, last used %s) to make room for server %s",
+                    name, victim.memory, lastUse, serverName));
+            plugin.delay.cancelStop(name);
+            ServerController.sendPowerSignal(plugin.getProxy().getConsole(), name, victim, PowerSignal.STOP);
+            stopped.add(ServerController.waitUntil(name, victim.id, PowerStatus.OFFLINE)
+                    .exceptionally(e -> {
+                        logger.warning("Server " + name + " did not stop in time, starting server " + serverName + " anyway");
+                        return null;
+                    }));
+
+            // Record statistics
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.STOP_SERVER_PREEMPT);
+            plugin.statistics.startReasonRecorder.recordStop(name);
+        }
+        return CompletableFuture.allOf(stopped.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Get the memory used by the servers on a node
+     *
+     * @param node    The node name
+     * @param exclude The server not to count
+     * @return The used memory in MB
+     */
+    public int getUsedMemory(String node, String exclude) {
+        int used = 0;
+        for (String name : plugin.config.getServerNames()) {
+            Config.ServerConfig server = plugin.config.getServerConfig(name);
+            if (!name.equals(exclude) && node.equals(plugin.config.getNodeName(server)) && USING_MEMORY.contains(plugin.lifecycle.get(name))) {
+                used += server.memory;
+            }
+        }
+        return used;
+    }
+}
@@ -1,6 +1,9 @@
 package com.kamesuta.bungeepteropower;
 
 import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.power.RequestTemplate;
+import com.kamesuta.bungeepteropower.power.RetryingPowerController;
+import com.kamesuta.bungeepteropower.power.ServerRequests;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.config.ServerInfo;
@@ -15,6 +18,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -65,16 +69,130 @@ public class Config {
      * Send pings to the server synchronously
      */
     public final boolean useSynchronousPing;
+    /**
+     * The number of seconds a login is held while the status of the target server is checked
+     */
+    public final int synchronousPingTimeout;
+    /**
+     * What to do when the status check during login takes too long
+     * continue: Let the player in, and handle the status when it arrives
+     * disconnect: Disconnect the player with a message asking to reconnect
+     */
+    public final String synchronousPingOnTimeout;
     /**
      * Choose the method to check if a managed server is offline.
      * bungeecord: Use BungeeCord ping to check the server status
      * panel: Use the panel API to check the server status
      */
     public final String serverStatusCheckMethod;
+    /**
+     * The number of seconds to cache the checked server status
+     */
+    public final int statusCacheTtl;
+    /**
+     * The number of seconds to cache a failed server status check
+     */
+    public final int statusCacheFailureTtl;
+    /**
+     * The number of seconds between background status checks of all managed servers
+     */
+    public final int statusSweepInterval;
+    /**
+     * The maximum number of concurrent requests during a background status check
+     */
+    public final int statusSweepConcurrency;
+    /**
+     * The number of seconds to keep the checked ptero.* permissions of a player
+     */
+    public final int permissionCacheTtl;
+    /**
+     * Check all managed servers on startup and reload, and schedule the stop of the running servers without players
+     */
+    public final boolean reconcileOnStartup;
+    /**
+     * Start servers ahead of the times players usually join them
+     */
+    public final boolean prewarmEnabled;
+    /**
+     * The number of seconds ahead of the predicted join to start the server
+     */
+    public final int prewarmLeadTime;
+    /**
+     * The share of the past weeks with a join in the same half hour from which a server is started
+     */
+    public final double prewarmThreshold;
+    /**
+     * The maximum number of prewarm starts per server per day
+     */
+    public final int prewarmBudget;
+    /**
+     * The maximum number of servers booting at the same time, or 0 for no limit
+     */
+    public final int startLimitGlobal;
+    /**
+     * The maximum number of servers booting at the same time on one node, or 0 for no limit
+     */
+    public final int startLimitPerNode;
+    /**
+     * The memory budget in MB per node name
+     */
+    private final Map<String, Integer> nodeMemory;
     /**
      * Optional: Add custom HTTP headers (e.g., for authentication or other use cases)
      */
     public final Map<String, String> customHeaders;
+    /**
+     * The number of seconds to wait for a connection to the panel to be established
+     */
+    public final int httpConnectTimeout;
+    /**
+     * The number of seconds to wait for a response from the panel
+     */
+    public final int httpRequestTimeout;
+    /**
+     * The maximum number of threads each panel controller uses to process HTTP responses
+     */
+    public final int httpThreads;
+    /**
+     * The maximum number of requests per minute sent to a panel
+     */
+    public final int rateLimitRequestsPerMinute;
+    /**
+     * The number of requests that can be sent to a panel at once
+     */
+    public final int rateLimitBurst;
+    /**
+     * The number of consecutive failures after which requests to a panel are paused
+     */
+    public final int circuitBreakerFailureThreshold;
+    /**
+     * The number of seconds to pause requests to a panel that seems to be down
+     */
+    public final int circuitBreakerOpenDuration;
+    /**
+     * The maximum number of attempts to send a power signal or restore signal
+     */
+    public final int retryMaxAttempts;
+    /**
+     * The number of seconds to wait before the first retry
+     */
+    public final double retryInitialDelay;
+    /**
+     * The maximum number of seconds to wait between retries
+     */
+    public final double retryMaxDelay;
+    /**
+     * The factor by which the delay grows after each retry
+     */
+    public final double retryMultiplier;
+    /**
+     * The response codes that are retried
+     */
+    public final Set<Integer> retryableStatusCodes;
+    /**
+     * The exception class names that are retried (including subclasses)
+     */
+    public final Set<String> retryableExceptions;
     /**
      * The number of seconds the plugin will try to connect the player to the desired server
      * Set this to the maximum time the server can take to start
@@ -90,6 +208,18 @@ public class Config {
      * The number of seconds between pings to check the server status
      */
     public final int pingInterval;
+    /**
+     * Plan the polls of startup and restore waits from how long the server took before
+     */
+    public final boolean adaptivePollingEnabled;
+    /**
+     * The minimum number of seconds between adaptive polls
+     */
+    public final double adaptivePollingMinInterval;
+    /**
+     * The maximum number of seconds between adaptive polls
+     */
+    public final double adaptivePollingMaxInterval;
     /**
      * Pterodactyl API URL
      */
@@ -98,6 +228,10 @@ public class Config {
      * Pterodactyl API Key
      */
     public final String pterodactylApiKey;
+    /**
+     * Receive the server status over the Pterodactyl websocket instead of polling
+     */
+    public final boolean pterodactylLiveStatus;
     /**
      * Crafty-4 API URL
      */
@@ -110,6 +244,30 @@ public class Config {
      * Per-server configuration
      */
     private final Map<String, ServerConfig> serverMap;
+    /**
+     * Panel profiles (including the default "pterodactyl" and "crafty" panels)
+     */
+    private final Map<String, PanelConfig> panelMap;
+    /**
+     * Server groups of interchangeable servers
+     */
+    private final Map<String, GroupConfig> groupMap;
+    /**
+     * The group name per member server name
+     */
+    private final Map<String, String> serverGroups;
+    /**
+     * Precompiled panel requests per Bungeecord server name
+     */
+    private final Map<String, ServerRequests> requestMap;
+    /**
+     * The index of each server, used as the bit layout of the permission cache
+     */
+    private final Map<String, Integer> serverIndex;
+    /**
+     * Interned permission nodes, indexed by {@link #getPermissionBit(int, PermissionCache.Node)}
+     */
+    private final String[] permissionNodes;
 
     /**
      * Per-server configuration
@@ -130,10 +288,102 @@ public class Config {
          */
         public final @Nullable String backupId;
 
-        public ServerConfig(String id, int timeout, String backupId) {
+        /**
+         * The name of the panel profile this server is managed by
+         * If this is not set, the default power controller (powerControllerType) is used
+         */
+        public final @Nullable String panel;
+
+        /**
+         * The maximum number of prewarm starts per day for this server
+         * If this is negative, prewarm.budget is used
+         */
+        public final int prewarmBudget;
+
+        /**
+         * The name of the node (machine) the server runs on, for startLimit.perNode
+         * If this is not set, all servers of the same panel are considered to be on the same node
+         */
+        public final @Nullable String node;
+
+        /**
+         * The memory the server uses in MB, counted against capacity.nodes
+         * If this is 0, the server is not counted
+         */
+        public final int memory;
+
+        public ServerConfig(String id, int timeout, String backupId, String panel, int prewarmBudget, String node, int memory) {
             this.id = id;
             this.timeout = timeout;
             this.backupId = backupId;
+            this.panel = panel;
+            this.prewarmBudget = prewarmBudget;
+            this.node = node;
+            this.memory = memory;
+        }
+    }
+
+    /**
+     * Server group configuration
+     */
+    public static class GroupConfig {
+        /**
+         * The Bungeecord server names of the members
+         */
+        public final List<String> servers;
+        /**
+         * The number of members to keep running without players
+         */
+        public final int minWarm;
+        /**
+         * The number of players a member is meant to hold, or 0 to disable autoscaling
+         */
+        public final int capacity;
+        /**
+         * The load (players / (running members * capacity)) above which another member is started
+         */
+        public final double highWater;
+        /**
+         * The load below which a member is drained and stopped
+         */
+        public final double lowWater;
+
+        public GroupConfig(List<String> servers, int minWarm, int capacity, double highWater, double lowWater) {
+            this.servers = servers;
+            this.minWarm = minWarm;
+            this.capacity = capacity;
+            this.highWater = highWater;
+            this.lowWater = lowWater;
+        }
+    }
+
+    /**
+     * Panel profile configuration
+     */
+    public static class PanelConfig {
+        /**
+         * The type of the panel
+         * (e.g. "pterodactyl")
+         */
+        public final String type;
+        /**
+         * The panel API URL
+         */
+        public final URI url;
+        /**
+         * The panel API key
+         */
+        public final String apiKey;
+        /**
+         * Custom HTTP headers sent to the panel
+         */
+        public final Map<String, String> customHeaders;
+
+        public PanelConfig(String type, URI url, String apiKey, Map<String, String> customHeaders) {
+            this.type = type;
+            this.url = url;
+            this.apiKey = apiKey;
+            this.customHeaders = customHeaders;
         }
     }
 
@@ -160,32 +410,91 @@ public class Config {
             this.restorePingInterval = configuration.getInt("restoreOnStop.pingInterval", 5);
             this.powerControllerType = configuration.getString("powerControllerType");
             this.useSynchronousPing = configuration.getBoolean("useSynchronousPing", false);
+            this.synchronousPingTimeout = configuration.getInt("synchronousPing.timeout", 5);
+            this.synchronousPingOnTimeout = configuration.getString("synchronousPing.onTimeout", "continue");
             this.serverStatusCheckMethod = configuration.getString("serverStatusCheckMethod", "bungeecord");
+            this.statusCacheTtl = configuration.getInt("statusCache.ttl", 2);
+            this.statusCacheFailureTtl = configuration.getInt("statusCache.failureTtl", 1);
+            this.statusSweepInterval = configuration.getInt("statusSweep.interval", 0);
+            this.statusSweepConcurrency = configuration.getInt("statusSweep.concurrency", 8);
+            this.permissionCacheTtl = configuration.getInt("permissionCache.ttl", 60);
+            this.reconcileOnStartup = configuration.getBoolean("reconcileOnStartup", true);
+            this.prewarmEnabled = configuration.getBoolean("prewarm.enabled", false);
+            this.prewarmLeadTime = configuration.getInt("prewarm.leadTime", 300);
+            this.prewarmThreshold = configuration.getDouble("prewarm.threshold", 0.6);
+            this.prewarmBudget = configuration.getInt("prewarm.budget", 3);
+            this.startLimitGlobal = configuration.getInt("startLimit.global", 0);
+            this.startLimitPerNode = configuration.getInt("startLimit.perNode", 0);
+
+            // Node name -> Memory budget
+            nodeMemory = new HashMap<>();
+            Configuration nodes = configuration.getSection("capacity.nodes");
+            if (nodes != null) {
+                for (String nodeName : nodes.getKeys()) {
+                    nodeMemory.put(nodeName, nodes.getInt(nodeName));
+                }
+            }
+
+            this.customHeaders = loadHeaders(configuration.getSection("customHeaders"));
+
+            // HTTP client settings
+            this.httpConnectTimeout = configuration.getInt("http.connectTimeout", 5);
+            this.httpRequestTimeout = configuration.getInt("http.requestTimeout", 10);
+            this.httpThreads = configuration.getInt("http.threads", 4);
+            this.rateLimitRequestsPerMinute = configuration.getInt("http.rateLimit.requestsPerMinute", 240);
+            this.rateLimitBurst = configuration.getInt("http.rateLimit.burst", 20);
+            this.circuitBreakerFailureThreshold = configuration.getInt("http.circuitBreaker.failureThreshold", 5);
+            this.circuitBreakerOpenDuration = configuration.getInt("http.circuitBreaker.openDuration", 30);
 
-            Configuration headers = configuration.getSection("customHeaders");
-            this.customHeaders = headers == null ? new HashMap<>() : headers
-                    .getKeys()
-                    .stream()
-                    .collect(Collectors.toMap(
-                            key -> key,
-                            headers::getString,
-                            (existing, replacement) -> existing,
-                            HashMap::new
-                    ));
+            // Retry settings
+            this.retryMaxAttempts = configuration.getInt("retry.maxAttempts", 3);
+            this.retryInitialDelay = configuration.getDouble("retry.initialDelay", 1.0);
+            this.retryMaxDelay = configuration.getDouble("retry.maxDelay", 10.0);
+            this.retryMultiplier = configuration.getDouble("retry.multiplier", 2.0);
+            this.retryableStatusCodes = new HashSet<>(configuration.contains("retry.retryableStatusCodes")
+                    ? configuration.getIntList("retry.retryableStatusCodes")
+                    : Arrays.asList(429, 500, 502, 503, 504));
+            this.retryableExceptions = new HashSet<>(configuration.contains("retry.retryableExceptions")
+                    ? configuration.getStringList("retry.retryableExceptions")
+                    : Collections.singletonList("java.io.IOException"));
 
             // Startup join settings
             this.startupJoinTimeout = configuration.getInt("startupJoin.timeout");
             this.pingInterval = configuration.getInt("startupJoin.pingInterval");
+
+            // Adaptive polling settings
+            this.adaptivePollingEnabled = configuration.getBoolean("adaptivePolling.enabled", true);
+            this.adaptivePollingMinInterval = configuration.getDouble("adaptivePolling.minInterval", 0.5);
+            this.adaptivePollingMaxInterval = configuration.getDouble("adaptivePolling.maxInterval", 15.0);
             this.joinDelay = configuration.getInt("startupJoin.joinDelay");
 
             // Pterodactyl API credentials
             this.pterodactylUrl = new URI(configuration.getString("pterodactyl.url"));
             this.pterodactylApiKey = configuration.getString("pterodactyl.apiKey");
+            this.pterodactylLiveStatus = configuration.getBoolean("pterodactyl.liveStatus", false);
 
             // Crafty 4 API credentials
             this.craftyUrl = new URI(configuration.getString("crafty.url"));
             this.craftyApiKey = configuration.getString("crafty.apiKey");
 
+            // Panel profile name -> Panel settings
+            // The "pterodactyl" and "crafty" sections are the default profiles
+            panelMap = new HashMap<>();
+            panelMap.put("pterodactyl", new PanelConfig("pterodactyl", pterodactylUrl, pterodactylApiKey, customHeaders));
+            panelMap.put("crafty", new PanelConfig("crafty", craftyUrl, craftyApiKey, customHeaders));
+            Configuration panels = configuration.getSection("panels");
+            if (panels != null) {
+                for (String panelName : panels.getKeys()) {
+                    Configuration section = panels.getSection(panelName);
+                    String type = section.getString("type", "pterodactyl");
+                    URI url = new URI(section.getString("url"));
+                    String apiKey = section.getString("apiKey");
+                    // Use the global custom headers if the panel does not have its own
+                    Map<String, String> headers = section.contains("customHeaders") ? loadHeaders(section.getSection("customHeaders")) : customHeaders;
+                    panelMap.put(panelName, new PanelConfig(type, url, apiKey, headers));
+                }
+            }
+
             // Bungeecord server name -> Pterodactyl server ID list
             serverMap = new HashMap<>();
             Configuration servers = configuration.getSection("servers");
@@ -194,7 +503,59 @@ public class Config {
                 String id = section.getString("id");
                 int timeout = section.getInt("timeout");
                 String backupId = section.getString("backupId", null);
-                serverMap.put(serverId, new ServerConfig(id, timeout, backupId));
+                String panel = section.getString("panel", null);
+                int prewarmBudget = section.getInt("prewarmBudget", -1);
+                String node = section.getString("node", null);
+                int memory = section.getInt("memory", 0);
+                serverMap.put(serverId, new ServerConfig(id, timeout, backupId, panel, prewarmBudget, node, memory));
+            }
+
+            // Group name -> Member server names, and member server name -> Group name
+            groupMap = new HashMap<>();
+            serverGroups = new HashMap<>();
+            Configuration groups = configuration.getSection("groups");
+            if (groups != null) {
+                for (String groupName : groups.getKeys()) {
+                    Configuration section = groups.getSection(groupName);
+                    List<String> members = Collections.unmodifiableList(new ArrayList<>(section.getStringList("servers")));
+                    int minWarm = section.getInt("minWarm", 0);
+                    int capacity = section.getInt("autoscale.capacity", 0);
+                    double highWater = section.getDouble("autoscale.highWater", 0.8);
+                    double lowWater = section.getDouble("autoscale.lowWater", 0.3);
+                    groupMap.put(groupName, new GroupConfig(members, minWarm, capacity, highWater, lowWater));
+                    for (String member : members) {
+                        serverGroups.put(member, groupName);
+                    }
+                }
+            }
+
+            // Bungeecord server name -> Precompiled panel requests
+            // The headers are built once per panel and shared by its servers
+            requestMap = new HashMap<>();
+            Map<String, String[]> panelHeaders = new HashMap<>();
+            Duration requestTimeout = Duration.ofSeconds(httpRequestTimeout);
+            serverMap.forEach((serverName, server) -> {
+                String panelName = server.panel != null ? server.panel : powerControllerType;
+                PanelConfig panel = panelName == null ? null : panelMap.get(panelName);
+                if (panel == null) {
+                    return;
+                }
+                String[] headers = panelHeaders.computeIfAbsent(panelName, k -> RequestTemplate.headersOf(panel));
+                ServerRequests requests = ServerRequests.create(panelName, panel, server.id, server.backupId, headers, requestTimeout);
+                if (requests != null) {
+                    requestMap.put(serverName, requests);
+                }
+            });
+
+            // Bungeecord server name -> Index, and the permission nodes of each server
+            serverIndex = new HashMap<>();
+            permissionNodes = new String[serverMap.size() * PermissionCache.Node.COUNT];
+            for (String serverName : serverMap.keySet()) {
+                int index = serverIndex.size();
+                serverIndex.put(serverName, index);
+                for (PermissionCache.Node node : PermissionCache.Node.values()) {
+                    permissionNodes[getPermissionBit(index, node)] = node.of(serverName).intern();
+                }
             }
 
         } catch (Exception e) {
@@ -213,6 +574,121 @@ public class Config {
         return serverMap.get(serverName);
     }
 
+    /**
+     * Get the precompiled panel requests of the server.
+     *
+     * @param serverName The Bungeecord server name
+     * @return The precompiled requests, or null if the server is not managed by a supported panel
+     */
+    public @Nullable ServerRequests getServerRequests(String serverName) {
+        return requestMap.get(serverName);
+    }
+
+    /**
+     * Get the index of the server.
+     * The indexes are numbered from 0 to the number of servers - 1.
+     *
+     * @param serverName The Bungeecord server name
+     * @return The index, or -1 if the server is not managed
+     */
+    public int getServerIndex(String serverName) {
+        Integer index = serverIndex.get(serverName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get the position of a permission node of the server in the permission bitset.
+     *
+     * @param serverIndex The index of the server
+     * @param node        The permission node
+     * @return The bit position
+     */
+    public int getPermissionBit(int serverIndex, PermissionCache.Node node) {
+        return serverIndex * PermissionCache.Node.COUNT + node.ordinal();
+    }
+
+    /**
+     * Get a permission node of the server.
+     *
+     * @param serverIndex The index of the server
+     * @param node        The permission node
+     * @return The interned permission node (e.g. "ptero.autostart.lobby")
+     */
+    public String getPermissionNode(int serverIndex, PermissionCache.Node node) {
+        return permissionNodes[getPermissionBit(serverIndex, node)];
+    }
+
+    /**
+     * Get the panel profile by name.
+     *
+     * @param panelName The name of the panel profile (e.g. "pterodactyl" for the default Pterodactyl panel)
+     * @return The panel profile, or null if not found
+     */
+    public @Nullable PanelConfig getPanelConfig(String panelName) {
+        return panelMap.get(panelName);
+    }
+
+    /**
+     * Get the panel profile names.
+     *
+     * @return The panel profile names
+     */
+    public Set<String> getPanelNames() {
+        return panelMap.keySet();
+    }
+
+    /**
+     * Get the server group by name.
+     *
+     * @param groupName The name of the group
+     * @return The group, or null if not found
+     */
+    public @Nullable GroupConfig getGroupConfig(String groupName) {
+        return groupMap.get(groupName);
+    }
+
+    /**
+     * Get the server group names.
+     *
+     * @return The group names
+     */
+    public Set<String> getGroupNames() {
+        return groupMap.keySet();
+    }
+
+    /**
+     * Get the name of the group the server is a member of.
+     *
+     * @param serverName The Bungeecord server name
+     * @return The group name, or null if the server is not in a group
+     */
+    public @Nullable String getGroupOf(String serverName) {
+        return serverGroups.get(serverName);
+    }
+
+    /**
+     * Get the node (machine) a server runs on.
+     *
+     * @param server The server configuration
+     * @return The node name, or the name of the panel of the server if the node is not configured
+     */
+    public String getNodeName(ServerConfig server) {
+        if (server.node != null) {
+            return server.node;
+        }
+        return server.panel != null ? server.panel : powerControllerType;
+    }
+
+    /**
+     * Get the memory budget of a node.
+     *
+     * @param nodeName The node name
+     * @return The budget in MB, or 0 if the node has no budget
+     */
+    public int getNodeMemory(String nodeName) {
+        return nodeMemory.getOrDefault(nodeName, 0);
+    }
+
     /**
      * Get the Bungeecord server names.
      *
@@ -222,6 +698,37 @@ public class Config {
         return serverMap.keySet();
     }
 
+    /**
+     * Group the managed servers by panel, so that each panel can be checked in its own batch.
+     *
+     * @return Panel name (null for the default power controller) -> Bungeecord server name -> Panel server ID
+     */
+    public Map<String, Map<String, String>> groupServersByPanel() {
+        Map<String, Map<String, String>> panels = new HashMap<>();
+        for (Map.Entry<String, ServerConfig> entry : serverMap.entrySet()) {
+            panels.computeIfAbsent(entry.getValue().panel, k -> new HashMap<>()).put(entry.getKey(), entry.getValue().id);
+        }
+        return panels;
+    }
+
+    /**
+     * Load custom HTTP headers from a section
+     *
+     * @param headers The section, or null if not set
+     * @return The custom HTTP headers
+     */
+    private static Map<String, String> loadHeaders(@Nullable Configuration headers) {
+        return headers == null ? new HashMap<>() : headers
+                .getKeys()
+                .stream()
+                .collect(Collectors.toMap(
+                        key -> key,
+                        headers::getString,
+                        (existing, replacement) -> existing,
+                        HashMap::new
+                ));
+    }
+
     private static File makeConfig() throws IOException {
         // Create the data folder if it does not exist
         if (!plugin.getDataFolder().exists()) {
@@ -251,15 +758,29 @@ public class Config {
     }
 
     /**
-     * Get power controller by name
+     * Get the power controller that manages the server.
+     * If the server references a panel profile, the controller of that panel is used.
+     * Otherwise, the power controller specified by powerControllerType is used.
+     * The power controller is wrapped to retry failed power signals.
+     * The wrapper is created once per power controller and reused.
      *
-     * @return The power controller, or null if not found
+     * @param serverName The Bungeecord server name
+     * @return The power controller
      */
-    public PowerController getPowerController() {
-        Objects.requireNonNull(powerControllerType, "Power controller type is not set");
-        PowerController powerController = plugin.powerControllers.get(powerControllerType);
-        Objects.requireNonNull(powerController, "No power controller found for type: " + powerControllerType);
-        return powerController;
+    public PowerController getPowerController(String serverName) {
+        ServerConfig server = getServerConfig(serverName);
+        PowerController powerController;
+        if (server != null && server.panel != null) {
+            // A panel profile, or a registered power controller with the same name
+            powerController = plugin.panelControllers.getOrDefault(server.panel, plugin.powerControllers.get(server.panel));
+            Objects.requireNonNull(powerController, "No panel found: " + server.panel + " for server: " + serverName);
+        } else {
+            Objects.requireNonNull(powerControllerType, "Power controller type is not set");
+            powerController = plugin.powerControllers.get(powerControllerType);
+            Objects.requireNonNull(powerController, "No power controller found for type: " + powerControllerType);
+        }
+        // Retry failed power signals
+        return plugin.retryingControllers.computeIfAbsent(powerController, RetryingPowerController::new);
     }
 
     /**
@@ -323,6 +844,36 @@ public class Config {
             sender.sendMessage(plugin.messages.prefix().append(String.format("Warning: The following server names in the configuration are not found in the BungeeCord server list: %s", String.join(", ", invalidServerNames))).create());
         }
 
+        // Validate the synchronous ping settings
+        if (!"continue".equals(synchronousPingOnTimeout) && !"disconnect".equals(synchronousPingOnTimeout)) {
+            sender.sendMessage(plugin.messages.prefix().append(String.format("Warning: synchronousPing.onTimeout '%s' is not supported. Supported values: continue, disconnect", synchronousPingOnTimeout)).create());
+        }
+
+        // Validate the server groups
+        List<String> invalidGroupServers = serverGroups.keySet().stream()
+                .filter(serverName -> getServerConfig(serverName) == null)
+                .collect(Collectors.toList());
+        if (!invalidGroupServers.isEmpty()) {
+            sender.sendMessage(plugin.messages.prefix().append(String.format("Warning: The following servers in 'groups' are not configured in 'servers': %s", String.join(", ", invalidGroupServers))).create());
+        }
+
+        // Validate the panel profiles
+        for (String panelName : getPanelNames()) {
+            PanelConfig panel = getPanelConfig(panelName);
+            if (!"pterodactyl".equals(panel.type) && !"crafty".equals(panel.type)) {
+                sender.sendMessage(plugin.messages.prefix().append(String.format("Warning: The panel '%s' has an unsupported type '%s'. Supported types: pterodactyl, crafty", panelName, panel.type)).create());
+            }
+        }
+        List<String> invalidPanelServers = getServerNames().stream()
+                .filter(serverName -> {
+                    ServerConfig server = getServerConfig(serverName);
+                    return server.panel != null && getPanelConfig(server.panel) == null && plugin.powerControllers.get(server.panel) == null;
+                })
+                .collect(Collectors.toList());
+        if (!invalidPanelServers.isEmpty()) {
+            sender.sendMessage(plugin.messages.prefix().append(String.format("Warning: The following servers reference a panel that is not defined in 'panels': %s", String.join(", ", invalidPanelServers))).create());
+        }
+
         // Check if the power controller is registered
         if (plugin.config.powerControllerType == null) {
             sender.sendMessage(plugin.messages.prefix().append("Warning: The power controller type in the configuration is not set.").create());
@@ -1,12 +1,10 @@
 package com.kamesuta.bungeepteropower;
 
-import net.md_5.bungee.api.ProxyServer;
-import net.md_5.bungee.api.scheduler.ScheduledTask;
-
+import java.io.File;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
 import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
@@ -16,41 +14,72 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
  */
 public class DelayManager {
     /**
-     * Tasks in progress
+     * The number of buckets of the timer wheel (one round is about 8.5 minutes with one-second ticks)
      */
-    private final ConcurrentMap<String, ScheduledTask> serverStopTasks = new ConcurrentHashMap<>();
+    private static final int WHEEL_SIZE = 512;
 
     /**
-     * Stop the server after a while.
-     *
-     * @param serverName The name of the server to stop
-     * @param timeout    The time in seconds to stop the server
-     * @param callback   The callback to be executed after the server is stopped
+     * The timer all countdowns run on
      */
-    public void stopAfterWhile(String serverName, int timeout, Runnable callback) {
-        // Cancel previous task
-        cancelStop(serverName);
+    private final HashedWheelTimer timer = new HashedWheelTimer(WHEEL_SIZE, 1, TimeUnit.SECONDS);
+    /**
+     * Countdowns per server name, kept and re-armed when players come and go
+     */
+    private final ConcurrentMap<String, Countdown> countdowns = new ConcurrentHashMap<>();
+    /**
+     * The journal of the pending deadlines, to resume them after the proxy restarts
+     */
+    private final StopJournal journal = new StopJournal(new File(plugin.getDataFolder(), "stop-journal.log"));
 
-        // Stop the server after the auto stop time
-        AtomicInteger taskId = new AtomicInteger();
-        ScheduledTask task = ProxyServer.getInstance().getScheduler().schedule(plugin, () -> {
+    /**
+     * The countdown to stop a server
+     */
+    private class Countdown {
+        private final String serverName;
+        private final HashedWheelTimer.Timeout timeout;
+        /**
+         * The callback of the latest arm, and its time in seconds
+         */
+        private volatile Runnable callback;
+        private volatile int seconds;
+
+        private Countdown(String serverName) {
+            this.serverName = serverName;
+            this.timeout = timer.newTimeout(this::fire);
+        }
+
+        /**
+         * Called when the countdown expires
+         */
+        private void fire() {
             // Log
-            logger.info(String.format("Scheduled task executed: stop server %s (task ID: %d, timeout: %d sec)", serverName, taskId.get(), timeout));
+            logger.info(String.format("Scheduled task executed: stop server %s (timeout: %d sec)", serverName, seconds));
+            journal.removed(serverName);
 
             // Call the callback
             callback.run();
+        }
+    }
 
-            // Unregister the task
-            serverStopTasks.remove(serverName);
-
-        }, timeout, TimeUnit.SECONDS);
-        taskId.set(task.getId());
+    /**
+     * Stop the server after a while.
+     *
+     * @param serverName The name of the server to stop
+     * @param timeout    The time in seconds to stop the server
+     * @param callback   The callback to be executed after the server is stopped
+     */
+    public void stopAfterWhile(String serverName, int timeout, Runnable callback) {
+        // Re-arm the countdown of the server, replacing the previous one
+        Countdown countdown = countdowns.computeIfAbsent(serverName, Countdown::new);
+        synchronized (countdown) {
+            countdown.callback = callback;
+            countdown.seconds = timeout;
+            countdown.timeout.arm(timeout, TimeUnit.SECONDS);
+            journal.armed(serverName, System.currentTimeMillis() + timeout * 1000L);
+        }
 
         // Log
-        logger.info(String.format("Scheduled task registered: stop server %s (task ID: %d, timeout: %d sec)", serverName, taskId.get(), timeout));
-
-        // Register the task
-        serverStopTasks.put(serverName, task);
+        logger.fine(() -> String.format("Scheduled task registered: stop server %s (timeout: %d sec)", serverName, timeout));
     }
 
     /**
@@ -59,13 +88,63 @@ public class DelayManager {
      * @param serverName The name of the server to cancel stopping
      */
     public void cancelStop(String serverName) {
-        // Cancel the task
-        ScheduledTask task = serverStopTasks.remove(serverName);
-        if (task != null) {
+        // Cancel the countdown
+        Countdown countdown = countdowns.get(serverName);
+        if (countdown != null && countdown.timeout.cancel()) {
+            journal.removed(serverName);
             // Log
-            logger.info(String.format("Scheduled task canceled: stop server %s (task ID: %d)", serverName, task.getId()));
-
-            task.cancel();
+            logger.fine(() -> String.format("Scheduled task canceled: stop server %s", serverName));
         }
     }
+
+    /**
+     * Check if the server has a stop timer.
+     *
+     * @param serverName The name of the server
+     * @return true if the server is going to be stopped
+     */
+    public boolean isStopScheduled(String serverName) {
+        Countdown countdown = countdowns.get(serverName);
+        return countdown != null && countdown.timeout.isArmed();
+    }
+
+    /**
+     * Resume the countdowns that were pending when the proxy stopped.
+     * Countdowns whose deadline has already passed stop their server right away.
+     */
+    public void restore() {
+        Map<String, Long> deadlines = journal.load();
+        long now = System.currentTimeMillis();
+        deadlines.forEach((serverName, deadline) -> {
+            // Skip servers that are no longer managed
+            Config.ServerConfig server = plugin.config.getServerConfig(serverName);
+            if (server == null) {
+                journal.removed(serverName);
+                return;
+            }
+
+            int remaining = (int) Math.ceil((deadline - now) / 1000.0);
+            if (remaining <= 0) {
+                journal.removed(serverName);
+            }
+            ServerController.resumeStopAfterWhile(serverName, server, remaining);
+        });
+    }
+
+    /**
+     * Stop all countdowns from running, and save the pending deadlines to the journal.
+     */
+    public void close() {
+        timer.stop();
+        journal.close();
+    }
+
+    /**
+     * Get the timer the countdowns run on, to read its counters.
+     *
+     * @return The timer
+     */
+    public HashedWheelTimer getTimer() {
+        return timer;
+    }
 }
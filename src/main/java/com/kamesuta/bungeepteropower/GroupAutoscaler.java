@@ -0,0 +1,182 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Scales the server groups with the number of players on them.
+ * When the players per running member go above the high-water mark, the next member is started.
+ * When they go below the low-water mark, a member is drained: no more players are sent to it,
+ * and it is stopped after its timeout once the last player has left.
+ * The empty members kept warm by the {@link StandbyPool} (minWarm) are never drained.
+ * The decisions are made on a periodic task, one step per group at a time.
+ */
+public class GroupAutoscaler {
+    /**
+     * The interval of the evaluation in seconds
+     */
+    private static final int EVALUATE_INTERVAL = 30;
+
+    /**
+     * The members that are being drained
+     */
+    private final Set<String> draining = ConcurrentHashMap.newKeySet();
+    /**
+     * The scheduled evaluation, or null if not running
+     */
+    private ScheduledTask task;
+
+    /**
+     * Start the evaluation with the current configuration.
+     */
+    public synchronized void start() {
+        stop();
+
+        boolean enabled = plugin.config.getGroupNames().stream()
+                .anyMatch(groupName -> plugin.config.getGroupConfig(groupName).capacity > 0);
+        if (!enabled) {
+            draining.clear();
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::evaluate, EVALUATE_INTERVAL, EVALUATE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the evaluation.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Check if a member is being drained
+     *
+     * @param serverName The name of the server
+     * @return true if no more players should be sent to the server
+     */
+    public boolean isDraining(String serverName) {
+        return draining.contains(serverName);
+    }
+
+    /**
+     * Evaluate all groups
+     */
+    void evaluate() {
+        for (String groupName : plugin.config.getGroupNames()) {
+            Config.GroupConfig group = plugin.config.getGroupConfig(groupName);
+            if (group.capacity > 0) {
+                evaluate(groupName, group);
+            }
+        }
+    }
+
+    /**
+     * Take at most one scaling step for the group
+     *
+     * @param groupName The name of the group
+     * @param group     The group configuration
+     */
+    private void evaluate(String groupName, Config.GroupConfig group) {
+        // Count the players on the running members that are not draining
+        int active = 0;
+        int players = 0;
+        boolean starting = false;
+        // The empty members are the warm standby of the group, only those beyond minWarm may be drained
+        int empty = 0;
+        ServerInfo firstEmpty = null;
+        ServerInfo leastLoaded = null;
+        ServerInfo mostLoadedDraining = null;
+        String offline = null;
+        for (String member : group.servers) {
+            ServerLifecycle.State state = plugin.lifecycle.get(member);
+            boolean running = state == ServerLifecycle.State.RUNNING || state == ServerLifecycle.State.IDLE_COUNTDOWN;
+            if (!running) {
+                // Members that have stopped are no longer drained
+                draining.remove(member);
+            }
+            if (state == ServerLifecycle.State.STARTING) {
+                starting = true;
+            }
+            if (state == ServerLifecycle.State.OFFLINE && offline == null && plugin.config.getServerConfig(member) != null) {
+                offline = member;
+            }
+
+            ServerInfo serverInfo = plugin.getProxy().getServerInfo(member);
+            if (!running || serverInfo == null) {
+                continue;
+            }
+            int count = serverInfo.getPlayers().size();
+            if (draining.contains(member)) {
+                if (mostLoadedDraining == null || count > mostLoadedDraining.getPlayers().size()) {
+                    mostLoadedDraining = serverInfo;
+                }
+                continue;
+            }
+            active++;
+            players += count;
+            if (count == 0) {
+                empty++;
+                if (firstEmpty == null) {
+                    firstEmpty = serverInfo;
+                }
+            } else if (leastLoaded == null || count < leastLoaded.getPlayers().size()) {
+                leastLoaded = serverInfo;
+            }
+        }
+
+        // Nothing to scale until a member is running, the first start is up to the players
+        if (active == 0 || starting) {
+            return;
+        }
+
+        double load = (double) players / (active * group.capacity);
+        if (load > group.highWater) {
+            // Scale out: take back a draining member first, it is still running
+            if (mostLoadedDraining != null) {
+                draining.remove(mostLoadedDraining.getName());
+                logger.info(String.format("Group %s is at %.0f%% load, no longer draining server %s", groupName, load * 100, mostLoadedDraining.getName()));
+                return;
+            }
+            if (offline == null) {
+                logger.fine("Group " + groupName + " is at full scale");
+                return;
+            }
+
+            logger.info(String.format("Group %s is at %.0f%% load, starting server %s", groupName, load * 100, offline));
+            ServerController.sendPowerSignal(plugin.getProxy().getConsole(), offline, plugin.config.getServerConfig(offline), PowerSignal.START);
+
+            // Record statistics
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.START_SERVER_AUTOSCALE);
+            plugin.statistics.startReasonRecorder.recordStart(offline, Statistics.StartReasonRecorder.StartReason.AUTOSCALE);
+
+        } else if (load < group.lowWater && active > 1
+                // Do not drain a member if the rest would be above the high-water mark right away
+                && players <= (active - 1) * group.capacity * group.highWater) {
+            // Scale in: drain the member with the fewest players, but keep minWarm empty members for the standby pool
+            ServerInfo drained = empty > group.minWarm ? firstEmpty : leastLoaded;
+            if (drained == null) {
+                logger.fine("Group " + groupName + " only has the warm standby members left to drain");
+                return;
+            }
+            String serverName = drained.getName();
+            draining.add(serverName);
+            logger.info(String.format("Group %s is at %.0f%% load, draining server %s", groupName, load * 100, serverName));
+
+            // An empty member without a countdown is stopped after its timeout
+            if (drained.getPlayers().isEmpty() && plugin.lifecycle.get(serverName) == ServerLifecycle.State.RUNNING) {
+                ServerController.stopAfterWhile(plugin.getProxy().getConsole(), serverName, plugin.config.getServerConfig(serverName), PowerSignal.STOP);
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.kamesuta.bungeepteropower;
+
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * A timer for many long countdowns that are re-armed and cancelled often.
+ * Countdowns are kept in a wheel of buckets that is advanced by a single proxy task once per tick,
+ * so arming, re-arming and cancelling a countdown only links or unlinks it in O(1) without scheduling anything.
+ * The precision is one tick.
+ */
+public class HashedWheelTimer {
+    /**
+     * The buckets of the wheel, each one a doubly linked list of countdowns
+     */
+    private final Timeout[] wheel;
+    /**
+     * The length of a tick in milliseconds
+     */
+    private final long tickMillis;
+    /**
+     * The number of ticks since the timer was started
+     */
+    private long tick;
+    /**
+     * The task that advances the wheel, or null if not running
+     */
+    private ScheduledTask task;
+
+    /**
+     * The number of countdowns armed (including re-armed)
+     */
+    private final LongAdder arms = new LongAdder();
+    /**
+     * The number of armed countdowns cancelled
+     */
+    private final LongAdder cancels = new LongAdder();
+    /**
+     * The number of countdowns fired
+     */
+    private final LongAdder fires = new LongAdder();
+
+    /**
+     * Create a new timer
+     *
+     * @param ticksPerWheel The number of buckets (countdowns longer than a round just wait for more rounds)
+     * @param tickDuration  The length of a tick
+     * @param unit          The unit of the tick length
+     */
+    public HashedWheelTimer(int ticksPerWheel, long tickDuration, TimeUnit unit) {
+        this.wheel = new Timeout[ticksPerWheel];
+        this.tickMillis = Math.max(1, unit.toMillis(tickDuration));
+    }
+
+    /**
+     * A countdown on the wheel.
+     * The same countdown can be armed again any number of times.
+     */
+    public class Timeout {
+        /**
+         * The task to run when the countdown expires
+         */
+        private final Runnable task;
+        /**
+         * The neighbours in the bucket, null if not linked
+         */
+        private Timeout prev, next;
+        /**
+         * The bucket this countdown is linked to, or -1 if not armed
+         */
+        private int bucket = -1;
+        /**
+         * The number of full rounds of the wheel left before this countdown expires
+         */
+        private long rounds;
+        /**
+         * Whether the countdown has expired and its task is about to run
+         * Arming or cancelling the countdown in the meantime clears this, so that the task does not run
+         */
+        private boolean firing;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Arm the countdown, replacing the current deadline if it is already armed.
+         *
+         * @param delay The time until the task runs
+         * @param unit  The unit of the delay
+         */
+        public void arm(long delay, TimeUnit unit) {
+            synchronized (HashedWheelTimer.this) {
+                unlink(this);
+                // Round up, so that the task never runs early
+                long ticks = Math.max(1, (unit.toMillis(delay) + tickMillis - 1) / tickMillis);
+                rounds = (ticks - 1) / wheel.length;
+                link(this, (int) ((tick + ticks) % wheel.length));
+                firing = false;
+                start();
+            }
+            arms.increment();
+        }
+
+        /**
+         * Cancel the countdown.
+         *
+         * @return true if the countdown was armed
+         */
+        public boolean cancel() {
+            synchronized (HashedWheelTimer.this) {
+                if (bucket < 0 && !firing) {
+                    return false;
+                }
+                unlink(this);
+                firing = false;
+            }
+            cancels.increment();
+            return true;
+        }
+
+        /**
+         * Check if the countdown is armed.
+         *
+         * @return true if the countdown is waiting to expire
+         */
+        public boolean isArmed() {
+            synchronized (HashedWheelTimer.this) {
+                return bucket >= 0;
+            }
+        }
+    }
+
+    /**
+     * Create an unarmed countdown.
+     *
+     * @param task The task to run every time the countdown expires
+     * @return The countdown
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    /**
+     * Add the countdown to the head of a bucket
+     *
+     * @param timeout The countdown
+     * @param bucket  The bucket index
+     */
+    private void link(Timeout timeout, int bucket) {
+        Timeout head = wheel[bucket];
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        wheel[bucket] = timeout;
+    }
+
+    /**
+     * Remove the countdown from its bucket if it is linked
+     *
+     * @param timeout The countdown
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    /**
+     * Start advancing the wheel if it is not running
+     */
+    private void start() {
+        if (task == null) {
+            task = plugin.getProxy().getScheduler().schedule(plugin, this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop advancing the wheel.
+     * Armed countdowns stay armed and continue when a countdown is armed again.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Advance the wheel by one tick and run the expired countdowns
+     */
+    private void advance() {
+        // Collect the expired countdowns of the current bucket
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            tick++;
+            int bucket = (int) (tick % wheel.length);
+            for (Timeout timeout = wheel[bucket]; timeout != null; ) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0) {
+                    unlink(timeout);
+                    timeout.firing = true;
+                    expired.add(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        // Run the tasks outside the lock, unless they were armed or cancelled in the meantime
+        for (Timeout timeout : expired) {
+            synchronized (this) {
+                if (!timeout.firing) {
+                    continue;
+                }
+                timeout.firing = false;
+            }
+            fires.increment();
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to run a scheduled task", e);
+            }
+        }
+    }
+
+    /**
+     * Get the number of countdowns armed (including re-armed)
+     *
+     * @return The number of arms
+     */
+    public long getArmCount() {
+        return arms.sum();
+    }
+
+    /**
+     * Get the number of armed countdowns cancelled
+     *
+     * @return The number of cancels
+     */
+    public long getCancelCount() {
+        return cancels.sum();
+    }
+
+    /**
+     * Get the number of countdowns fired
+     *
+     * @return The number of fires
+     */
+    public long getFireCount() {
+        return fires.sum();
+    }
+}
@@ -0,0 +1,160 @@
+package com.kamesuta.bungeepteropower;
+
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Caches the ptero.* permissions of the online players.
+ * The permissions of all managed servers are checked once and kept in a bitset per player,
+ * laid out by the server index of the {@link Config}.
+ */
+public class PermissionCache {
+    /**
+     * The per-server permission nodes
+     */
+    public enum Node {
+        AUTOSTART("autostart"),
+        START("start"),
+        STOP("stop");
+
+        /**
+         * The number of nodes per server
+         */
+        public static final int COUNT = values().length;
+
+        /**
+         * The node name between "ptero." and the server name
+         */
+        public final String key;
+
+        Node(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Build the permission node of the server
+         *
+         * @param serverName The name of the server
+         * @return The permission node (e.g. "ptero.autostart.lobby")
+         */
+        public String of(String serverName) {
+            return "ptero." + key + "." + serverName;
+        }
+    }
+
+    /**
+     * Cached permissions per player UUID
+     */
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The permissions of a player
+     */
+    private static class Entry {
+        /**
+         * The config the bit layout belongs to
+         */
+        private final Config config;
+        /**
+         * The granted permission nodes, indexed by {@link Config#getPermissionBit(int, Node)}
+         */
+        private final BitSet granted;
+        /**
+         * The time (System.nanoTime) when this entry expires
+         */
+        private final long expiresAt;
+
+        private Entry(Config config, BitSet granted, long expiresAt) {
+            this.config = config;
+            this.granted = granted;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Check if the sender has the permission of the server.
+     * Players are answered from the cache, other senders (e.g. the console) are checked directly.
+     *
+     * @param sender     The sender to check
+     * @param serverName The name of the server
+     * @param node       The permission node
+     * @return true if the sender has the permission
+     */
+    public boolean has(CommandSender sender, String serverName, Node node) {
+        Config config = plugin.config;
+        int index = config.getServerIndex(serverName);
+        if (index < 0 || !(sender instanceof ProxiedPlayer) || config.permissionCacheTtl <= 0) {
+            // Not a managed server, or not cached
+            return sender.hasPermission(index < 0 ? node.of(serverName) : config.getPermissionNode(index, node));
+        }
+
+        // Use the cached permissions if they are still valid
+        ProxiedPlayer player = (ProxiedPlayer) sender;
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null || entry.config != config || System.nanoTime() - entry.expiresAt >= 0) {
+            entry = refresh(player);
+        }
+        return entry.granted.get(config.getPermissionBit(index, node));
+    }
+
+    /**
+     * Check all permissions of the managed servers for the player and cache them.
+     * This also lets permission plugins (e.g. LuckPerms) know the permission nodes.
+     *
+     * @param player The player
+     * @return The cached permissions
+     */
+    private Entry refresh(ProxiedPlayer player) {
+        Config config = plugin.config;
+        int servers = config.getServerNames().size();
+        BitSet granted = new BitSet(servers * Node.COUNT);
+        for (int index = 0; index < servers; index++) {
+            for (Node node : Node.values()) {
+                if (player.hasPermission(config.getPermissionNode(index, node))) {
+                    granted.set(config.getPermissionBit(index, node));
+                }
+            }
+        }
+
+        Entry entry = new Entry(config, granted, System.nanoTime() + config.permissionCacheTtl * 1_000_000_000L);
+        entries.put(player.getUniqueId(), entry);
+        // A status check finishing after the player left must not keep the entry, nothing would remove it again
+        if (!player.isConnected()) {
+            entries.remove(player.getUniqueId(), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Check the permissions of the player again, e.g. after the player logged in or the permissions changed.
+     *
+     * @param player The player
+     */
+    public void update(ProxiedPlayer player) {
+        refresh(player);
+    }
+
+    /**
+     * Forget the cached permissions of the player.
+     * They are checked again on the next lookup.
+     *
+     * @param playerId The UUID of the player
+     */
+    public void invalidate(UUID playerId) {
+        entries.remove(playerId);
+    }
+
+    /**
+     * Forget the cached permissions of all players.
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -15,7 +15,12 @@ import net.md_5.bungee.api.event.*;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
@@ -26,18 +31,20 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
  * Listens player events for auto start and stop the server.
  */
 public class PlayerListener implements Listener {
+    /**
+     * Players whose target server was already checked during login (player UUID -> server name).
+     * The check is not repeated when they connect to that server.
+     */
+    private final Map<UUID, String> checkedAtLogin = new ConcurrentHashMap<>();
 
     @EventHandler
     public void onPlayerLogin(PostLoginEvent event) {
         ProxiedPlayer player = event.getPlayer();
         ProxyServer instance = ProxyServer.getInstance();
 
-        // Call permission check for the all servers to register the permission to LuckPerms
-        for (ServerInfo server : instance.getServers().values()) {
-            player.hasPermission("ptero.autostart." + server.getName());
-            player.hasPermission("ptero.start." + server.getName());
-            player.hasPermission("ptero.stop." + server.getName());
-        }
+        // Check the permissions for all managed servers once
+        // This also registers the permissions to LuckPerms
+        plugin.permissionCache.update(player);
 
         // If the player has the permission to reload the config, notice update if available
         if (player.hasPermission("ptero.reload")) {
@@ -51,21 +58,126 @@ public class PlayerListener implements Listener {
                 );
             }
         }
+
+        // Check the target server before the player is connected to it
+        if (plugin.config.useSynchronousPing) {
+            checkBeforeJoin(event);
+        }
+    }
+
+    /**
+     * Check the status of the target server during login, so that a custom message can be shown by disconnecting the player
+     * instead of "Could not connect to a default or fallback server".
+     * The login is held with an intent until the status is known or the deadline passes, without blocking the event thread.
+     *
+     * @param event The login event
+     */
+    private void checkBeforeJoin(PostLoginEvent event) {
+        // Get the target server
+        ServerInfo targetServer = event.getTarget();
+        if (targetServer == null) {
+            return;
+        }
+        ProxiedPlayer player = event.getPlayer();
+        String serverName = targetServer.getName();
+
+        // Permission check
+        boolean autostart = plugin.permissionCache.has(player, serverName, PermissionCache.Node.AUTOSTART);
+        boolean start = plugin.permissionCache.has(player, serverName, PermissionCache.Node.START);
+        if (!autostart && !start) {
+            return;
+        }
+
+        // If anyone is connected to the target server, nothing needs to be done
+        if (!targetServer.getPlayers().isEmpty()) {
+            return;
+        }
+
+        // Get the Pterodactyl server ID
+        Config.ServerConfig server = plugin.config.getServerConfig(serverName);
+        if (server == null) {
+            return;
+        }
+
+        // Hold the login until the status is known
+        event.registerIntent(plugin);
+        ServerController.checkPowerStatus(targetServer, server)
+                .orTimeout(plugin.config.synchronousPingTimeout, TimeUnit.SECONDS)
+                .whenComplete((status, error) -> {
+                    try {
+                        if (error != null) {
+                            handleLoginCheckFailure(player, serverName, error);
+                            return;
+                        }
+
+                        // The status is known, the connect event does not need to check it again
+                        checkedAtLogin.put(player.getUniqueId(), serverName);
+                        if (status == PowerStatus.STARTING) {
+                            handleStarting(player, serverName, true);
+                        } else if (status == PowerStatus.OFFLINE) {
+                            handleOffline(player, serverName, server, true);
+                        }
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Failed to handle the status of server: " + serverName, e);
+                    } finally {
+                        // Let the login continue
+                        event.completeIntent(plugin);
+                    }
+                });
+    }
+
+    /**
+     * Decide what to do when the status check during login did not succeed.
+     *
+     * @param player     The player logging in
+     * @param serverName The name of the target server
+     * @param error      The error of the status check
+     */
+    private void handleLoginCheckFailure(ProxiedPlayer player, String serverName, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(cause instanceof TimeoutException)) {
+            // The connect event checks the status again
+            logger.log(Level.WARNING, "Failed to ping server: " + serverName, cause);
+            return;
+        }
+
+        logger.warning(String.format("Checking server %s took more than %d seconds during login of %s", serverName, plugin.config.synchronousPingTimeout, player.getName()));
+        if ("disconnect".equals(plugin.config.synchronousPingOnTimeout)) {
+            // Ask the player to reconnect
+            player.disconnect(new ComponentBuilder(plugin.messages.getMessage("join_autostart_timeout_login", serverName)).color(ChatColor.YELLOW).create());
+        }
+        // Otherwise let the player in, and the connect event handles the status when it arrives
     }
 
     @EventHandler
     public void onServerConnect(ServerConnectEvent event) {
+        // Send players of a server group to a member that is already running
+        ServerInfo warmServer = plugin.standby.route(event.getTarget());
+        if (warmServer != null) {
+            event.setTarget(warmServer);
+        }
+
         // Get the target server
         ServerInfo targetServer = event.getTarget();
         ProxiedPlayer player = event.getPlayer();
 
         // Cancel the task to stop the server
         String serverName = targetServer.getName();
-        plugin.delay.cancelStop(serverName);
+        ServerController.cancelStop(serverName);
+        // Remember when players join the server to prewarm it next time
+        plugin.prewarmer.recordJoin(serverName);
+        // Servers used recently are the last to be stopped to make room on their node
+        plugin.capacity.touch(serverName);
+
+        // If the server was already checked during login, do not check it again
+        String checkedServerName = checkedAtLogin.remove(player.getUniqueId());
+        if (event.getReason() == ServerConnectEvent.Reason.JOIN_PROXY && serverName.equals(checkedServerName)) {
+            return;
+        }
 
         // Permission check
-        boolean autostart = player.hasPermission("ptero.autostart." + serverName);
-        boolean start = player.hasPermission("ptero.start." + serverName);
+        boolean autostart = plugin.permissionCache.has(player, serverName, PermissionCache.Node.AUTOSTART);
+        boolean start = plugin.permissionCache.has(player, serverName, PermissionCache.Node.START);
         if (!autostart && !start) {
             return;
         }
@@ -81,54 +193,38 @@ public class PlayerListener implements Listener {
             return;
         }
 
-        // Check if the event is a join event
-        boolean isLogin = event.getReason() == ServerConnectEvent.Reason.JOIN_PROXY;
-        // Send pings to the server synchronously
-        boolean useSynchronousPing = isLogin && plugin.config.useSynchronousPing;
-
         // Ping the target server and check if it is offline
-        CompletableFuture<Void> offlineFuture = ServerController.checkPowerStatus(targetServer, server)
+        ServerController.checkPowerStatus(targetServer, server)
                 .thenAccept(status -> {
                     // If the server is not running, handle it
                     if (status == PowerStatus.STARTING) {
-                        handleStarting(player, serverName, useSynchronousPing, event);
+                        handleStarting(player, serverName, false);
                     } else if (status == PowerStatus.OFFLINE) {
-                        handleOffline(player, serverName, server, useSynchronousPing, event);
+                        handleOffline(player, serverName, server, false);
                     }
                 })
                 .exceptionally((Throwable e) -> {
                     logger.log(Level.WARNING, "Failed to ping server: " + serverName, e);
                     return null;
                 });
-
-        if (useSynchronousPing) {
-            // In synchronous mode, block
-            try {
-                offlineFuture.get();
-            } catch (Exception e) {
-                logger.log(Level.WARNING, "Failed to wait for ping: " + serverName, e);
-            }
-        }
     }
 
     /**
      * Handles when a player attempts to connect to a server that is starting.
      *
-     * @param player             The player attempting to connect.
-     * @param serverName         The name of the server the player is trying to connect to.
-     * @param useSynchronousPing Whether synchronous ping is enabled to handle custom messages.
-     * @param event              The server connection event triggered by the player.
+     * @param player     The player attempting to connect.
+     * @param serverName The name of the server the player is trying to connect to.
+     * @param atLogin    Whether the player is logging in, so that a custom message can be shown by disconnecting the player.
      */
     private void handleStarting(
             ProxiedPlayer player,
             String serverName,
-            boolean useSynchronousPing,
-            ServerConnectEvent event
+            boolean atLogin
     ) {
         // Permission check
-        if (player.hasPermission("ptero.autostart." + serverName)) {
-            // If synchronous ping is enabled, we can disconnect the player to show a custom message instead of "Could not connect to a default or fallback server".
-            if (useSynchronousPing) {
+        if (plugin.permissionCache.has(player, serverName, PermissionCache.Node.AUTOSTART)) {
+            // During login, we can disconnect the player to show a custom message instead of "Could not connect to a default or fallback server".
+            if (atLogin) {
                 // Disconnect the player to show custom message
                 player.disconnect(new ComponentBuilder(plugin.messages.getMessage("join_autostart_starting_login", serverName)).color(ChatColor.YELLOW).create());
             } else {
@@ -138,11 +234,6 @@ public class PlayerListener implements Listener {
                         .subTitle(new ComponentBuilder(plugin.messages.getMessage("join_autostart_starting_subtitle", serverName)).create())
                 );
             }
-
-            // If synchronous ping is enabled, we can suppress "Could not connect to a default or fallback server" message
-            if (useSynchronousPing) {
-                event.setCancelled(true);
-            }
         } else {
             // Send message that the server is starting
             player.sendMessage(plugin.messages.warning("join_start_starting", serverName));
@@ -152,23 +243,21 @@ public class PlayerListener implements Listener {
     /**
      * Handles when a player attempts to connect to a server that is offline.
      *
-     * @param player             The player attempting to connect.
-     * @param serverName         The name of the server the player is trying to connect to.
-     * @param server             The configuration of the target server.
-     * @param useSynchronousPing Whether synchronous ping is enabled to handle custom messages.
-     * @param event              The server connection event triggered by the player.
+     * @param player     The player attempting to connect.
+     * @param serverName The name of the server the player is trying to connect to.
+     * @param server     The configuration of the target server.
+     * @param atLogin    Whether the player is logging in, so that a custom message can be shown by disconnecting the player.
      */
     private void handleOffline(
             ProxiedPlayer player,
             String serverName,
             Config.ServerConfig server,
-            boolean useSynchronousPing,
-            ServerConnectEvent event
+            boolean atLogin
     ) {
         // Permission check
-        if (player.hasPermission("ptero.autostart." + serverName)) {
-            // If synchronous ping is enabled, we can disconnect the player to show a custom message instead of "Could not connect to a default or fallback server".
-            if (useSynchronousPing) {
+        if (plugin.permissionCache.has(player, serverName, PermissionCache.Node.AUTOSTART)) {
+            // During login, we can disconnect the player to show a custom message instead of "Could not connect to a default or fallback server".
+            if (atLogin) {
                 // Disconnect the player to show custom message
                 player.disconnect(new ComponentBuilder(plugin.messages.getMessage("join_autostart_login", serverName)).color(ChatColor.YELLOW).create());
             } else {
@@ -186,11 +275,6 @@ public class PlayerListener implements Listener {
             plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.START_SERVER_AUTOJOIN);
             plugin.statistics.startReasonRecorder.recordStart(serverName, Statistics.StartReasonRecorder.StartReason.AUTOJOIN);
 
-            // If synchronous ping is enabled, we can suppress "Could not connect to a default or fallback server" message
-            if (useSynchronousPing) {
-                event.setCancelled(true);
-            }
-
         } else {
             // Send message including the command to start the server
             player.sendMessage(plugin.messages.warning("join_start", serverName));
@@ -206,6 +290,10 @@ public class PlayerListener implements Listener {
 
     @EventHandler(priority = (byte) 1024)
     public void onPlayerDisconnect(PlayerDisconnectEvent event) {
+        // Forget the login check of a player who never connected to the server, and the cached permissions
+        checkedAtLogin.remove(event.getPlayer().getUniqueId());
+        plugin.permissionCache.invalidate(event.getPlayer().getUniqueId());
+
         // Called when a player disconnect from proxy IN the target server
         Server server = event.getPlayer().getServer();
         if (server == null) {
@@ -244,6 +332,9 @@ public class PlayerListener implements Listener {
      * @param targetServer The target server
      */
     private void onPlayerQuit(ProxiedPlayer player, ServerInfo targetServer) {
+        // The server has been used until now
+        plugin.capacity.touch(targetServer.getName());
+
         // If you are last player on the target server, stop the server after a while
         // Check if the server is empty, or only you are on the server
         if (!(targetServer.getPlayers().isEmpty()
@@ -0,0 +1,406 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Starts servers ahead of the times players usually join them.
+ * The joins of each server are recorded into a time-of-week histogram of half-hour slots,
+ * where each slot remembers in which of the past weeks someone joined.
+ * A server is started when the share of past weeks with a join in the upcoming slot reaches the threshold.
+ */
+public class Prewarmer {
+    /**
+     * The length of a slot in minutes
+     */
+    private static final int SLOT_MINUTES = 30;
+    /**
+     * The number of slots in a week
+     */
+    private static final int SLOTS = 7 * 24 * 60 / SLOT_MINUTES;
+    /**
+     * The number of past weeks the prediction is based on
+     */
+    private static final int WEEKS = 8;
+    /**
+     * The bits kept per slot, the current week and the past weeks
+     */
+    private static final long WEEK_MASK = (1L << (WEEKS + 1)) - 1;
+    /**
+     * The interval of the prediction in seconds
+     */
+    private static final int CHECK_INTERVAL = 60;
+
+    /**
+     * The join histogram per server name
+     */
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    /**
+     * The prewarm budget used per server name
+     */
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<>();
+    /**
+     * The servers started by a prewarm that nobody has joined yet
+     */
+    private final Set<String> unclaimed = ConcurrentHashMap.newKeySet();
+    /**
+     * The scheduled prediction task, or null if not running
+     */
+    private ScheduledTask task;
+    /**
+     * Whether the histograms have changed since they were saved
+     */
+    private volatile boolean dirty;
+
+    /**
+     * The weeks in which someone joined a server, per slot of the week
+     */
+    private static class Histogram {
+        /**
+         * The first week a join was recorded
+         */
+        private long firstWeek;
+        /**
+         * The week of bit 0 of the masks
+         */
+        private long currentWeek;
+        /**
+         * Per slot, bit n is set if someone joined n weeks before the current week
+         */
+        private final long[] masks = new long[SLOTS];
+
+        private Histogram(long week) {
+            this.firstWeek = week;
+            this.currentWeek = week;
+        }
+
+        /**
+         * Move the current week forward, shifting the older weeks out
+         *
+         * @param week The new current week
+         */
+        private void advance(long week) {
+            long shift = week - currentWeek;
+            if (shift <= 0) {
+                return;
+            }
+            for (int i = 0; i < SLOTS; i++) {
+                masks[i] = shift > WEEKS ? 0 : (masks[i] << shift) & WEEK_MASK;
+            }
+            currentWeek = week;
+        }
+
+        /**
+         * Record a join
+         *
+         * @param week The week of the join
+         * @param slot The slot of the join
+         */
+        private synchronized void record(long week, int slot) {
+            advance(week);
+            long age = currentWeek - week;
+            if (age <= WEEKS) {
+                masks[slot] |= 1L << age;
+            }
+        }
+
+        /**
+         * Get the share of the past weeks in which someone joined in the slot.
+         * The masks are not shifted, so that looking ahead into the next week does not drop the oldest week.
+         *
+         * @param week The week of the slot
+         * @param slot The slot
+         * @return The probability between 0 and 1, or 0 if there is no full week of history yet
+         */
+        private synchronized double probability(long week, int slot) {
+            int observed = (int) Math.min(WEEKS, week - firstWeek);
+            if (observed <= 0) {
+                return 0;
+            }
+            // The bit of the week before the asked week, negative if the asked week is after the current week
+            long bit = currentWeek - week + 1;
+            long past;
+            if (bit >= Long.SIZE || -bit >= Long.SIZE) {
+                past = 0;
+            } else {
+                past = bit >= 0 ? masks[slot] >>> bit : masks[slot] << -bit;
+            }
+            return (double) Long.bitCount(past & ((1L << observed) - 1)) / observed;
+        }
+    }
+
+    /**
+     * The prewarm starts of a server on a day
+     */
+    private static class Budget {
+        private final long day;
+        private int used;
+
+        private Budget(long day) {
+            this.day = day;
+        }
+    }
+
+    /**
+     * Start predicting with the current configuration.
+     */
+    public synchronized void start() {
+        stop();
+
+        if (!plugin.config.prewarmEnabled) {
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop predicting, and save the histograms.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        save();
+    }
+
+    /**
+     * Record that a player is joining a server
+     *
+     * @param serverName The name of the server
+     */
+    public void recordJoin(String serverName) {
+        recordJoin(serverName, ZonedDateTime.now());
+    }
+
+    /**
+     * Record that a player joined a server at the specified time
+     *
+     * @param serverName The name of the server
+     * @param time       The time of the join
+     */
+    void recordJoin(String serverName, ZonedDateTime time) {
+        if (!plugin.config.prewarmEnabled || plugin.config.getServerConfig(serverName) == null) {
+            return;
+        }
+
+        long week = weekOf(time);
+        histograms.computeIfAbsent(serverName, k -> new Histogram(week)).record(week, slotOf(time));
+        dirty = true;
+
+        // The first join after a prewarm makes it a hit
+        if (unclaimed.remove(serverName)) {
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.PREWARM_HIT);
+            logger.fine("Prewarmed server " + serverName + " has been joined");
+        }
+    }
+
+    /**
+     * Forget the prewarm of a server that is being stopped
+     *
+     * @param serverName The name of the server
+     */
+    public void forget(String serverName) {
+        unclaimed.remove(serverName);
+    }
+
+    /**
+     * Get the predicted probability that someone joins the server in the slot of the specified time
+     *
+     * @param serverName The name of the server
+     * @param time       The time
+     * @return The probability between 0 and 1
+     */
+    public double getProbability(String serverName, ZonedDateTime time) {
+        Histogram histogram = histograms.get(serverName);
+        return histogram == null ? 0 : histogram.probability(weekOf(time), slotOf(time));
+    }
+
+    /**
+     * Start the offline servers that are likely to be joined within the lead time
+     */
+    void check() {
+        ZonedDateTime target = ZonedDateTime.now().plusSeconds(plugin.config.prewarmLeadTime);
+        long today = ZonedDateTime.now().toLocalDate().toEpochDay();
+        for (String serverName : plugin.config.getServerNames()) {
+            Config.ServerConfig server = plugin.config.getServerConfig(serverName);
+            // Only servers that stop by themselves if nobody comes
+            if (server == null || server.timeout <= 0) {
+                continue;
+            }
+
+            // Only servers known to be offline, and without players
+            if (plugin.lifecycle.get(serverName) != ServerLifecycle.State.OFFLINE) {
+                continue;
+            }
+            ServerInfo serverInfo = plugin.getProxy().getServerInfo(serverName);
+            if (serverInfo != null && !serverInfo.getPlayers().isEmpty()) {
+                continue;
+            }
+            double probability = getProbability(serverName, target);
+            if (probability < plugin.config.prewarmThreshold) {
+                continue;
+            }
+            if (!useBudget(serverName, server, today)) {
+                logger.fine("Prewarm budget of server " + serverName + " is used up for today");
+                continue;
+            }
+
+            logger.info(String.format("Prewarming server %s (join probability %.0f%% at %s)", serverName, probability * 100, target.toLocalTime().withSecond(0).withNano(0)));
+            unclaimed.add(serverName);
+            // Keep the server running until the players are expected, even if the start timeout is shorter
+            ServerController.sendPowerSignal(plugin.getProxy().getConsole(), serverName, server, PowerSignal.START, plugin.config.prewarmLeadTime);
+
+            // Record statistics
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.START_SERVER_PREWARM);
+            plugin.statistics.startReasonRecorder.recordStart(serverName, Statistics.StartReasonRecorder.StartReason.PREWARM);
+        }
+
+        // Keep the histograms on disk in case the proxy crashes
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * Use one prewarm start of the daily budget of the server
+     *
+     * @param serverName The name of the server
+     * @param server     The server configuration
+     * @param today      The current day (epoch day)
+     * @return true if the budget was not used up
+     */
+    private boolean useBudget(String serverName, Config.ServerConfig server, long today) {
+        int limit = server.prewarmBudget >= 0 ? server.prewarmBudget : plugin.config.prewarmBudget;
+        Budget budget = budgets.compute(serverName, (k, existing) -> existing == null || existing.day != today ? new Budget(today) : existing);
+        synchronized (budget) {
+            if (budget.used >= limit) {
+                return false;
+            }
+            budget.used++;
+            return true;
+        }
+    }
+
+    /**
+     * Get the week of a time, counted from the epoch with weeks starting on Monday
+     *
+     * @param time The time
+     * @return The week number
+     */
+    private static long weekOf(ZonedDateTime time) {
+        // 1970-01-01 is a Thursday
+        return Math.floorDiv(time.toLocalDate().toEpochDay() + 3, 7);
+    }
+
+    /**
+     * Get the slot of the week of a time
+     *
+     * @param time The time
+     * @return The slot, 0 is Monday 00:00
+     */
+    private static int slotOf(ZonedDateTime time) {
+        int minuteOfWeek = (time.getDayOfWeek().getValue() - 1) * 24 * 60 + time.getHour() * 60 + time.getMinute();
+        return minuteOfWeek / SLOT_MINUTES;
+    }
+
+    /**
+     * Get the file the histograms are saved to
+     *
+     * @return The file
+     */
+    private static File getFile() {
+        return new File(plugin.getDataFolder(), "join-history.log");
+    }
+
+    /**
+     * Read the histograms saved by the previous run.
+     * Each line is "&lt;first week&gt; &lt;current week&gt; &lt;masks in hex, comma separated&gt; &lt;server name&gt;" separated by tabs.
+     */
+    public void load() {
+        File file = getFile();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                String[] record = line.split("\t", 4);
+                if (record.length != 4) {
+                    continue;
+                }
+                try {
+                    String[] masks = record[2].split(",");
+                    if (masks.length != SLOTS) {
+                        continue;
+                    }
+                    Histogram histogram = new Histogram(Long.parseLong(record[1]));
+                    histogram.firstWeek = Long.parseLong(record[0]);
+                    for (int i = 0; i < SLOTS; i++) {
+                        histogram.masks[i] = Long.parseLong(masks[i], 16) & WEEK_MASK;
+                    }
+                    histograms.put(record[3], histogram);
+                } catch (NumberFormatException e) {
+                    // Ignore a broken line
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read the join history: " + file, e);
+        }
+    }
+
+    /**
+     * Write the histograms, replacing the previous file at once
+     */
+    private synchronized void save() {
+        if (histograms.isEmpty()) {
+            return;
+        }
+        dirty = false;
+
+        File file = getFile();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                    Histogram histogram = entry.getValue();
+                    StringBuilder line = new StringBuilder();
+                    synchronized (histogram) {
+                        line.append(histogram.firstWeek).append('\t').append(histogram.currentWeek).append('\t');
+                        for (int i = 0; i < SLOTS; i++) {
+                            if (i > 0) {
+                                line.append(',');
+                            }
+                            line.append(Long.toHexString(histogram.masks[i]));
+                        }
+                    }
+                    line.append('\t').append(entry.getKey());
+                    out.write(line.toString());
+                    out.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save the join history: " + file, e);
+        }
+    }
+}
@@ -68,7 +68,8 @@ public class PteroCommand extends Command implements TabExecutor {
                 String serverName = args[1];
 
                 // Permission check
-                if (!sender.hasPermission("ptero." + subCommand + "." + serverName)) {
+                PermissionCache.Node node = subCommand.equals("start") ? PermissionCache.Node.START : PermissionCache.Node.STOP;
+                if (!plugin.permissionCache.has(sender, serverName, node)) {
                     sender.sendMessage(plugin.messages.error("command_insufficient_permission"));
                     return;
                 }
@@ -87,7 +88,7 @@ public class PteroCommand extends Command implements TabExecutor {
 
                 // Cancel existing stop task
                 if (signal == PowerSignal.STOP) {
-                    plugin.delay.cancelStop(serverName);
+                    ServerController.cancelStop(serverName);
                 }
 
                 // Send signal and auto join
@@ -144,9 +145,10 @@ public class PteroCommand extends Command implements TabExecutor {
             String subCommand = args[0];
             if (subCommand.equalsIgnoreCase("start") || subCommand.equalsIgnoreCase("stop")) {
                 // Complete server names that the sender has permission to
+                PermissionCache.Node node = subCommand.equalsIgnoreCase("start") ? PermissionCache.Node.START : PermissionCache.Node.STOP;
                 return plugin.config.getServerNames().stream()
                         .filter(name -> name.startsWith(args[1]))
-                        .filter(name -> sender.hasPermission("ptero." + subCommand + "." + name))
+                        .filter(name -> plugin.permissionCache.has(sender, name, node))
                         .filter(name -> plugin.config.getServerConfig(name) != null)
                         .collect(Collectors.toList());
             }
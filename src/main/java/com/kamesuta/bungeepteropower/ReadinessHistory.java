@@ -0,0 +1,164 @@
+package com.kamesuta.bungeepteropower;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Remembers how long each server took to start and stop, and plans the polls of the next wait from it.
+ * Polls are sparse early on and dense near the expected ready time.
+ */
+public class ReadinessHistory {
+    /**
+     * The weight of the latest duration in the moving average
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * What the server is waited for
+     */
+    public enum Phase {
+        START,
+        STOP
+    }
+
+    /**
+     * Statistics per server name and phase
+     */
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * The statistics of a server and phase
+     */
+    public static class Stats {
+        /**
+         * The moving average of the duration in milliseconds, or 0 if nothing has been recorded yet
+         */
+        private volatile double expectedMillis;
+        /**
+         * The number of recorded waits
+         */
+        private volatile int count;
+        /**
+         * The number of polls of the latest wait
+         */
+        private volatile int lastPolls;
+        /**
+         * The total number of polls of all recorded waits
+         */
+        private volatile long totalPolls;
+
+        /**
+         * Get the expected duration
+         *
+         * @return The moving average of the duration in milliseconds, or 0 if unknown
+         */
+        public long getExpectedMillis() {
+            return (long) expectedMillis;
+        }
+
+        /**
+         * Get the number of recorded waits
+         *
+         * @return The number of waits
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Get the number of polls the latest wait took
+         *
+         * @return The number of polls
+         */
+        public int getLastPolls() {
+            return lastPolls;
+        }
+
+        /**
+         * Get the average number of polls per wait
+         *
+         * @return The average number of polls, or 0 if nothing has been recorded yet
+         */
+        public double getAveragePolls() {
+            int n = count;
+            return n == 0 ? 0 : (double) totalPolls / n;
+        }
+    }
+
+    /**
+     * Record a finished wait
+     *
+     * @param serverName     The name of the server
+     * @param phase          What the server was waited for
+     * @param durationMillis How long it took until the server was ready
+     * @param polls          The number of polls it took
+     */
+    public void record(String serverName, Phase phase, long durationMillis, int polls) {
+        Stats entry = stats.computeIfAbsent(key(serverName, phase), k -> new Stats());
+        synchronized (entry) {
+            entry.expectedMillis = entry.count == 0
+                    ? durationMillis
+                    : entry.expectedMillis + SMOOTHING * (durationMillis - entry.expectedMillis);
+            entry.count++;
+            entry.lastPolls = polls;
+            entry.totalPolls += polls;
+        }
+    }
+
+    /**
+     * Get the statistics of a server
+     *
+     * @param serverName The name of the server
+     * @param phase      What the server was waited for
+     * @return The statistics, or null if nothing has been recorded
+     */
+    public @Nullable Stats get(String serverName, Phase phase) {
+        return stats.get(key(serverName, phase));
+    }
+
+    /**
+     * Plan the delay until the next poll.
+     * Without history, the configured interval is used.
+     * With history, the delay halves the remaining time to the expected ready time, so that polls get denser as it approaches,
+     * and grows slowly again once the server is late.
+     * The delay is always kept between adaptivePolling.minInterval and adaptivePolling.maxInterval.
+     *
+     * @param serverName      The name of the server
+     * @param phase           What the server is waited for
+     * @param elapsedMillis   The time since the wait started
+     * @param intervalSeconds The configured interval of the phase
+     * @return The delay in milliseconds
+     */
+    public long nextDelayMillis(String serverName, Phase phase, long elapsedMillis, int intervalSeconds) {
+        long interval = intervalSeconds * 1000L;
+        Stats entry = get(serverName, phase);
+        if (!plugin.config.adaptivePollingEnabled || entry == null || entry.count == 0) {
+            return interval;
+        }
+
+        long expected = entry.getExpectedMillis();
+        long remaining = expected - elapsedMillis;
+        long delay = remaining > 0
+                // Sparse early, dense near the expected time
+                ? remaining / 2
+                // Late, back off slowly
+                : -remaining / 4;
+        long floor = (long) (plugin.config.adaptivePollingMinInterval * 1000);
+        long ceiling = (long) (plugin.config.adaptivePollingMaxInterval * 1000);
+        return Math.max(floor, Math.min(ceiling, delay));
+    }
+
+    /**
+     * Build the key of a server and phase
+     *
+     * @param serverName The name of the server
+     * @param phase      What the server is waited for
+     * @return The key
+     */
+    private static String key(String serverName, Phase phase) {
+        return phase + ":" + serverName;
+    }
+}
@@ -0,0 +1,399 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.StatusSubscription;
+import net.md_5.bungee.api.Callback;
+import net.md_5.bungee.api.ServerPing;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Waits for servers to become ready.
+ * All callers waiting for the same server and the same state share a single poll loop,
+ * which fans the result out to every waiter and stops as soon as nobody is waiting anymore.
+ */
+public class ReadinessWaiter {
+    /**
+     * The poll loops in progress
+     */
+    private final ConcurrentMap<Key, Waiter> waiters = new ConcurrentHashMap<>();
+    /**
+     * How long the servers took to become ready before
+     */
+    private final ReadinessHistory history = new ReadinessHistory();
+
+    /**
+     * What is being waited for
+     */
+    private static class Key {
+        private final String serverName;
+        /**
+         * The target power status, or null to wait until the server answers a ping
+         */
+        private final PowerStatus targetStatus;
+
+        private Key(String serverName, PowerStatus targetStatus) {
+            this.serverName = serverName;
+            this.targetStatus = targetStatus;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return serverName.equals(key.serverName) && targetStatus == key.targetStatus;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverName, targetStatus);
+        }
+
+        /**
+         * Get what the server is waited for
+         *
+         * @return STOP when waiting for the server to go down, otherwise START
+         */
+        private ReadinessHistory.Phase getPhase() {
+            return targetStatus == PowerStatus.OFFLINE || targetStatus == PowerStatus.STOPPING
+                    ? ReadinessHistory.Phase.STOP
+                    : ReadinessHistory.Phase.START;
+        }
+    }
+
+    /**
+     * A poll loop and the callers waiting for it
+     */
+    private abstract class Waiter {
+        protected final Key key;
+        /**
+         * The futures of the waiting callers
+         */
+        private final Set<CompletableFuture<Void>> subscribers = ConcurrentHashMap.newKeySet();
+        /**
+         * The time (System.nanoTime) when the loop started
+         */
+        private final long startedAt = System.nanoTime();
+        /**
+         * The number of pings or status checks sent
+         */
+        private final AtomicInteger polls = new AtomicInteger();
+
+        private Waiter(Key key) {
+            this.key = key;
+        }
+
+        /**
+         * Count a ping or status check
+         */
+        protected void countPoll() {
+            polls.incrementAndGet();
+        }
+
+        /**
+         * Get the delay until the next poll
+         *
+         * @return The delay in milliseconds
+         */
+        protected long nextDelayMillis() {
+            ReadinessHistory.Phase phase = key.getPhase();
+            int interval = phase == ReadinessHistory.Phase.STOP ? plugin.config.restorePingInterval : plugin.config.pingInterval;
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            return history.nextDelayMillis(key.serverName, phase, elapsed, interval);
+        }
+
+        /**
+         * Check if this loop should keep polling
+         *
+         * @return true if someone is still waiting for this loop
+         */
+        protected boolean isActive() {
+            return waiters.get(key) == this;
+        }
+
+        /**
+         * The target has been reached, complete all waiters
+         */
+        protected void complete() {
+            if (!waiters.remove(key, this)) {
+                return;
+            }
+            stop();
+
+            // Remember how long it took, unless the server was already ready at the first poll
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            int pollCount = polls.get();
+            if (pollCount > 1) {
+                history.record(key.serverName, key.getPhase(), duration, pollCount);
+                logger.info(String.format("Server %s is %s after %.1f sec and %d polls",
+                        key.serverName, key.getPhase() == ReadinessHistory.Phase.STOP ? "stopped" : "ready", duration / 1000.0, pollCount));
+            }
+
+            List<CompletableFuture<Void>> completed = new ArrayList<>(subscribers);
+            completed.forEach(future -> future.complete(null));
+        }
+
+        /**
+         * Remove a waiter, and end the loop if nobody is waiting anymore
+         *
+         * @param future The future of the waiter
+         */
+        private void unsubscribe(CompletableFuture<Void> future) {
+            subscribers.remove(future);
+            boolean[] ended = new boolean[1];
+            waiters.computeIfPresent(key, (k, existing) -> {
+                if (existing == this && subscribers.isEmpty()) {
+                    ended[0] = true;
+                    return null;
+                }
+                return existing;
+            });
+            if (ended[0]) {
+                logger.fine("Nobody is waiting for server " + key.serverName + " anymore, stop polling");
+                stop();
+            }
+        }
+
+        /**
+         * Start polling
+         */
+        protected abstract void start();
+
+        /**
+         * Release the resources of the loop
+         */
+        protected void stop() {
+        }
+    }
+
+    /**
+     * Wait until the server answers a BungeeCord ping
+     *
+     * @param serverInfo The server to wait for
+     * @return A future that completes when the server is started, or fails after startupJoin.timeout
+     */
+    public CompletableFuture<Void> awaitPingable(ServerInfo serverInfo) {
+        return subscribe(new Key(serverInfo.getName(), null), key -> new PingWaiter(key, serverInfo));
+    }
+
+    /**
+     * Wait until the server reaches the specified power status.
+     * If the power controller supports live status, the status changes are pushed and polling is paused while it is connected.
+     *
+     * @param serverName   The name of the server
+     * @param serverId     The server ID
+     * @param targetStatus The power status to wait for
+     * @return A future that completes when the server reaches the target status,
+     * or fails after startupJoin.timeout (startTimeout if it is 0, restoreOnStop.timeout when waiting for the server to stop)
+     */
+    public CompletableFuture<Void> awaitStatus(String serverName, String serverId, PowerStatus targetStatus) {
+        return subscribe(new Key(serverName, targetStatus), key -> new StatusWaiter(key, serverId));
+    }
+
+    /**
+     * Get the number of poll loops in progress
+     *
+     * @return The number of poll loops
+     */
+    public int getActiveCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Get how long the servers took to become ready before, and how many polls it took
+     *
+     * @return The history
+     */
+    public ReadinessHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Join the poll loop of the key, or start a new one
+     *
+     * @param key     What to wait for
+     * @param factory Creates a new poll loop
+     * @return A future that completes when the target is reached
+     */
+    private CompletableFuture<Void> subscribe(Key key, Function<Key, Waiter> factory) {
+        // Each waiter has its own timeout
+        // Without auto join, a start is bounded by startTimeout instead
+        int timeout;
+        if (key.getPhase() == ReadinessHistory.Phase.STOP) {
+            timeout = plugin.config.restoreTimeout;
+        } else {
+            timeout = plugin.config.startupJoinTimeout > 0 ? plugin.config.startupJoinTimeout : plugin.config.startTimeout;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<Void>().orTimeout(timeout, TimeUnit.SECONDS);
+
+        Waiter[] created = new Waiter[1];
+        Waiter waiter = waiters.compute(key, (k, existing) -> {
+            Waiter current = existing;
+            if (current == null) {
+                current = created[0] = factory.apply(k);
+            }
+            current.subscribers.add(future);
+            return current;
+        });
+
+        // Leave the loop when the waiter completes or times out
+        future.whenComplete((v, e) -> waiter.unsubscribe(future));
+        if (created[0] != null) {
+            created[0].start();
+        } else {
+            logger.fine("Joined the wait for server " + key.serverName);
+        }
+        return future;
+    }
+
+    /**
+     * Pings the server until it answers
+     */
+    private class PingWaiter extends Waiter {
+        private final ServerInfo serverInfo;
+
+        private PingWaiter(Key key, ServerInfo serverInfo) {
+            super(key);
+            this.serverInfo = serverInfo;
+        }
+
+        @Override
+        protected void start() {
+            Callback<ServerPing> callback = new Callback<>() {
+                @Override
+                public void done(ServerPing serverPing, Throwable throwable) {
+                    // Do nothing if nobody waits anymore
+                    if (!isActive()) {
+                        return;
+                    }
+                    // Complete if the ping was successful
+                    if (throwable == null && serverPing != null) {
+                        complete();
+                        return;
+                    }
+                    // Otherwise schedule another ping
+                    Callback<ServerPing> self = this;
+                    plugin.getProxy().getScheduler().schedule(plugin, () -> {
+                        if (isActive()) {
+                            countPoll();
+                            serverInfo.ping(self);
+                        }
+                    }, nextDelayMillis(), TimeUnit.MILLISECONDS);
+                }
+            };
+            countPoll();
+            serverInfo.ping(callback);
+        }
+    }
+
+    /**
+     * Polls the power status until it reaches the target
+     */
+    private class StatusWaiter extends Waiter {
+        private final String serverId;
+        private final PowerStatus targetStatus;
+        private final PowerController powerController;
+        /**
+         * The live status subscription, or null if not supported
+         */
+        private volatile StatusSubscription subscription;
+
+        private StatusWaiter(Key key, String serverId) {
+            super(key);
+            this.serverId = serverId;
+            this.targetStatus = key.targetStatus;
+            this.powerController = plugin.config.getPowerController(key.serverName);
+        }
+
+        @Override
+        protected void start() {
+            // Receive status changes as soon as they happen if the power controller supports it
+            subscription = powerController.subscribePowerStatus(key.serverName, serverId, status -> {
+                if (status == targetStatus && isActive()) {
+                    complete();
+                }
+            });
+            // The loop may have ended while subscribing
+            if (!isActive()) {
+                stop();
+                return;
+            }
+            // Initial check
+            check();
+        }
+
+        @Override
+        protected void stop() {
+            StatusSubscription current = subscription;
+            if (current != null) {
+                subscription = null;
+                current.close();
+            }
+        }
+
+        /**
+         * Handle a received status
+         *
+         * @param status The current status
+         */
+        private void accept(PowerStatus status) {
+            // Do nothing if nobody waits anymore
+            if (!isActive()) {
+                return;
+            }
+            // Complete if the server has reached the target status
+            if (status == targetStatus) {
+                complete();
+                return;
+            }
+            // Otherwise schedule another check
+            logger.fine("Server is not in target state. Current state: " + status + ", Target state: " + targetStatus + " for server: " + key.serverName);
+            scheduleNext();
+        }
+
+        private void scheduleNext() {
+            plugin.getProxy().getScheduler().schedule(plugin, () -> {
+                // Do nothing if nobody waits anymore
+                if (!isActive()) {
+                    return;
+                }
+                // While the live status is connected, there is no need to poll
+                StatusSubscription current = subscription;
+                if (current != null && current.isLive()) {
+                    scheduleNext();
+                    return;
+                }
+                check();
+            }, nextDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private void check() {
+            // Keep polling if a check fails, the panel may be temporarily unavailable
+            countPoll();
+            powerController.checkPowerStatus(key.serverName, serverId).whenComplete((status, error) -> {
+                if (error != null) {
+                    if (isActive()) {
+                        scheduleNext();
+                    }
+                } else {
+                    accept(status);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Brings the stop timers in line with the actual state of the servers.
+ * Servers that are running without anyone on them (e.g. left up by a crashed proxy) get a stop timer,
+ * so that they do not keep running until someone joins and leaves them.
+ */
+public class Reconciler {
+    /**
+     * Whether a pass is in progress (a new pass is skipped until the previous one finishes)
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Check the status of all managed servers in the background and arm the stop timer of the running empty servers.
+     * This returns immediately, so that the proxy startup is not delayed.
+     *
+     * @return A future that completes when the pass has finished
+     */
+    public CompletableFuture<Void> reconcile() {
+        if (!plugin.config.reconcileOnStartup || !running.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Each panel gets its own batch
+        Map<String, Map<String, String>> panels = plugin.config.groupServersByPanel();
+
+        // Counters for the summary
+        AtomicInteger armed = new AtomicInteger();
+        AtomicInteger occupied = new AtomicInteger();
+        AtomicInteger offline = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        // Check all panels in parallel
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Map<String, String> servers : panels.values()) {
+            CompletableFuture<Map<String, PowerStatus>> future;
+            try {
+                PowerController powerController = plugin.config.getPowerController(servers.keySet().iterator().next());
+                future = powerController.checkPowerStatuses(servers, plugin.config.statusSweepConcurrency);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future.handle((statuses, error) -> {
+                if (error != null) {
+                    logger.log(Level.WARNING, "Failed to check the status of the servers: " + String.join(", ", servers.keySet()), error);
+                    failed.addAndGet(servers.size());
+                    return null;
+                }
+                failed.addAndGet(servers.size() - statuses.size());
+                statuses.forEach((serverName, status) -> {
+                    plugin.lifecycle.observe(serverName, status);
+                    if (status != PowerStatus.RUNNING) {
+                        offline.incrementAndGet();
+                    } else if (reconcile(serverName)) {
+                        armed.incrementAndGet();
+                    } else {
+                        occupied.incrementAndGet();
+                    }
+                });
+                return null;
+            }));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> {
+                    running.set(false);
+                    logger.info(String.format("Reconciled %d servers: %d running without players (stop scheduled), %d running or already scheduled, %d not running, %d failed to check",
+                            armed.get() + occupied.get() + offline.get() + failed.get(), armed.get(), occupied.get(), offline.get(), failed.get()));
+                });
+    }
+
+    /**
+     * Arm the stop timer of a running server if nobody is on it
+     *
+     * @param serverName The name of the running server
+     * @return true if the stop timer was armed
+     */
+    private boolean reconcile(String serverName) {
+        Config.ServerConfig server = plugin.config.getServerConfig(serverName);
+        if (server == null || server.timeout <= 0) {
+            return false;
+        }
+
+        // Leave servers with players, and servers that already have a stop timer (e.g. resumed from the journal)
+        ServerInfo serverInfo = plugin.getProxy().getServerInfo(serverName);
+        if (serverInfo != null && !serverInfo.getPlayers().isEmpty()) {
+            return false;
+        }
+        if (plugin.delay.isStopScheduled(serverName)) {
+            return false;
+        }
+
+        ServerController.stopAfterWhile(plugin.getProxy().getConsole(), serverName, server, PowerSignal.STOP);
+        return true;
+    }
+}
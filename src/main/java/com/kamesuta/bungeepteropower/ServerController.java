@@ -3,15 +3,15 @@ package com.kamesuta.bungeepteropower;
 import com.kamesuta.bungeepteropower.api.PowerController;
 import com.kamesuta.bungeepteropower.api.PowerSignal;
 import com.kamesuta.bungeepteropower.api.PowerStatus;
-import net.md_5.bungee.api.Callback;
 import net.md_5.bungee.api.CommandSender;
-import net.md_5.bungee.api.ServerPing;
 import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 
 import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
 import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
@@ -22,7 +22,121 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
 public class ServerController {
 
     /**
-     * Send a power signal to the server and join the server when it is started
+     * Starts that are in progress per server name.
+     * Concurrent start requests for the same server attach to the same start instead of sending another signal.
+     */
+    private static final ConcurrentMap<String, PendingStart> pendingStarts = new ConcurrentHashMap<>();
+
+    /**
+     * A start in progress, shared by all callers that want to start the same server
+     */
+    private static class PendingStart {
+        /**
+         * Completes when the panel has accepted the start signal
+         */
+        private final CompletableFuture<Void> signal = new CompletableFuture<>();
+        /**
+         * Completes when the server is started and players can join
+         */
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        /**
+         * The wait until the server is ready, or null if not waiting yet
+         */
+        private CompletableFuture<Void> readiness;
+        /**
+         * The start slot, or null if not granted yet
+         */
+        private StartLimiter.Slot slot;
+        /**
+         * Whether the start has been overridden by a stop
+         */
+        private boolean cancelled;
+
+        /**
+         * Hold the start slot until the start is done, unless the start has been cancelled
+         *
+         * @param slot The granted slot
+         * @return false if the start has been cancelled, in which case the slot is released
+         */
+        private boolean hold(StartLimiter.Slot slot) {
+            synchronized (this) {
+                if (!cancelled) {
+                    this.slot = slot;
+                    return true;
+                }
+            }
+            slot.release(false);
+            return false;
+        }
+
+        /**
+         * Release the start slot if it has been granted
+         *
+         * @param ready Whether the server is ready
+         */
+        private void release(boolean ready) {
+            StartLimiter.Slot current;
+            synchronized (this) {
+                current = slot;
+            }
+            if (current != null) {
+                current.release(ready);
+            }
+        }
+
+        /**
+         * Wait until the server is started, unless the start has been cancelled
+         *
+         * @param readiness The wait until the server is ready
+         * @return false if the start has been cancelled, in which case the wait is cancelled too
+         */
+        private boolean await(CompletableFuture<Void> readiness) {
+            synchronized (this) {
+                if (!cancelled) {
+                    this.readiness = readiness;
+                    return true;
+                }
+            }
+            readiness.cancel(false);
+            return false;
+        }
+
+        /**
+         * Cancel the start.
+         * The start slot is given back right away, the wait ends unless others are waiting for the same server,
+         * and the callers waiting for the start are told it failed.
+         */
+        private void cancel() {
+            CompletableFuture<Void> current;
+            synchronized (this) {
+                cancelled = true;
+                current = readiness;
+            }
+            release(false);
+            if (current != null) {
+                current.cancel(false);
+            }
+            started.cancel(false);
+        }
+    }
+
+    /**
+     * Forget the starts in progress, so that the next start request sends a new signal
+     *
+     * @param cancel Whether to also stop waiting for the servers to start
+     */
+    public static void clearPendingStarts(boolean cancel) {
+        for (String serverName : pendingStarts.keySet()) {
+            PendingStart pending = pendingStarts.remove(serverName);
+            if (pending != null && cancel) {
+                pending.cancel();
+            }
+        }
+    }
+
+    /**
+     * Send a power signal to the server and join the server when it is started.
+     * If the server is already being started, the sender waits for that start instead of sending another signal.
      *
      * @param sender     The command sender
      * @param serverName The name of the server to send the signal
@@ -30,21 +144,79 @@ public class ServerController {
      * @param signalType The power signal to send
      */
     public static void sendPowerSignal(CommandSender sender, String serverName, Config.ServerConfig server, PowerSignal signalType) {
+        sendPowerSignal(sender, serverName, server, signalType, 0);
+    }
+
+    /**
+     * Send a power signal to the server ahead of the time players are expected to join it.
+     * The stop countdown of a start runs at least for the lead time, so that the server is still running when the players come.
+     *
+     * @param sender     The command sender
+     * @param serverName The name of the server to send the signal
+     * @param server     The server configuration to send the signal to
+     * @param signalType The power signal to send
+     * @param leadTime   The number of seconds until players are expected to join, or 0 if they are already waiting
+     */
+    public static void sendPowerSignal(CommandSender sender, String serverName, Config.ServerConfig server, PowerSignal signalType, int leadTime) {
         // Get signal
         String signal = signalType.getSignal();
 
         // Send power signal
         CompletableFuture<Void> future;
-        PowerController powerController = plugin.config.getPowerController();
-        if (signalType == PowerSignal.STOP && server.backupId != null && !server.backupId.isEmpty()) {
-            // Restore from backup if the backup ID is specified
-            future = powerController.sendRestoreSignal(serverName, server.id, server.backupId);
+        CompletableFuture<Void> startedFuture = null;
+        boolean firstStart = true;
+        if (signalType == PowerSignal.START) {
+            // Attach to the start in progress, or begin a new one
+            PendingStart created = new PendingStart();
+            PendingStart pending = pendingStarts.putIfAbsent(serverName, created);
+            if (pending == null) {
+                pending = created;
+                beginStart(sender, serverName, server, pending);
+            } else {
+                firstStart = false;
+                logger.fine("Server " + serverName + " is already being started. Waiting for it to start.");
+                // Tell the position if the start is still queued
+                plugin.startLimiter.addWaiter(serverName, sender);
+            }
+            future = pending.signal.copy();
+            startedFuture = pending.started;
         } else {
-            // Otherwise, send power signal
-            future = powerController.sendPowerSignal(serverName, server.id, signalType);
+            // A stop overrides the start in progress, so the next start sends a new signal
+            PendingStart pending = pendingStarts.remove(serverName);
+            if (pending != null) {
+                // Nobody needs to be moved to a server that is stopping
+                pending.cancel();
+            }
+            plugin.startLimiter.cancel(serverName);
+            // A prewarmed server stopped before anyone joined is a miss
+            plugin.prewarmer.forget(serverName);
+
+            // The power state is about to change, so the cached status is no longer valid
+            plugin.statusCache.invalidate(serverName);
+
+            // A stop takes precedence over whatever the server is doing
+            boolean restore = isRestore(server, signalType);
+            plugin.lifecycle.force(serverName, restore ? ServerLifecycle.State.RESTORING : ServerLifecycle.State.STOPPING);
+
+            PowerController powerController = plugin.config.getPowerController(serverName);
+            if (restore) {
+                // Restore from backup if the backup ID is specified
+                future = powerController.sendRestoreSignal(serverName, server.id, server.backupId);
+            } else {
+                // Otherwise, send power signal
+                future = powerController.sendPowerSignal(serverName, server.id, signalType);
+            }
+            future.whenComplete((v, e) -> {
+                plugin.statusCache.invalidate(serverName);
+                // If the stop has failed, the server is most likely still running
+                plugin.lifecycle.transition(serverName, ServerLifecycle.State.STOPPED,
+                        e != null ? ServerLifecycle.State.RUNNING : ServerLifecycle.State.OFFLINE);
+            });
         }
 
         // After the power signal is sent
+        CompletableFuture<Void> onceStarted = startedFuture;
+        boolean armStop = firstStart;
         future.thenRun(() -> {
             if (signalType == PowerSignal.STOP) {
                 // When stopping the server
@@ -62,7 +234,7 @@ public class ServerController {
                 // ServerInfo is null if the server is not found on bungeecord config
                 if (serverInfo != null) {
                     // Wait until the server is started
-                    onceStarted(serverInfo).thenRun(() -> {
+                    onceStarted.thenRun(() -> {
                         // Move player to the started server
                         ProxiedPlayer player = (ProxiedPlayer) sender;
                         if (plugin.config.joinDelay > 0) {
@@ -87,8 +259,12 @@ public class ServerController {
                 sender.sendMessage(plugin.messages.success("server_start", serverName));
             }
 
-            // Stop the server if nobody joins after a while
-            stopAfterWhile(sender, serverName, server, signalType);
+            // Stop the server if nobody joins after a while (armed once per start)
+            if (armStop) {
+                stopAfterWhile(sender, serverName, server, signalType, leadTime);
+            } else {
+                sendStopWarning(sender, serverName, server, signalType, leadTime);
+            }
 
         }).exceptionally(e -> {
             sender.sendMessage(plugin.messages.error("server_" + signal + "_failed", serverName));
@@ -97,6 +273,143 @@ public class ServerController {
         });
     }
 
+    /**
+     * Wait for a start slot, send the start signal and wait until the server is started.
+     * The pending start is removed from the registry when the server is started or the start has failed.
+     *
+     * @param sender     The command sender who requested the start
+     * @param serverName The name of the server to start
+     * @param server     The server configuration to start
+     * @param pending    The pending start to complete
+     */
+    private static void beginStart(CommandSender sender, String serverName, Config.ServerConfig server, PendingStart pending) {
+        // A server that is being restored must not be started until the restore is done
+        if (!plugin.lifecycle.transition(serverName, ServerLifecycle.State.STARTABLE, ServerLifecycle.State.STARTING)) {
+            pendingStarts.remove(serverName, pending);
+            IllegalStateException e = new IllegalStateException("Server is being restored: " + serverName);
+            pending.signal.completeExceptionally(e);
+            pending.started.completeExceptionally(e);
+            return;
+        }
+
+        // Wait for a slot, so that not too many servers boot at the same time
+        // Players waiting for the server go before the starts in the background
+        // Then make room on the node, so that the server fits in its memory budget
+        CompletableFuture<Void> future = plugin.startLimiter.acquire(serverName, server, sender, sender instanceof ProxiedPlayer)
+                .thenCompose(granted -> {
+                    if (!pending.hold(granted)) {
+                        // Stopped right when the slot was granted
+                        throw new CancellationException("The start of server " + serverName + " was cancelled");
+                    }
+                    // Stop idle servers first if the node does not have enough memory left
+                    return plugin.capacity.makeRoom(serverName, server);
+                })
+                .thenCompose(v -> {
+                    // The power state is about to change, so the cached status is no longer valid
+                    plugin.statusCache.invalidate(serverName);
+                    return plugin.config.getPowerController(serverName).sendPowerSignal(serverName, server.id, PowerSignal.START);
+                });
+
+        future.whenComplete((v, e) -> {
+            plugin.statusCache.invalidate(serverName);
+            if (e != null) {
+                // Let the next request try again
+                pending.release(false);
+                pendingStarts.remove(serverName, pending);
+                plugin.lifecycle.transition(serverName, ServerLifecycle.State.STARTING, ServerLifecycle.State.OFFLINE);
+                pending.signal.completeExceptionally(e);
+                pending.started.completeExceptionally(e);
+                return;
+            }
+            pending.signal.complete(null);
+
+            // Wait until the server is started with a single ping loop shared by all waiting players
+            // If players cannot be moved there, the panel tells when the server is running
+            // The slot is held until then, so that the next start does not compete with this boot
+            ServerInfo serverInfo = plugin.getProxy().getServerInfo(serverName);
+            boolean joinable = serverInfo != null && plugin.config.startupJoinTimeout > 0;
+            CompletableFuture<Void> ready = joinable ? onceStarted(serverInfo) : waitUntil(serverName, server.id, PowerStatus.RUNNING);
+            if (!pending.await(ready)) {
+                // Stopped before the start signal was accepted, the stop has already removed the pending start and released the slot
+                return;
+            }
+            ready.whenComplete((v2, e2) -> {
+                pending.release(e2 == null);
+                pendingStarts.remove(serverName, pending);
+                // Even if the server did not answer in time, it has most likely started
+                finishStart(serverName);
+                if (e2 != null) {
+                    pending.started.completeExceptionally(e2);
+                } else if (!joinable) {
+                    pending.started.completeExceptionally(new IllegalStateException("Nobody waits for the server to start: " + serverName));
+                } else {
+                    pending.started.complete(null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Mark the start as done.
+     * If the stop countdown was armed during the start, the server is now counting down.
+     *
+     * @param serverName The name of the started server
+     */
+    private static void finishStart(String serverName) {
+        // A server that has just started is not stopped to make room before the players it was started for can join
+        plugin.capacity.touch(serverName);
+        if (plugin.lifecycle.transition(serverName, ServerLifecycle.State.STARTING, ServerLifecycle.State.RUNNING)
+                && plugin.delay.isStopScheduled(serverName)) {
+            plugin.lifecycle.transition(serverName, ServerLifecycle.State.RUNNING, ServerLifecycle.State.IDLE_COUNTDOWN);
+        }
+    }
+
+    /**
+     * Check if the signal restores the server from the backup
+     *
+     * @param server     The server configuration
+     * @param signalType The power signal to send
+     * @return true if the server is stopped and restored from the backup
+     */
+    private static boolean isRestore(Config.ServerConfig server, PowerSignal signalType) {
+        return signalType == PowerSignal.STOP && server.backupId != null && !server.backupId.isEmpty();
+    }
+
+    /**
+     * Get the number of seconds until the server is stopped if nobody joins
+     *
+     * @param server     The server configuration
+     * @param signalType Is this executed while stopping or starting?
+     * @param leadTime   The number of seconds until players are expected to join
+     * @return The number of seconds, or 0 if the server is not stopped automatically
+     */
+    private static int getStopTimeout(Config.ServerConfig server, PowerSignal signalType, int leadTime) {
+        // Get the auto stop time
+        int serverTimeout = server.timeout;
+        if (serverTimeout == 0) return 0;
+
+        // When on starting, use the start timeout additionally, or the lead time if players are expected later than that
+        if (signalType == PowerSignal.START) {
+            serverTimeout += Math.max(plugin.config.startTimeout, leadTime);
+        }
+        return serverTimeout;
+    }
+
+    /**
+     * Warn the sender that the server will be stopped if nobody joins
+     *
+     * @param sender     The command sender
+     * @param serverName The name of the server
+     * @param server     The server configuration
+     * @param signalType Is this executed while stopping or starting?
+     * @param leadTime   The number of seconds until players are expected to join
+     */
+    private static void sendStopWarning(CommandSender sender, String serverName, Config.ServerConfig server, PowerSignal signalType, int leadTime) {
+        int serverTimeout = getStopTimeout(server, signalType, leadTime);
+        if (serverTimeout == 0) return;
+        sender.sendMessage(plugin.messages.warning("server_" + signalType.getSignal() + "_warning", serverName, serverTimeout));
+    }
+
     /**
      * Stop the server after a while
      *
@@ -106,62 +419,124 @@ public class ServerController {
      * @param signalType Is this executed while stopping or starting?
      */
     public static void stopAfterWhile(CommandSender sender, String serverName, Config.ServerConfig server, PowerSignal signalType) {
-        // Get signal
-        String signal = signalType.getSignal();
+        stopAfterWhile(sender, serverName, server, signalType, 0);
+    }
 
+    /**
+     * Stop the server after a while, giving the players expected later the lead time to come
+     *
+     * @param sender     The command sender
+     * @param serverName The name of the server to stop
+     * @param server     The server configuration to stop
+     * @param signalType Is this executed while stopping or starting?
+     * @param leadTime   The number of seconds until players are expected to join
+     */
+    private static void stopAfterWhile(CommandSender sender, String serverName, Config.ServerConfig server, PowerSignal signalType, int leadTime) {
         // Get the auto stop time
-        int serverTimeout = server.timeout;
+        int serverTimeout = getStopTimeout(server, signalType, leadTime);
         if (serverTimeout == 0) return;
 
-        // When on starting, use the start timeout additionally
-        if (signalType == PowerSignal.START) {
-            serverTimeout += plugin.config.startTimeout;
-        }
-
         // Stop the server after a while
-        plugin.delay.stopAfterWhile(serverName, serverTimeout, () -> {
-            // Stop the server
-            sendPowerSignal(sender, serverName, server, PowerSignal.STOP);
-
-            // Record statistics
-            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.STOP_SERVER_NOBODY);
-            plugin.statistics.startReasonRecorder.recordStop(serverName);
-        });
+        // The countdown is armed first, so that a start finishing meanwhile sees it
+        plugin.delay.stopAfterWhile(serverName, serverTimeout, stopNobody(sender, serverName, server));
+        plugin.lifecycle.transition(serverName, ServerLifecycle.State.IDLE, ServerLifecycle.State.IDLE_COUNTDOWN);
 
         // Send message
-        sender.sendMessage(plugin.messages.warning("server_" + signal + "_warning", serverName, serverTimeout));
+        sendStopWarning(sender, serverName, server, signalType, leadTime);
     }
 
     /**
-     * Wait until the server is started
+     * Resume stopping the server after a while, with a countdown left over from before the proxy restarted
      *
-     * @param serverInfo The server to wait for
-     * @return A future that completes when the server is started
+     * @param serverName The name of the server to stop
+     * @param server     The server configuration to stop
+     * @param remaining  The remaining time in seconds, 0 or less to stop the server now
      */
-    private static CompletableFuture<Void> onceStarted(ServerInfo serverInfo) {
-        CompletableFuture<Void> future = new CompletableFuture<Void>().orTimeout(plugin.config.startupJoinTimeout, TimeUnit.SECONDS);
-        Callback<ServerPing> callback = new Callback<>() {
+    public static void resumeStopAfterWhile(String serverName, Config.ServerConfig server, int remaining) {
+        Runnable stop = stopNobody(plugin.getProxy().getConsole(), serverName, server);
+        plugin.lifecycle.transition(serverName, ServerLifecycle.State.IDLE, ServerLifecycle.State.IDLE_COUNTDOWN);
+        if (remaining <= 0) {
+            // The deadline has already passed while the proxy was down
+            logger.info("Stopping server " + serverName + " whose stop timer expired while the proxy was down");
+            stop.run();
+        } else {
+            logger.info(String.format("Resuming the stop timer of server %s (%d sec left)", serverName, remaining));
+            plugin.delay.stopAfterWhile(serverName, remaining, stop);
+        }
+    }
+
+    /**
+     * Cancel the stop countdown of the server, because someone is joining it
+     *
+     * @param serverName The name of the server
+     */
+    public static void cancelStop(String serverName) {
+        plugin.delay.cancelStop(serverName);
+        // A countdown that is firing right now sees this and does not stop the server
+        plugin.lifecycle.transition(serverName, ServerLifecycle.State.IDLE_COUNTDOWN, ServerLifecycle.State.RUNNING);
+    }
+
+    /**
+     * Create the task to stop the server because nobody is on it.
+     * The task only stops the server if it is still counting down,
+     * so a player joining or a start in progress at the same moment wins over the countdown.
+     *
+     * @param sender     The command sender
+     * @param serverName The name of the server to stop
+     * @param server     The server configuration to stop
+     * @return The task to stop the server
+     */
+    private static Runnable stopNobody(CommandSender sender, String serverName, Config.ServerConfig server) {
+        return new Runnable() {
             @Override
-            public void done(ServerPing serverPing, Throwable throwable) {
-                // Do nothing if timeout or already completed
-                if (future.isDone()) {
+            public void run() {
+                // Leave the server running as a warm standby of its group
+                if (plugin.standby.keepWarm(serverName)) {
+                    if (plugin.lifecycle.transition(serverName, ServerLifecycle.State.IDLE_COUNTDOWN, ServerLifecycle.State.RUNNING)) {
+                        logger.info("Keeping server " + serverName + " running as a warm standby of its group");
+                    }
                     return;
                 }
-                // Complete if the ping was successful
-                if (throwable == null && serverPing != null) {
-                    future.complete(null);
+
+                ServerLifecycle.State stopping = isRestore(server, PowerSignal.STOP) ? ServerLifecycle.State.RESTORING : ServerLifecycle.State.STOPPING;
+                if (!plugin.lifecycle.transition(serverName, ServerLifecycle.State.IDLE_COUNTDOWN, stopping)) {
+                    ServerLifecycle.State state = plugin.lifecycle.get(serverName);
+                    int serverTimeout = getStopTimeout(server, PowerSignal.STOP, 0);
+                    if (state == ServerLifecycle.State.STARTING && serverTimeout > 0) {
+                        // The server is still starting, give it another round
+                        logger.info(String.format("Server %s is still starting, postponing the stop for %d sec", serverName, serverTimeout));
+                        plugin.delay.stopAfterWhile(serverName, serverTimeout, this);
+                    } else {
+                        logger.info("Server " + serverName + " is no longer idle (" + state + "), not stopping it");
+                    }
                     return;
                 }
-                // Otherwise schedule another ping
-                plugin.getProxy().getScheduler().schedule(plugin, () -> serverInfo.ping(this), plugin.config.pingInterval, TimeUnit.SECONDS);
+
+                // Stop the server
+                sendPowerSignal(sender, serverName, server, PowerSignal.STOP);
+
+                // Record statistics
+                plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.STOP_SERVER_NOBODY);
+                plugin.statistics.startReasonRecorder.recordStop(serverName);
             }
         };
-        serverInfo.ping(callback);
-        return future;
     }
 
     /**
-     * Wait until the server reaches the specified power status
+     * Wait until the server is started.
+     * All callers waiting for the same server share a single ping loop.
+     *
+     * @param serverInfo The server to wait for
+     * @return A future that completes when the server is started
+     */
+    private static CompletableFuture<Void> onceStarted(ServerInfo serverInfo) {
+        return plugin.readiness.awaitPingable(serverInfo);
+    }
+
+    /**
+     * Wait until the server reaches the specified power status.
+     * If the power controller supports live status, the status changes are pushed and polling is paused while it is connected.
+     * All callers waiting for the same server and the same status share a single poll loop.
      *
      * @param serverName   The name of the server
      * @param serverId     The server ID
@@ -169,29 +544,7 @@ public class ServerController {
      * @return A future that completes when the server reaches the target status
      */
     public static CompletableFuture<Void> waitUntil(String serverName, String serverId, PowerStatus targetStatus) {
-        CompletableFuture<Void> future = new CompletableFuture<Void>().orTimeout(plugin.config.startupJoinTimeout, TimeUnit.SECONDS);
-        // Wait until the server reaches the target status
-        Consumer<PowerStatus> callback = new Consumer<>() {
-            @Override
-            public void accept(PowerStatus status) {
-                // Do nothing if timeout or already completed
-                if (future.isDone()) {
-                    return;
-                }
-                // Complete if the server has reached the target status
-                if (status == targetStatus) {
-                    future.complete(null);
-                    return;
-                }
-                // Otherwise schedule another ping
-                logger.fine("Server is not in target state. Current state: " + status + ", Target state: " + targetStatus + " for server: " + serverName);
-                plugin.getProxy().getScheduler().schedule(plugin, () -> plugin.config.getPowerController().checkPowerStatus(serverName, serverId).thenAccept(this), plugin.config.pingInterval, TimeUnit.SECONDS);
-            }
-        };
-        // Initial check
-        plugin.config.getPowerController().checkPowerStatus(serverName, serverId).thenAccept(callback);
-
-        return future;
+        return plugin.readiness.awaitStatus(serverName, serverId, targetStatus);
     }
 
     /**
@@ -199,6 +552,7 @@ public class ServerController {
      * This method switches between two different ways to check the server status:
      * 1. BungeeCord ping (callback): Uses BungeeCord's built-in ping mechanism
      * 2. Panel API (Future): Uses the panel's API to check the server status
+     * The result is cached for a short time, and concurrent checks for the same server share one request.
      *
      * @param targetServer The target server
      * @param server       The server configuration
@@ -207,19 +561,40 @@ public class ServerController {
     public static CompletableFuture<PowerStatus> checkPowerStatus(
             ServerInfo targetServer,
             Config.ServerConfig server
+    ) {
+        return plugin.statusCache.get(targetServer.getName(), () -> checkPowerStatusUncached(targetServer, server));
+    }
+
+    /**
+     * Check the server status without using the cache.
+     *
+     * @param targetServer The target server
+     * @param server       The server configuration
+     * @return A future that completes with the power status of the server
+     */
+    private static CompletableFuture<PowerStatus> checkPowerStatusUncached(
+            ServerInfo targetServer,
+            Config.ServerConfig server
     ) {
         try {
             if ("bungeecord".equals(plugin.config.serverStatusCheckMethod)) {
                 CompletableFuture<PowerStatus> future = new CompletableFuture<>();
                 targetServer.ping((result, error) -> {
                     // Consider online if error is null
-                    future.complete(error == null ? PowerStatus.RUNNING : PowerStatus.OFFLINE);
+                    PowerStatus status = error == null ? PowerStatus.RUNNING : PowerStatus.OFFLINE;
+                    plugin.lifecycle.observe(targetServer.getName(), status);
+                    future.complete(status);
                 });
                 return future;
             } else { // "panel" method
                 // Call checkPowerStatus implemented in PowerController
-                PowerController powerController = plugin.config.getPowerController();
-                return powerController.checkPowerStatus(targetServer.getName(), server.id);
+                PowerController powerController = plugin.config.getPowerController(targetServer.getName());
+                return powerController.checkPowerStatus(targetServer.getName(), server.id)
+                        .whenComplete((status, e) -> {
+                            if (status != null) {
+                                plugin.lifecycle.observe(targetServer.getName(), status);
+                            }
+                        });
             }
         } catch (RuntimeException e) {
             return CompletableFuture.failedFuture(e);
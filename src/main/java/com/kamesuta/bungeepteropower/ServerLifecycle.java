@@ -0,0 +1,167 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+
+/**
+ * Tracks what the plugin is doing with each managed server.
+ * Every start, stop and countdown goes through a compare-and-set transition here,
+ * so that two of them can never act on the same server at once
+ * (e.g. a stop countdown expiring while a player is starting the server).
+ */
+public class ServerLifecycle {
+    /**
+     * The state of a server
+     */
+    public enum State {
+        /**
+         * Not running, or not known to be running
+         */
+        OFFLINE,
+        /**
+         * The start signal has been sent, waiting for the server to become ready
+         */
+        STARTING,
+        /**
+         * Running with players on it, or without a stop countdown
+         */
+        RUNNING,
+        /**
+         * Running, and will be stopped when the countdown expires
+         */
+        IDLE_COUNTDOWN,
+        /**
+         * The stop signal is being sent
+         */
+        STOPPING,
+        /**
+         * The server is being stopped and restored from the backup
+         */
+        RESTORING,
+        ;
+
+        /**
+         * The states a start can begin from
+         */
+        public static final Set<State> STARTABLE = EnumSet.of(OFFLINE, STARTING, RUNNING, IDLE_COUNTDOWN, STOPPING);
+        /**
+         * The states a stop countdown can be armed from
+         */
+        public static final Set<State> IDLE = EnumSet.of(OFFLINE, RUNNING);
+        /**
+         * The states while a stop is in progress
+         */
+        public static final Set<State> STOPPED = EnumSet.of(STOPPING, RESTORING);
+    }
+
+    /**
+     * The state per server name
+     */
+    private final ConcurrentMap<String, AtomicReference<State>> states = new ConcurrentHashMap<>();
+
+    /**
+     * Get the state holder of a server, servers start out as offline
+     *
+     * @param serverName The name of the server
+     * @return The state holder
+     */
+    private AtomicReference<State> ref(String serverName) {
+        return states.computeIfAbsent(serverName, k -> new AtomicReference<>(State.OFFLINE));
+    }
+
+    /**
+     * Get the current state of a server
+     *
+     * @param serverName The name of the server
+     * @return The current state
+     */
+    public State get(String serverName) {
+        AtomicReference<State> ref = states.get(serverName);
+        return ref == null ? State.OFFLINE : ref.get();
+    }
+
+    /**
+     * Move the server to a new state if it is in the expected state
+     *
+     * @param serverName The name of the server
+     * @param from       The expected state
+     * @param to         The new state
+     * @return true if the transition happened
+     */
+    public boolean transition(String serverName, State from, State to) {
+        if (!ref(serverName).compareAndSet(from, to)) {
+            return false;
+        }
+        logTransition(serverName, from, to);
+        return true;
+    }
+
+    /**
+     * Move the server to a new state if it is in one of the expected states
+     *
+     * @param serverName The name of the server
+     * @param from       The expected states
+     * @param to         The new state
+     * @return true if the transition happened
+     */
+    public boolean transition(String serverName, Set<State> from, State to) {
+        AtomicReference<State> ref = ref(serverName);
+        while (true) {
+            State current = ref.get();
+            if (!from.contains(current)) {
+                return false;
+            }
+            if (ref.compareAndSet(current, to)) {
+                logTransition(serverName, current, to);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Move the server to a new state whatever the current state is.
+     * Only used for explicit requests that take precedence (e.g. a stop command).
+     *
+     * @param serverName The name of the server
+     * @param to         The new state
+     */
+    public void force(String serverName, State to) {
+        State from = ref(serverName).getAndSet(to);
+        if (from != to) {
+            logTransition(serverName, from, to);
+        }
+    }
+
+    /**
+     * Apply a checked power status to a server that is not in the middle of a transition.
+     * A server found running is no longer offline, and a server found stopped is no longer running.
+     *
+     * @param serverName The name of the server
+     * @param status     The checked power status
+     */
+    public void observe(String serverName, PowerStatus status) {
+        if (status == PowerStatus.RUNNING) {
+            transition(serverName, State.OFFLINE, State.RUNNING);
+        } else if (status == PowerStatus.OFFLINE) {
+            transition(serverName, State.RUNNING, State.OFFLINE);
+        }
+    }
+
+    /**
+     * Log a transition
+     *
+     * @param serverName The name of the server
+     * @param from       The previous state
+     * @param to         The new state
+     */
+    private static void logTransition(String serverName, State from, State to) {
+        logger.fine(() -> String.format("Server %s: %s -> %s", serverName, from, to));
+    }
+}
@@ -0,0 +1,222 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Keeps members of each server group running without players, so that players joining the group never wait for a server to start.
+ * Players connecting to a member that is not running, or that is full when the group is autoscaled, are sent to a running member instead,
+ * and a replacement is started in the background.
+ */
+public class StandbyPool {
+    /**
+     * The interval of the pool check in seconds
+     */
+    private static final int CHECK_INTERVAL = 15;
+
+    /**
+     * The scheduled pool check, or null if not running
+     */
+    private ScheduledTask task;
+
+    /**
+     * Start keeping the pools warm with the current configuration.
+     */
+    public synchronized void start() {
+        stop();
+
+        if (plugin.config.getGroupNames().isEmpty()) {
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::maintain, 0, CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the pool check.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Choose the server a player connecting to a group member is sent to.
+     * The target is kept if it is running, not being drained and not at the autoscale capacity,
+     * otherwise the running member with the fewest players is chosen.
+     * Either way, the pool of the group is refilled in the background.
+     *
+     * @param target The server the player is connecting to
+     * @return The running member to send the player to, or null to keep the target
+     */
+    public @Nullable ServerInfo route(ServerInfo target) {
+        String groupName = plugin.config.getGroupOf(target.getName());
+        Config.GroupConfig group = groupName != null ? plugin.config.getGroupConfig(groupName) : null;
+        if (group == null) {
+            return null;
+        }
+
+        ServerInfo chosen = null;
+        // Once the target is full, the players go to the members started by the autoscaler
+        boolean full = group.capacity > 0 && target.getPlayers().size() >= group.capacity;
+        if (full || !isRunning(target.getName()) || plugin.autoscaler.isDraining(target.getName())) {
+            for (String member : group.servers) {
+                ServerInfo serverInfo = plugin.getProxy().getServerInfo(member);
+                if (serverInfo == null || member.equals(target.getName()) || !isRunning(member) || plugin.autoscaler.isDraining(member)) {
+                    continue;
+                }
+                if (chosen == null || serverInfo.getPlayers().size() < chosen.getPlayers().size()) {
+                    chosen = serverInfo;
+                }
+            }
+            // A full target is kept if no other member has fewer players
+            if (full && chosen != null && chosen.getPlayers().size() >= target.getPlayers().size()) {
+                chosen = null;
+            }
+        }
+        if (chosen != null) {
+            logger.fine("Sending a player for server " + target.getName() + " to running member " + chosen.getName() + " of group " + groupName);
+        }
+
+        // The member being joined is no longer warm
+        replenish(groupName, group, chosen != null ? chosen.getName() : target.getName());
+        return chosen;
+    }
+
+    /**
+     * Check if a member should be kept running instead of being stopped by its countdown.
+     *
+     * @param serverName The name of the server
+     * @return true if stopping the server would leave its group with fewer than minWarm warm members
+     */
+    public boolean keepWarm(String serverName) {
+        String groupName = plugin.config.getGroupOf(serverName);
+        Config.GroupConfig group = groupName != null ? plugin.config.getGroupConfig(groupName) : null;
+        if (group == null || group.minWarm <= 0 || plugin.autoscaler.isDraining(serverName)) {
+            return false;
+        }
+        return countWarm(group, serverName) < group.minWarm;
+    }
+
+    /**
+     * Refill and trim the pools of all groups
+     */
+    void maintain() {
+        for (String groupName : plugin.config.getGroupNames()) {
+            Config.GroupConfig group = plugin.config.getGroupConfig(groupName);
+            replenish(groupName, group, null);
+            trim(groupName, group);
+        }
+    }
+
+    /**
+     * Start members until the group has minWarm warm members
+     *
+     * @param groupName The name of the group
+     * @param group     The group configuration
+     * @param joining   The member a player is joining right now, not counted as warm
+     */
+    private void replenish(String groupName, Config.GroupConfig group, @Nullable String joining) {
+        int missing = group.minWarm - countWarm(group, joining);
+        for (String member : group.servers) {
+            if (missing <= 0) {
+                break;
+            }
+            Config.ServerConfig server = plugin.config.getServerConfig(member);
+            if (server == null || member.equals(joining) || plugin.lifecycle.get(member) != ServerLifecycle.State.OFFLINE) {
+                continue;
+            }
+
+            logger.info("Starting server " + member + " as a warm standby of group " + groupName);
+            ServerController.sendPowerSignal(plugin.getProxy().getConsole(), member, server, PowerSignal.START);
+            missing--;
+
+            // Record statistics
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.START_SERVER_STANDBY);
+            plugin.statistics.startReasonRecorder.recordStart(member, Statistics.StartReasonRecorder.StartReason.STANDBY);
+        }
+    }
+
+    /**
+     * Arm the stop countdown of the warm members beyond minWarm that were kept running before
+     *
+     * @param groupName The name of the group
+     * @param group     The group configuration
+     */
+    private void trim(String groupName, Config.GroupConfig group) {
+        int surplus = countWarm(group, null) - group.minWarm;
+        // The members already counting down leave the pool by themselves
+        for (String member : group.servers) {
+            if (isWarm(member) && plugin.lifecycle.get(member) == ServerLifecycle.State.IDLE_COUNTDOWN) {
+                surplus--;
+            }
+        }
+        for (String member : group.servers) {
+            if (surplus <= 0) {
+                break;
+            }
+            Config.ServerConfig server = plugin.config.getServerConfig(member);
+            if (server == null || !isWarm(member) || plugin.lifecycle.get(member) != ServerLifecycle.State.RUNNING) {
+                continue;
+            }
+
+            logger.fine("Group " + groupName + " has more warm members than needed, scheduling the stop of server " + member);
+            ServerController.stopAfterWhile(plugin.getProxy().getConsole(), member, server, PowerSignal.STOP);
+            surplus--;
+        }
+    }
+
+    /**
+     * Count the members that are running or starting without players
+     *
+     * @param group   The group configuration
+     * @param exclude The member not to count, or null
+     * @return The number of warm members
+     */
+    private int countWarm(Config.GroupConfig group, @Nullable String exclude) {
+        int warm = 0;
+        for (String member : group.servers) {
+            if (!member.equals(exclude) && isWarm(member)) {
+                warm++;
+            }
+        }
+        return warm;
+    }
+
+    /**
+     * Check if the member is running or starting without players, and is not being drained
+     *
+     * @param serverName The name of the server
+     * @return true if a player can be sent there without a cold start
+     */
+    private boolean isWarm(String serverName) {
+        if (plugin.autoscaler.isDraining(serverName)) {
+            return false;
+        }
+        ServerLifecycle.State state = plugin.lifecycle.get(serverName);
+        if (state != ServerLifecycle.State.STARTING && state != ServerLifecycle.State.RUNNING && state != ServerLifecycle.State.IDLE_COUNTDOWN) {
+            return false;
+        }
+        ServerInfo serverInfo = plugin.getProxy().getServerInfo(serverName);
+        return serverInfo == null || serverInfo.getPlayers().isEmpty();
+    }
+
+    /**
+     * Check if the member is running and ready for players
+     *
+     * @param serverName The name of the server
+     * @return true if the server is running
+     */
+    private static boolean isRunning(String serverName) {
+        ServerLifecycle.State state = plugin.lifecycle.get(serverName);
+        return state == ServerLifecycle.State.RUNNING || state == ServerLifecycle.State.IDLE_COUNTDOWN;
+    }
+}
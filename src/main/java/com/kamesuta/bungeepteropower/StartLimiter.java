@@ -0,0 +1,265 @@
+package com.kamesuta.bungeepteropower;
+
+import net.md_5.bungee.api.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Limits the number of servers booting at the same time, globally and per panel node,
+ * so that a burst of starts does not slow every server down by competing for the same CPU.
+ * A start holds its slot from the start signal until the server is ready or the start is stopped, and the starts over the limit wait in a queue.
+ * Starts requested by players are served before starts requested by the plugin itself (prewarm, standby, autoscale).
+ */
+public class StartLimiter {
+    /**
+     * The queued starts, in the order they are served
+     */
+    private final TreeSet<Entry> queue = new TreeSet<>(Comparator
+            .comparing((Entry entry) -> entry.urgent ? 0 : 1)
+            .thenComparingLong(entry -> entry.sequence));
+    /**
+     * The number of starts holding a slot per node
+     */
+    private final Map<String, Integer> runningPerNode = new HashMap<>();
+    /**
+     * The number of starts holding a slot
+     */
+    private int running;
+    /**
+     * The sequence number of the next queued start
+     */
+    private long sequence;
+
+    /**
+     * A start waiting for a slot
+     */
+    private static class Entry {
+        private final String serverName;
+        private final String node;
+        private final boolean urgent;
+        private final long sequence;
+        /**
+         * The time (System.nanoTime) the start was queued
+         */
+        private final long queuedAt = System.nanoTime();
+        /**
+         * Completes with the slot once the start may proceed
+         */
+        private final CompletableFuture<Slot> granted = new CompletableFuture<>();
+        /**
+         * The senders waiting for this start, told about their position in the queue
+         */
+        private final Set<CommandSender> waiters = ConcurrentHashMap.newKeySet();
+        /**
+         * The position last told to the waiters
+         */
+        private int position;
+
+        private Entry(String serverName, String node, boolean urgent, long sequence) {
+            this.serverName = serverName;
+            this.node = node;
+            this.urgent = urgent;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * A slot held by a start
+     */
+    public class Slot {
+        private final String serverName;
+        private final String node;
+        /**
+         * The time (System.nanoTime) the slot was granted
+         */
+        private final long grantedAt = System.nanoTime();
+        /**
+         * How long the start waited in the queue
+         */
+        private final long queueWaitMillis;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Slot(String serverName, String node, long queueWaitMillis) {
+            this.serverName = serverName;
+            this.node = node;
+            this.queueWaitMillis = queueWaitMillis;
+        }
+
+        /**
+         * Give the slot back when the server is ready or the start has ended otherwise, and let the next queued start proceed.
+         *
+         * @param ready true if the server is ready, false if the start has failed, timed out or been cancelled by a stop.
+         *              Only the boot time of ready servers is recorded.
+         */
+        public void release(boolean ready) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long bootMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - grantedAt);
+            if (ready) {
+                plugin.statistics.startTimeRecorder.recordBoot(bootMillis);
+                logger.fine(String.format("Start of server %s finished: %.1f sec in queue, %.1f sec to boot", serverName, queueWaitMillis / 1000.0, bootMillis / 1000.0));
+            } else {
+                logger.fine(String.format("Start of server %s ended before the server was ready: %.1f sec in queue, %.1f sec holding the slot", serverName, queueWaitMillis / 1000.0, bootMillis / 1000.0));
+            }
+
+            synchronized (StartLimiter.this) {
+                running--;
+                runningPerNode.merge(node, -1, (a, b) -> a + b == 0 ? null : a + b);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Wait for a slot to start the server
+     *
+     * @param serverName The name of the server
+     * @param server     The server configuration
+     * @param sender     The sender who requested the start, told about the position in the queue
+     * @param urgent     true if a player is waiting for the server, false for a start in the background
+     * @return A future that completes with the slot once the server may be started
+     */
+    public CompletableFuture<Slot> acquire(String serverName, Config.ServerConfig server, CommandSender sender, boolean urgent) {
+        Entry entry;
+        synchronized (this) {
+            entry = new Entry(serverName, plugin.config.getNodeName(server), urgent, sequence++);
+            entry.waiters.add(sender);
+            queue.add(entry);
+        }
+        dispatch();
+        return entry.granted;
+    }
+
+    /**
+     * Add a sender waiting for a start that may be queued, and tell the position in the queue
+     *
+     * @param serverName The name of the server
+     * @param sender     The sender
+     */
+    public void addWaiter(String serverName, CommandSender sender) {
+        int position = 0;
+        synchronized (this) {
+            int index = 0;
+            for (Entry entry : queue) {
+                index++;
+                if (entry.serverName.equals(serverName)) {
+                    entry.waiters.add(sender);
+                    position = index;
+                    break;
+                }
+            }
+        }
+        if (position > 0) {
+            sender.sendMessage(plugin.messages.info("server_start_queued", serverName, position));
+        }
+    }
+
+    /**
+     * Remove the queued start of the server, because the server is being stopped
+     *
+     * @param serverName The name of the server
+     */
+    public void cancel(String serverName) {
+        List<Entry> cancelled = new ArrayList<>();
+        synchronized (this) {
+            queue.removeIf(entry -> {
+                if (entry.serverName.equals(serverName)) {
+                    cancelled.add(entry);
+                    return true;
+                }
+                return false;
+            });
+        }
+        cancelled.forEach(entry -> entry.granted.completeExceptionally(new CancellationException("The start of server " + serverName + " was cancelled")));
+        if (!cancelled.isEmpty()) {
+            notifyPositions();
+        }
+    }
+
+    /**
+     * Get the number of queued starts
+     *
+     * @return The number of starts waiting for a slot
+     */
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * Grant slots to the queued starts in order, as far as the limits allow.
+     * A start whose node is busy does not hold back the starts on other nodes.
+     */
+    private void dispatch() {
+        int globalLimit = plugin.config.startLimitGlobal;
+        int nodeLimit = plugin.config.startLimitPerNode;
+        List<Map.Entry<Entry, Slot>> granted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (globalLimit > 0 && running >= globalLimit) {
+                    break;
+                }
+                Entry entry = iterator.next();
+                if (nodeLimit > 0 && runningPerNode.getOrDefault(entry.node, 0) >= nodeLimit) {
+                    continue;
+                }
+                iterator.remove();
+                running++;
+                runningPerNode.merge(entry.node, 1, Integer::sum);
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.queuedAt);
+                granted.add(Map.entry(entry, new Slot(entry.serverName, entry.node, waitMillis)));
+            }
+        }
+
+        for (Map.Entry<Entry, Slot> pair : granted) {
+            Slot slot = pair.getValue();
+            plugin.statistics.startTimeRecorder.recordQueueWait(slot.queueWaitMillis);
+            if (pair.getKey().position > 0) {
+                logger.info(String.format("Starting server %s after %.1f sec in the start queue", slot.serverName, slot.queueWaitMillis / 1000.0));
+            }
+            pair.getKey().granted.complete(slot);
+        }
+        notifyPositions();
+    }
+
+    /**
+     * Tell the waiters of the queued starts about their new position
+     */
+    private void notifyPositions() {
+        List<Entry> moved = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        synchronized (this) {
+            int index = 0;
+            for (Entry entry : queue) {
+                index++;
+                if (entry.position != index) {
+                    entry.position = index;
+                    moved.add(entry);
+                    positions.add(index);
+                }
+            }
+        }
+        for (int i = 0; i < moved.size(); i++) {
+            Entry entry = moved.get(i);
+            int position = positions.get(i);
+            logger.fine("Start of server " + entry.serverName + " is queued at position " + position);
+            entry.waiters.forEach(sender -> sender.sendMessage(plugin.messages.info("server_start_queued", entry.serverName, position)));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.kamesuta.bungeepteropower;
 
+import com.kamesuta.bungeepteropower.power.CircuitBreaker;
+import com.kamesuta.bungeepteropower.power.PanelController;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.plugin.PluginManager;
 import org.bstats.bungeecord.Metrics;
@@ -8,7 +10,9 @@ import org.bstats.charts.SimplePie;
 import org.bstats.charts.SingleLineChart;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -20,6 +24,7 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
 public class Statistics {
     public final ActionCounter actionCounter = new ActionCounter();
     public final StartReasonRecorder startReasonRecorder = new StartReasonRecorder();
+    public final StartTimeRecorder startTimeRecorder = new StartTimeRecorder();
 
     /**
      * Register bStats
@@ -32,6 +37,7 @@ public class Statistics {
 
         // Config charts
         metrics.addCustomChart(new SimplePie("powerControllerType", () -> plugin.config.powerControllerType));
+        metrics.addCustomChart(new SimplePie("panelCount", () -> String.valueOf(plugin.panelControllers.size())));
         metrics.addCustomChart(new SimplePie("language", () -> plugin.config.language));
         metrics.addCustomChart(new SimplePie("useSynchronousPing", () -> plugin.config.useSynchronousPing ? "Enabled" : "Disabled"));
 
@@ -50,6 +56,19 @@ public class Statistics {
             metrics.addCustomChart(new SingleLineChart(actionType.name, () -> actionCounter.collect(actionType)));
         }
 
+        // Whether the panel is reachable
+        // The circuit breaker is open when the panel seems to be down.
+        metrics.addCustomChart(new SimplePie("panelCircuitState", () -> Stream.concat(plugin.powerControllers.values().stream(), plugin.panelControllers.values().stream())
+                .filter(controller -> controller instanceof PanelController)
+                .map(controller -> ((PanelController) controller).getHttpClient().getCircuitState())
+                .max(Comparator.naturalOrder())
+                .orElse(CircuitBreaker.State.CLOSED)
+                .name()));
+
+        // How long the starts waited for a slot, and how long the servers took to boot
+        metrics.addCustomChart(new SingleLineChart("startQueueWaitSeconds", startTimeRecorder::collectQueueWaitSeconds));
+        metrics.addCustomChart(new SingleLineChart("startBootSeconds", startTimeRecorder::collectBootSeconds));
+
         // The number of players on the BungeePteroPower-managed servers
         metrics.addCustomChart(new SingleLineChart("pteroPlayerCount", () ->
                 serverNames.stream().mapToInt(serverName ->
@@ -88,7 +107,10 @@ public class Statistics {
      * Record the reason for server startup
      */
     public static class StartReasonRecorder {
-        private final Map<String, StartReason> reasonMap = new HashMap<>();
+        /**
+         * The start reason per server name, written by the scheduler and panel threads and read by bStats
+         */
+        private final Map<String, StartReason> reasonMap = new ConcurrentHashMap<>();
 
         /**
          * Record the reason for server startup
@@ -126,6 +148,9 @@ public class Statistics {
             OTHER("other"),
             COMMAND("command"),
             AUTOJOIN("autojoin"),
+            PREWARM("prewarm"),
+            STANDBY("standby"),
+            AUTOSCALE("autoscale"),
             ;
 
             public final String name;
@@ -136,6 +161,67 @@ public class Statistics {
         }
     }
 
+    /**
+     * Record how long the starts waited in the start queue and how long the servers took to boot, separately
+     */
+    public static class StartTimeRecorder {
+        private final LongAdder queueWaitMillis = new LongAdder();
+        private final LongAdder queueWaitCount = new LongAdder();
+        private final LongAdder bootMillis = new LongAdder();
+        private final LongAdder bootCount = new LongAdder();
+
+        /**
+         * Record the time a start waited for a slot
+         *
+         * @param millis The time in milliseconds
+         */
+        public void recordQueueWait(long millis) {
+            queueWaitMillis.add(millis);
+            queueWaitCount.increment();
+        }
+
+        /**
+         * Record the time a server took from the start signal until it was ready
+         *
+         * @param millis The time in milliseconds
+         */
+        public void recordBoot(long millis) {
+            bootMillis.add(millis);
+            bootCount.increment();
+        }
+
+        /**
+         * Get the average queue wait since the last collection and reset it
+         *
+         * @return The average queue wait in seconds
+         */
+        public int collectQueueWaitSeconds() {
+            return averageSeconds(queueWaitMillis, queueWaitCount);
+        }
+
+        /**
+         * Get the average boot time since the last collection and reset it
+         *
+         * @return The average boot time in seconds
+         */
+        public int collectBootSeconds() {
+            return averageSeconds(bootMillis, bootCount);
+        }
+
+        /**
+         * Get the average of the recorded times and reset them
+         *
+         * @param millis The sum of the times in milliseconds
+         * @param count  The number of times
+         * @return The average in seconds, or 0 if nothing was recorded
+         */
+        private static int averageSeconds(LongAdder millis, LongAdder count) {
+            long n = count.sumThenReset();
+            long sum = millis.sumThenReset();
+            return n == 0 ? 0 : (int) (sum / n / 1000);
+        }
+    }
+
     /**
      * The counter for each action
      */
@@ -179,6 +265,15 @@ public class Statistics {
             STOP_SERVER_COMMAND("stopServerByCommand"),
             START_SERVER_AUTOJOIN("startServerByAutoJoin"),
             STOP_SERVER_NOBODY("stopServerByNobody"),
+            START_SERVER_PREWARM("startServerByPrewarm"),
+            PREWARM_HIT("prewarmHit"),
+            START_SERVER_STANDBY("startServerByStandby"),
+            START_SERVER_AUTOSCALE("startServerByAutoscale"),
+            STOP_SERVER_PREEMPT("stopServerByPreemption"),
+            CAPACITY_SHORTAGE("capacityShortage"),
+            PANEL_RATE_LIMITED("panelRateLimited"),
+            PANEL_CIRCUIT_OPENED("panelCircuitOpened"),
+            RETRY_PANEL_REQUEST("panelRequestRetried"),
             ;
 
             public final String name;
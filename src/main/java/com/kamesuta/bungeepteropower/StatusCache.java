@@ -0,0 +1,145 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Caches the power status of the servers for a short time.
+ * Concurrent lookups for the same server share one in-flight request.
+ */
+public class StatusCache {
+    /**
+     * Cached or in-flight status per server name
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * The time (System.nanoTime) when each server was last invalidated
+     */
+    private final ConcurrentMap<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    /**
+     * A cached status
+     */
+    private static class Entry {
+        /**
+         * The future shared by all lookups
+         */
+        private final CompletableFuture<PowerStatus> future = new CompletableFuture<>();
+        /**
+         * The time (System.nanoTime) when this entry expires, valid after the future is completed
+         */
+        private volatile long expiresAt;
+
+        /**
+         * Check if this entry can no longer be used
+         *
+         * @param now The current time (System.nanoTime)
+         * @return true if the status was loaded and the TTL has elapsed
+         */
+        private boolean isExpired(long now) {
+            return future.isDone() && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Get the power status of the server from the cache, or load it if it is not cached.
+     *
+     * @param serverName The name of the server
+     * @param loader     The function to load the power status
+     * @return A future that completes with the power status of the server
+     */
+    public CompletableFuture<PowerStatus> get(String serverName, Supplier<CompletableFuture<PowerStatus>> loader) {
+        // Use the cached status if it is still valid (including statuses checked in the background)
+        long now = System.nanoTime();
+        Entry cached = entries.get(serverName);
+        if (cached != null && !cached.isExpired(now)) {
+            return cached.future.copy();
+        }
+
+        // If the cache is disabled, always load
+        if (plugin.config.statusCacheTtl <= 0) {
+            return loader.get();
+        }
+
+        // Reuse the cached or in-flight entry, or register a new one
+        Entry[] created = new Entry[1];
+        Entry entry = entries.compute(serverName, (name, existing) -> {
+            if (existing != null && !existing.isExpired(now)) {
+                return existing;
+            }
+            created[0] = new Entry();
+            return created[0];
+        });
+
+        // Only the caller that registered the entry loads the status
+        if (entry == created[0]) {
+            CompletableFuture<PowerStatus> source;
+            try {
+                source = loader.get();
+            } catch (RuntimeException e) {
+                source = CompletableFuture.failedFuture(e);
+            }
+            source.whenComplete((status, error) -> {
+                // Failures are cached for a separate (usually shorter) time
+                int ttl = error == null ? plugin.config.statusCacheTtl : plugin.config.statusCacheFailureTtl;
+                entry.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl);
+                if (error == null) {
+                    entry.future.complete(status);
+                } else {
+                    entry.future.completeExceptionally(error);
+                }
+            });
+        }
+
+        // Copy the future so that callers cannot complete the shared one
+        return entry.future.copy();
+    }
+
+    /**
+     * Store a status that was checked in the background.
+     * The status is ignored if the server was invalidated after the check started.
+     *
+     * @param serverName The name of the server
+     * @param status     The checked power status
+     * @param ttl        The number of seconds to keep the status
+     * @param checkedAt  The time (System.nanoTime) when the check was started
+     */
+    public void put(String serverName, PowerStatus status, int ttl, long checkedAt) {
+        Entry entry = new Entry();
+        entry.expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl);
+        entry.future.complete(status);
+        entries.compute(serverName, (name, existing) -> {
+            // The power state may have changed since the check was started
+            Long invalidated = invalidatedAt.get(name);
+            if (invalidated != null && invalidated - checkedAt >= 0) {
+                return existing;
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Forget the cached status of the server.
+     * Call this when the power state of the server is changed.
+     *
+     * @param serverName The name of the server
+     */
+    public void invalidate(String serverName) {
+        invalidatedAt.put(serverName, System.nanoTime());
+        entries.remove(serverName);
+    }
+
+    /**
+     * Forget all cached statuses.
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
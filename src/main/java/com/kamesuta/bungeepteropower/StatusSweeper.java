@@ -0,0 +1,100 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Periodically checks the power status of all managed servers in the background.
+ * The results are stored in the {@link StatusCache}, so that the listener reads the status from memory.
+ */
+public class StatusSweeper {
+    /**
+     * The scheduled sweep task, or null if not running
+     */
+    private ScheduledTask task;
+    /**
+     * Whether a sweep is in progress (a new sweep is skipped until the previous one finishes)
+     */
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * Start the periodic sweep with the current configuration.
+     * The sweep is only used with the "panel" status check method.
+     */
+    public synchronized void start() {
+        stop();
+
+        int interval = plugin.config.statusSweepInterval;
+        if (interval <= 0 || !"panel".equals(plugin.config.serverStatusCheckMethod)) {
+            return;
+        }
+        task = plugin.getProxy().getScheduler().schedule(plugin, this::sweep, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop the periodic sweep.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Check the status of all managed servers once.
+     */
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        // Each panel gets its own batch
+        Map<String, Map<String, String>> panels = plugin.config.groupServersByPanel();
+
+        // Keep the results until the next sweep has finished, but never longer than the cache keeps a checked status
+        // so that a server that crashed in between is not reported as running for longer than configured
+        int ttl = Math.min(plugin.config.statusSweepInterval * 2, plugin.config.statusCacheTtl);
+        long startedAt = System.nanoTime();
+
+        // Check all panels in parallel
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Map<String, String> servers : panels.values()) {
+            CompletableFuture<Map<String, PowerStatus>> future;
+            try {
+                PowerController powerController = plugin.config.getPowerController(servers.keySet().iterator().next());
+                future = powerController.checkPowerStatuses(servers, plugin.config.statusSweepConcurrency);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.add(future.handle((statuses, error) -> {
+                if (error != null) {
+                    logger.log(Level.WARNING, "Failed to check the status of the servers: " + String.join(", ", servers.keySet()), error);
+                    return null;
+                }
+                statuses.forEach((serverName, status) -> {
+                    if (ttl > 0) {
+                        plugin.statusCache.put(serverName, status, ttl, startedAt);
+                    }
+                    plugin.lifecycle.observe(serverName, status);
+                });
+                logger.fine(String.format("Checked the status of %d/%d servers", statuses.size(), servers.size()));
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> sweeping.set(false));
+    }
+}
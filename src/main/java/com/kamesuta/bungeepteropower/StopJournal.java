@@ -0,0 +1,255 @@
+package com.kamesuta.bungeepteropower;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+
+/**
+ * An append-only journal of the pending idle stop deadlines, so that they survive a proxy restart.
+ * Each line is either "ARM &lt;deadline (epoch millis)&gt; &lt;server name&gt;" or "DONE &lt;server name&gt;" separated by tabs.
+ * Records are written on a background thread, and changes of the same server made in a burst are coalesced into one record.
+ * The journal is rewritten with only the pending deadlines when it grows too large and on shutdown.
+ */
+public class StopJournal {
+    /**
+     * The number of appended records after which the journal is compacted
+     */
+    private static final int COMPACT_THRESHOLD = 1000;
+    /**
+     * The pending value of a server whose countdown is no longer armed
+     */
+    private static final long DONE = -1;
+
+    /**
+     * The journal file
+     */
+    private final File file;
+    /**
+     * Writes the records one after another
+     */
+    private final ExecutorService writer;
+    /**
+     * Changes not written yet (server name -> deadline, or {@link #DONE})
+     */
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+    /**
+     * Whether a write is scheduled on the writer
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    /**
+     * Whether the journal is closed
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * The pending deadlines as written to the file, only accessed by the writer
+     */
+    private final Map<String, Long> deadlines = new HashMap<>();
+    /**
+     * The open journal, or null if not opened yet (only accessed by the writer)
+     */
+    private BufferedWriter out;
+    /**
+     * The number of records appended since the last compaction (only accessed by the writer)
+     */
+    private int appended;
+
+    /**
+     * Create a journal
+     *
+     * @param file The journal file
+     */
+    public StopJournal(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BungeePteroPower-StopJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read the pending deadlines left by the previous run.
+     * The journal is compacted afterwards, dropping any line that was cut off by a crash.
+     *
+     * @return The pending deadlines (server name -> deadline in epoch millis)
+     */
+    public Map<String, Long> load() {
+        Map<String, Long> loaded = new HashMap<>();
+        if (file.exists()) {
+            try {
+                // A last line without a line break was cut off by a crash, and may end in the middle of a character
+                String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                content = content.substring(0, content.lastIndexOf('\n') + 1);
+                for (String line : content.split("\r?\n")) {
+                    String[] record = line.split("\t", 3);
+                    if (record.length == 3 && record[0].equals("ARM")) {
+                        try {
+                            loaded.put(record[2], Long.parseLong(record[1]));
+                        } catch (NumberFormatException e) {
+                            // Ignore a broken line
+                        }
+                    } else if (record.length == 2 && record[0].equals("DONE")) {
+                        loaded.remove(record[1]);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to read the stop journal: " + file, e);
+            }
+        }
+
+        // Start over from the loaded deadlines
+        writer.execute(() -> {
+            deadlines.clear();
+            deadlines.putAll(loaded);
+            compact();
+        });
+        return loaded;
+    }
+
+    /**
+     * Record that the countdown of the server is armed.
+     *
+     * @param serverName The name of the server
+     * @param deadline   The time to stop the server (epoch millis)
+     */
+    public void armed(String serverName, long deadline) {
+        pending.put(serverName, deadline);
+        scheduleFlush();
+    }
+
+    /**
+     * Record that the countdown of the server is cancelled or fired.
+     *
+     * @param serverName The name of the server
+     */
+    public void removed(String serverName) {
+        pending.put(serverName, DONE);
+        scheduleFlush();
+    }
+
+    /**
+     * Write the pending changes on the writer if not scheduled yet
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // The journal is already closed on shutdown
+            }
+        }
+    }
+
+    /**
+     * Append the pending changes to the journal (writer only)
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        try {
+            for (String serverName : pending.keySet()) {
+                Long deadline = pending.remove(serverName);
+                if (deadline == null) {
+                    continue;
+                }
+                if (deadline == DONE) {
+                    // Do not write anything for a countdown the journal does not know
+                    if (deadlines.remove(serverName) != null) {
+                        append("DONE\t" + serverName);
+                    }
+                } else {
+                    deadlines.put(serverName, deadline);
+                    append("ARM\t" + deadline + "\t" + serverName);
+                }
+            }
+            if (out != null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write the stop journal: " + file, e);
+        }
+
+        // Keep the journal small
+        if (appended >= COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Append a record (writer only)
+     *
+     * @param record The record
+     * @throws IOException If the journal cannot be written
+     */
+    private void append(String record) throws IOException {
+        if (out == null) {
+            out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        out.write(record);
+        out.newLine();
+        appended++;
+    }
+
+    /**
+     * Rewrite the journal with only the pending deadlines (writer only)
+     */
+    private void compact() {
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+
+            // Write a new journal and replace the old one at once
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (BufferedWriter compacted = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : deadlines.entrySet()) {
+                    compacted.write("ARM\t" + entry.getValue() + "\t" + entry.getKey());
+                    compacted.newLine();
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            appended = 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact the stop journal: " + file, e);
+        }
+    }
+
+    /**
+     * Write the pending changes, compact the journal and stop the writer.
+     * Calling this method again does nothing.
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        writer.execute(() -> {
+            flush();
+            compact();
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Timed out writing the stop journal: " + file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.kamesuta.bungeepteropower.api;
 
 import com.kamesuta.bungeepteropower.BungeePteroPower;
 
+import javax.annotation.Nullable;
+import java.util.UUID;
+
 /**
  * API for BungeePteroPower.
  * You can use this API to register a custom power controller. (e.g. for a custom server hosting service)
@@ -35,4 +38,13 @@ public interface BungeePteroPowerAPI {
      * @param name The name of the power controller to unregister
      */
     void unregisterPowerController(String name);
+
+    /**
+     * Forget the cached ptero.* permissions of a player.
+     * The permissions are cached for a while (permissionCache.ttl in config.yml),
+     * so call this method when the permissions of a player are changed (e.g. from a permission plugin event).
+     *
+     * @param playerId The UUID of the player, or null to forget the permissions of all players
+     */
+    void invalidatePermissions(@Nullable UUID playerId);
 }
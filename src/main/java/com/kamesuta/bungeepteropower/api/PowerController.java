@@ -1,6 +1,12 @@
 package com.kamesuta.bungeepteropower.api;
 
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 /**
  * Power controller interface.
@@ -32,6 +38,64 @@ public interface PowerController {
         throw new UnsupportedOperationException("This power controller does not support checking offline status.");
     }
 
+    /**
+     * Check the power status of many servers at once.
+     * The default implementation checks the servers in parallel with {@link #checkPowerStatus},
+     * running at most {@code maxConcurrency} requests at a time.
+     * Power controllers that can get the status of many servers in one request should override this method.
+     *
+     * @param servers        The server IDs to check, keyed by the name of the server
+     * @param maxConcurrency The maximum number of requests in flight at the same time
+     * @return A future that completes with the power status keyed by the name of the server.
+     * Servers whose status could not be checked are not included.
+     */
+    default CompletableFuture<Map<String, PowerStatus>> checkPowerStatuses(Map<String, String> servers, int maxConcurrency) {
+        Map<String, PowerStatus> result = new ConcurrentHashMap<>();
+        Queue<Map.Entry<String, String>> queue = new ConcurrentLinkedQueue<>(servers.entrySet());
+
+        int workers = Math.max(1, Math.min(maxConcurrency, servers.size()));
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            futures[i] = done;
+
+            // Each worker checks the next server in the queue until the queue is empty.
+            // Checks that are already complete are handled in the loop instead of recursing,
+            // so the stack does not grow with the number of servers.
+            new Runnable() {
+                @Override
+                public void run() {
+                    Map.Entry<String, String> server;
+                    while ((server = queue.poll()) != null) {
+                        CompletableFuture<PowerStatus> future;
+                        try {
+                            future = checkPowerStatus(server.getKey(), server.getValue());
+                        } catch (RuntimeException e) {
+                            future = CompletableFuture.failedFuture(e);
+                        }
+                        String serverName = server.getKey();
+                        if (!future.isDone()) {
+                            // Continue on the thread that completes the check
+                            future.whenComplete((status, error) -> {
+                                if (status != null) {
+                                    result.put(serverName, status);
+                                }
+                                run();
+                            });
+                            return;
+                        }
+                        PowerStatus status = future.handle((s, error) -> s).join();
+                        if (status != null) {
+                            result.put(serverName, status);
+                        }
+                    }
+                    done.complete(null);
+                }
+            }.run();
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> result);
+    }
+
     /**
      * Restore from a backup.
      * Send a stop signal to the server, wait until the server is offline, and then restore from a backup.
@@ -44,4 +108,32 @@ public interface PowerController {
     default CompletableFuture<Void> sendRestoreSignal(String serverName, String serverId, String backupName) {
         throw new UnsupportedOperationException("This power controller does not support restore signal.");
     }
+
+    /**
+     * Subscribe to live power status changes of the server.
+     * Power controllers that can push status changes (e.g. over a websocket) override this method,
+     * so that waiting for a status change does not need to poll {@link #checkPowerStatus}.
+     *
+     * @param serverName The name of the server
+     * @param serverId   The server ID
+     * @param listener   Called with the new status whenever a status change is received
+     * @return The subscription, or null if live status is not supported (the caller polls instead)
+     */
+    default @Nullable StatusSubscription subscribePowerStatus(String serverName, String serverId, Consumer<PowerStatus> listener) {
+        return null;
+    }
+
+    /**
+     * Called when the configuration is reloaded.
+     * Release resources that depend on the configuration (e.g. HTTP clients) so that they are recreated with the new settings.
+     */
+    default void reload() {
+    }
+
+    /**
+     * Called when the plugin is disabled.
+     * Release all resources held by this power controller.
+     */
+    default void close() {
+    }
 }
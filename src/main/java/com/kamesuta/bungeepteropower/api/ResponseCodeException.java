@@ -0,0 +1,32 @@
+package com.kamesuta.bungeepteropower.api;
+
+/**
+ * Thrown when the panel returns an unexpected response code.
+ * Power controllers can throw this exception so that the request is retried depending on the response code.
+ */
+public class ResponseCodeException extends RuntimeException {
+    /**
+     * The response code returned by the panel
+     */
+    private final int statusCode;
+
+    /**
+     * Create a new exception
+     *
+     * @param message    The detail message
+     * @param statusCode The response code returned by the panel
+     */
+    public ResponseCodeException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Get the response code returned by the panel
+     *
+     * @return The response code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
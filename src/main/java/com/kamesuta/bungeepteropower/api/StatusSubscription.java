@@ -0,0 +1,22 @@
+package com.kamesuta.bungeepteropower.api;
+
+/**
+ * A subscription to live power status changes of a server.
+ *
+ * @see PowerController#subscribePowerStatus
+ */
+public interface StatusSubscription extends AutoCloseable {
+    /**
+     * Check if status changes are currently being pushed.
+     * While this returns false (e.g. while reconnecting), the caller should poll the status instead.
+     *
+     * @return true if the live status is connected
+     */
+    boolean isLive();
+
+    /**
+     * Stop receiving status changes.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,132 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.Statistics;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Stops sending requests to a panel that is down.
+ * After a number of consecutive failures, requests fail immediately for a while (open).
+ * After that, a single trial request is let through (half-open), and the breaker closes again if it succeeds.
+ */
+public class CircuitBreaker {
+    /**
+     * The state of the circuit breaker
+     */
+    public enum State {
+        /**
+         * Requests are sent normally
+         */
+        CLOSED,
+        /**
+         * A trial request is being sent
+         */
+        HALF_OPEN,
+        /**
+         * Requests fail immediately
+         */
+        OPEN,
+    }
+
+    /**
+     * The name of the panel (used for logs)
+     */
+    private final String name;
+    /**
+     * The number of consecutive failures to open the breaker
+     */
+    private final int failureThreshold;
+    /**
+     * The number of nanoseconds to stay open
+     */
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * Create a new circuit breaker
+     *
+     * @param name             The name of the panel
+     * @param failureThreshold The number of consecutive failures to open the breaker (0 to disable)
+     * @param openSeconds      The number of seconds to stay open
+     */
+    public CircuitBreaker(String name, int failureThreshold, int openSeconds) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+    }
+
+    /**
+     * Check if a request can be sent now.
+     * If this returns true, the result must be reported by {@link #recordSuccess()}, {@link #recordFailure()} or {@link #cancel()}.
+     *
+     * @return true if the request can be sent
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                // Let a single trial request through
+                state = State.HALF_OPEN;
+                logger.info("Retrying requests to the " + name + " panel");
+                return true;
+            case HALF_OPEN:
+            default:
+                // Wait for the result of the trial request
+                return false;
+        }
+    }
+
+    /**
+     * Report that a request succeeded
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("The " + name + " panel is available again");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Report that a request failed (connection error or server error)
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (failureThreshold > 0 && state == State.CLOSED && failures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            logger.warning(String.format("The %s panel seems to be down (%d consecutive failures). Requests are paused for %d seconds.", name, failures, TimeUnit.NANOSECONDS.toSeconds(openNanos)));
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.PANEL_CIRCUIT_OPENED);
+        }
+    }
+
+    /**
+     * Report that an acquired request was not sent
+     */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN) {
+            // Let another trial request through
+            state = State.OPEN;
+            openedAt = System.nanoTime() - openNanos;
+        }
+    }
+
+    /**
+     * Get the current state
+     *
+     * @return The current state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+}
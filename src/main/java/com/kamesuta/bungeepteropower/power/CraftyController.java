@@ -1,15 +1,18 @@
 package com.kamesuta.bungeepteropower.power;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.kamesuta.bungeepteropower.Config;
 import com.kamesuta.bungeepteropower.api.PowerController;
 import com.kamesuta.bungeepteropower.api.PowerSignal;
 import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.ResponseCodeException;
 
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
@@ -20,7 +23,44 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
 /**
  * Crafty API client.
  */
-public class CraftyController implements PowerController {
+public class CraftyController implements PowerController, PanelController {
+    /**
+     * The name of the panel profile in the config
+     */
+    private final String panelName;
+    /**
+     * The HTTP client shared by all requests to the Crafty panel
+     */
+    private final PanelHttpClient httpClient;
+
+    /**
+     * Create a controller for the default Crafty panel ("crafty" section in the config)
+     */
+    public CraftyController() {
+        this("crafty");
+    }
+
+    /**
+     * Create a controller for a panel profile
+     *
+     * @param panelName The name of the panel profile in the config
+     */
+    public CraftyController(String panelName) {
+        this.panelName = panelName;
+        this.httpClient = new PanelHttpClient(panelName.equals("crafty") ? "Crafty" : "Crafty-" + panelName);
+    }
+
+    /**
+     * Get the settings of the panel
+     *
+     * @return The panel settings
+     */
+    private Config.PanelConfig getPanel() {
+        Config.PanelConfig panel = plugin.config.getPanelConfig(panelName);
+        Objects.requireNonNull(panel, "No panel found: " + panelName);
+        return panel;
+    }
+
     /**
      * Send a power signal to the Crafty server.
      *
@@ -35,15 +75,17 @@ public class CraftyController implements PowerController {
         String action = signalType == PowerSignal.START ? "start_server" : "stop_server";
         logger.info(String.format("%s server: %s (Crafty server ID: %s)", action, serverName, serverId));
 
-        // Create a path
-        String path = "/api/v2/servers/" + serverId + "/action/" + action;
+        // Get the precompiled request
+        ServerRequests requests = getRequests(serverName, serverId);
+        RequestTemplate template = signalType == PowerSignal.START ? requests.start : requests.stop;
 
         // Create a request
-        HttpRequest request = requestBuilder(path)
+        HttpRequest request = template.builder()
                 .POST(HttpRequest.BodyPublishers.ofString(""))
                 .build();
 
-        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        // The body of a successful response is not used
+        return httpClient.sendAsync(request, ResponseBodies.discardingOn(200))
                 .thenApply(status -> {
                     int code = status.statusCode();
                     logger.info(status.toString());
@@ -54,7 +96,7 @@ public class CraftyController implements PowerController {
                         String message = "Failed to send " + signal + " signal to the server: " + serverName + ". Response code: " + code;
                         logger.warning(message);
                         logger.info("Request: " + request + ", Response: " + code + " " + status.body());
-                        throw new RuntimeException(message);
+                        throw new ResponseCodeException(message, code);
                     }
                 })
                 .exceptionally(e -> {
@@ -80,18 +122,21 @@ public class CraftyController implements PowerController {
     }
 
     /**
-     * Create a request builder with custom headers
+     * Get the precompiled requests of the server.
+     * Servers that are not managed by this panel in the config (e.g. called through the API) get requests built on demand.
      *
-     * @param The path to the request
-     * @return A request builder with custom headers
+     * @param serverName The name of the server
+     * @param serverId   The Crafty server ID
+     * @return The requests of the server
      */
-    private HttpRequest.Builder requestBuilder(String path) {
-        HttpRequest.Builder builder = HttpRequest.newBuilder()
-                .uri(URI.create(plugin.config.craftyUrl.resolve(path).toString()))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + plugin.config.craftyApiKey);
-        plugin.config.customHeaders.forEach(builder::header);
-        return builder;
+    private ServerRequests getRequests(String serverName, String serverId) {
+        ServerRequests requests = plugin.config.getServerRequests(serverName);
+        if (requests != null && requests.matches(panelName, serverId)) {
+            return requests;
+        }
+        Config.PanelConfig panel = getPanel();
+        requests = ServerRequests.create(panelName, panel, serverId, null, RequestTemplate.headersOf(panel), httpClient.getRequestTimeout());
+        return Objects.requireNonNull(requests, "Unsupported panel type: " + panel.type);
     }
 
     /**
@@ -102,33 +147,56 @@ public class CraftyController implements PowerController {
      * @return A future that completes with the power status of the server
      */
     public CompletableFuture<PowerStatus> checkPowerStatus(String serverName, String serverId) {
-        // Create a path
-        String path = "/api/v2/servers/" + serverId + "/stats";
-
         // Create a request
-        HttpRequest request = requestBuilder(path)
+        HttpRequest request = getRequests(serverName, serverId).status.builder()
                 .GET()
                 .build();
 
-        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        // Stream the body and stop parsing once the status is found
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
                 .thenApply(status -> {
                     int code = status.statusCode();
-                    if (code == 200) {
-                        // Parse JSON (data.running)
-                        JsonObject root = JsonParser.parseString(status.body()).getAsJsonObject();
-                        boolean running = root.getAsJsonObject("data").get("running").getAsBoolean();
-                        // Crafty API doesn't provide detailed status, so we can only determine if it's running or not
-                        return running ? PowerStatus.RUNNING : PowerStatus.OFFLINE;
-                    } else {
-                        String message = "Failed to check power status of the server: " + serverName + ". Response code: " + code;
-                        logger.warning(message);
-                        logger.info("Request: " + request + ", Response: " + code + " " + status.body());
-                        throw new RuntimeException(message);
+                    try (InputStream body = status.body()) {
+                        if (code == 200) {
+                            // Read JSON (data.running)
+                            String running = ResponseBodies.readField(body, "data", "running");
+                            // Read the rest without parsing it, closing the body before the end drops the connection from the pool
+                            body.transferTo(OutputStream.nullOutputStream());
+                            if (running == null) {
+                                throw new RuntimeException("No running status in the response for the server: " + serverName);
+                            }
+                            // Crafty API doesn't provide detailed status, so we can only determine if it's running or not
+                            return Boolean.parseBoolean(running) ? PowerStatus.RUNNING : PowerStatus.OFFLINE;
+                        } else {
+                            String message = "Failed to check power status of the server: " + serverName + ". Response code: " + code;
+                            logger.warning(message);
+                            logger.info("Request: " + request + ", Response: " + code + " " + ResponseBodies.readString(body));
+                            throw new ResponseCodeException(message, code);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
                 })
                 .exceptionally(e -> {
                     logger.log(Level.WARNING, "Failed to check power status of the server: " + serverName, e);
-                    return PowerStatus.OFFLINE;
+                    // A failed check does not tell whether the server is running, so let the caller decide
+                    throw new CompletionException(e);
                 });
     }
+
+    @Override
+    public PanelHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public void reload() {
+        // Recreate the HTTP client with the new settings on the next request
+        httpClient.close();
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
 }
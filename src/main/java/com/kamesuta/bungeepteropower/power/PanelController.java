@@ -0,0 +1,13 @@
+package com.kamesuta.bungeepteropower.power;
+
+/**
+ * A power controller that talks to a panel over HTTP.
+ */
+public interface PanelController {
+    /**
+     * Get the HTTP client shared by all requests to the panel
+     *
+     * @return The HTTP client
+     */
+    PanelHttpClient getHttpClient();
+}
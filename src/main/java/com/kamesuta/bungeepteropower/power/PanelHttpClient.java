@@ -0,0 +1,310 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.Statistics;
+
+import javax.annotation.Nullable;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * A long-lived HTTP client shared by all requests of a panel controller.
+ * Connections are kept alive and reused between requests, so a status check does not need a new TCP/TLS handshake.
+ * The client is created lazily from the current configuration and is rebuilt after the configuration is reloaded.
+ * All requests go through a rate limiter and a circuit breaker.
+ */
+public class PanelHttpClient {
+    /**
+     * The name of the panel (used for thread names and logs)
+     */
+    private final String name;
+    /**
+     * The current client, or null if it has not been created yet
+     */
+    private volatile Holder holder;
+
+    /**
+     * The client and the executor it runs on
+     */
+    private static class Holder {
+        private final HttpClient client;
+        private final ExecutorService executor;
+        private final Duration requestTimeout;
+        private final RateLimiter rateLimiter;
+        private final CircuitBreaker circuitBreaker;
+        /**
+         * The number of requests sent through this client that have not completed yet
+         */
+        private int inFlight;
+        /**
+         * Whether the client has been replaced, and is disposed once the requests in flight have completed
+         */
+        private boolean closed;
+        /**
+         * Whether the client has been disposed
+         */
+        private boolean disposed;
+
+        private Holder(HttpClient client, ExecutorService executor, Duration requestTimeout, RateLimiter rateLimiter, CircuitBreaker circuitBreaker) {
+            this.client = client;
+            this.executor = executor;
+            this.requestTimeout = requestTimeout;
+            this.rateLimiter = rateLimiter;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        /**
+         * Count a request that is about to be sent
+         *
+         * @return false if the client has already been disposed, and a new client must be used
+         */
+        private synchronized boolean begin() {
+            if (disposed) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        /**
+         * Count a request that has completed, and dispose the client if it was the last one of a closed client
+         */
+        private void end() {
+            boolean dispose;
+            synchronized (this) {
+                inFlight--;
+                dispose = closed && inFlight == 0 && !disposed;
+                disposed |= dispose;
+            }
+            if (dispose) {
+                dispose();
+            }
+        }
+
+        /**
+         * Stop accepting new requests, and dispose the client once the requests in flight have completed
+         */
+        private void close() {
+            boolean dispose;
+            synchronized (this) {
+                closed = true;
+                dispose = inFlight == 0 && !disposed;
+                disposed |= dispose;
+            }
+            if (dispose) {
+                dispose();
+            }
+        }
+
+        /**
+         * Shut down the executor and the client.
+         * This is done off the client threads, since closing the client waits for its own threads.
+         */
+        private void dispose() {
+            CompletableFuture.runAsync(() -> {
+                executor.shutdown();
+                // HttpClient is AutoCloseable since Java 21
+                if (client instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable) client).close();
+                    } catch (Exception e) {
+                        logger.log(Level.FINE, "Failed to close the HTTP client", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Create a new shared HTTP client
+     *
+     * @param name The name of the panel (e.g. "Pterodactyl")
+     */
+    public PanelHttpClient(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the shared HTTP client.
+     * The client is created from the current configuration if it does not exist.
+     *
+     * @return The HTTP client
+     */
+    public HttpClient getClient() {
+        return getHolder().client;
+    }
+
+    /**
+     * Send a request to the panel through the rate limiter and the circuit breaker.
+     * The request is delayed if the rate limit is reached,
+     * and fails with {@link PanelUnavailableException} if the panel is considered down.
+     *
+     * @param request     The request to send
+     * @param bodyHandler The response body handler
+     * @param <T>         The response body type
+     * @return A future that completes with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        Holder current = beginRequest();
+
+        // Do not hammer a panel that is down
+        if (!current.circuitBreaker.tryAcquire()) {
+            current.end();
+            return CompletableFuture.failedFuture(new PanelUnavailableException("The " + name + " panel is unavailable. Request: " + request));
+        }
+
+        // Wait for the rate limit, but give up if it takes longer than the request itself may take
+        long wait = current.rateLimiter.reserve();
+        if (wait > current.requestTimeout.toNanos()) {
+            current.rateLimiter.cancel();
+            current.circuitBreaker.cancel();
+            current.end();
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.PANEL_RATE_LIMITED);
+            return CompletableFuture.failedFuture(new PanelUnavailableException("The rate limit of the " + name + " panel is exceeded. Request: " + request));
+        }
+        CompletableFuture<HttpResponse<T>> future = wait <= 0
+                ? current.client.sendAsync(request, bodyHandler)
+                : CompletableFuture.runAsync(() -> {
+                }, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS, current.executor))
+                .thenCompose(v -> current.client.sendAsync(request, bodyHandler));
+
+        // Feed the result back to the rate limiter and the circuit breaker
+        return future.whenComplete((response, error) -> {
+            current.end();
+            if (error != null) {
+                current.circuitBreaker.recordFailure();
+                return;
+            }
+            if (current.rateLimiter.update(response.statusCode(), response.headers())) {
+                logger.warning("Rate limited by the " + name + " panel. Request: " + request);
+                plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.PANEL_RATE_LIMITED);
+            }
+            if (response.statusCode() >= 500) {
+                current.circuitBreaker.recordFailure();
+            } else {
+                current.circuitBreaker.recordSuccess();
+            }
+        });
+    }
+
+    /**
+     * Get the state of the circuit breaker
+     *
+     * @return The state of the circuit breaker
+     */
+    public CircuitBreaker.State getCircuitState() {
+        Holder current = holder;
+        return current == null ? CircuitBreaker.State.CLOSED : current.circuitBreaker.getState();
+    }
+
+    /**
+     * Get the rate limiter of the current client
+     *
+     * @return The rate limiter, or null if no client has been created yet
+     */
+    public @Nullable RateLimiter getRateLimiter() {
+        Holder current = holder;
+        return current == null ? null : current.rateLimiter;
+    }
+
+    /**
+     * Get the timeout for a single request
+     *
+     * @return The request timeout
+     */
+    public Duration getRequestTimeout() {
+        return getHolder().requestTimeout;
+    }
+
+    /**
+     * Get or create the current client
+     *
+     * @return The current client
+     */
+    private Holder getHolder() {
+        Holder current = holder;
+        if (current == null) {
+            synchronized (this) {
+                current = holder;
+                if (current == null) {
+                    current = create();
+                    holder = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the current client and count a request on it.
+     * A client closed by a reload keeps serving its requests in flight, but new requests go to the new client.
+     *
+     * @return The client to send the request with, {@link Holder#end()} must be called once the request has completed
+     */
+    private Holder beginRequest() {
+        while (true) {
+            Holder current = getHolder();
+            if (current.begin()) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Create a new client from the current configuration
+     *
+     * @return The new client
+     */
+    private Holder create() {
+        // Bounded executor with daemon threads, so that the proxy can shut down even if a request is hanging
+        int threads = Math.max(1, plugin.config.httpThreads);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "BungeePteroPower-" + name + "-HTTP-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        // HTTP/2 is used if the panel supports it, otherwise HTTP/1.1 with keep-alive
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(plugin.config.httpConnectTimeout))
+                .executor(executor)
+                .build();
+
+        RateLimiter rateLimiter = new RateLimiter(plugin.config.rateLimitRequestsPerMinute, plugin.config.rateLimitBurst);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(name, plugin.config.circuitBreakerFailureThreshold, plugin.config.circuitBreakerOpenDuration);
+        return new Holder(client, executor, Duration.ofSeconds(plugin.config.httpRequestTimeout), rateLimiter, circuitBreaker);
+    }
+
+    /**
+     * Close the current client.
+     * The next request will create a new client from the current configuration.
+     * The requests in flight and the requests waiting for the rate limit still complete on the old client,
+     * which is disposed once the last of them has completed.
+     */
+    public void close() {
+        Holder current;
+        synchronized (this) {
+            current = holder;
+            holder = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+}
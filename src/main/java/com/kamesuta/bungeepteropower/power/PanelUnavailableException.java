@@ -0,0 +1,11 @@
+package com.kamesuta.bungeepteropower.power;
+
+/**
+ * Thrown when a request is not sent to the panel,
+ * because the panel is considered down or the rate limit would be exceeded.
+ */
+public class PanelUnavailableException extends RuntimeException {
+    public PanelUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,18 +1,24 @@
 package com.kamesuta.bungeepteropower.power;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.kamesuta.bungeepteropower.ServerController;
+import com.kamesuta.bungeepteropower.Config;
 import com.kamesuta.bungeepteropower.api.PowerController;
 import com.kamesuta.bungeepteropower.api.PowerSignal;
 import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.ResponseCodeException;
+import com.kamesuta.bungeepteropower.api.StatusSubscription;
 
-import java.net.URI;
-import java.net.http.HttpClient;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
@@ -21,7 +27,49 @@ import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
 /**
  * Pterodactyl API client.
  */
-public class PterodactylController implements PowerController {
+public class PterodactylController implements PowerController, PanelController {
+    /**
+     * The name of the panel profile in the config
+     */
+    private final String panelName;
+    /**
+     * The HTTP client shared by all requests to the Pterodactyl panel
+     */
+    private final PanelHttpClient httpClient;
+    /**
+     * Live power status over the panel websocket
+     */
+    private final PterodactylStatusStream statusStream;
+
+    /**
+     * Create a controller for the default Pterodactyl panel ("pterodactyl" section in the config)
+     */
+    public PterodactylController() {
+        this("pterodactyl");
+    }
+
+    /**
+     * Create a controller for a panel profile
+     *
+     * @param panelName The name of the panel profile in the config
+     */
+    public PterodactylController(String panelName) {
+        this.panelName = panelName;
+        this.httpClient = new PanelHttpClient(panelName.equals("pterodactyl") ? "Pterodactyl" : "Pterodactyl-" + panelName);
+        this.statusStream = new PterodactylStatusStream(httpClient, (serverName, serverId) -> Objects.requireNonNull(getRequests(serverName, serverId).websocket).builder(), this::getPanel);
+    }
+
+    /**
+     * Get the settings of the panel
+     *
+     * @return The panel settings
+     */
+    private Config.PanelConfig getPanel() {
+        Config.PanelConfig panel = plugin.config.getPanelConfig(panelName);
+        Objects.requireNonNull(panel, "No panel found: " + panelName);
+        return panel;
+    }
+
     /**
      * Send a power signal to the Pterodactyl server.
      *
@@ -36,19 +84,20 @@ public class PterodactylController implements PowerController {
         String doing = signalType == PowerSignal.START ? "Starting" : "Stopping";
         logger.info(String.format("%s server: %s (Pterodactyl server ID: %s)", doing, serverName, serverId));
 
-        // Create a path
-        String path = "/api/client/servers/" + serverId + "/power";
+        // Get the precompiled request
+        ServerRequests requests = getRequests(serverName, serverId);
+        RequestTemplate template = signalType == PowerSignal.START ? requests.start : requests.stop;
 
         // Create a JSON body to send power signal
         String jsonBody = "{\"signal\": \"" + signal + "\"}";
 
         // Create a request
-        HttpRequest request = requestBuilder(path)
+        HttpRequest request = template.builder()
                 .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                 .build();
 
         // Execute request and register a callback
-        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return httpClient.sendAsync(request, ResponseBodies.discardingOn(204))
                 .thenApply(status -> {
                     int code = status.statusCode();
                     if (code == 204) {
@@ -58,7 +107,7 @@ public class PterodactylController implements PowerController {
                         String message = "Failed to send " + signal + " signal to the server: " + serverName + ". Response code: " + code;
                         logger.warning(message);
                         logger.info("Request: " + request + ", Response: " + code + " " + status.body());
-                        throw new RuntimeException(message);
+                        throw new ResponseCodeException(message, code);
                     }
                 })
                 .exceptionally(e -> {
@@ -92,18 +141,21 @@ public class PterodactylController implements PowerController {
     }
 
     /**
-     * Create a request builder with custom headers
+     * Get the precompiled requests of the server.
+     * Servers that are not managed by this panel in the config (e.g. called through the API) get requests built on demand.
      *
-     * @param path The path to the request
-     * @return A request builder with custom headers
+     * @param serverName The name of the server
+     * @param serverId   The Pterodactyl server ID
+     * @return The requests of the server
      */
-    private HttpRequest.Builder requestBuilder(String path) {
-        HttpRequest.Builder builder = HttpRequest.newBuilder()
-                .uri(URI.create(plugin.config.pterodactylUrl.resolve(path).toString()))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + plugin.config.pterodactylApiKey);
-        plugin.config.customHeaders.forEach(builder::header);
-        return builder;
+    private ServerRequests getRequests(String serverName, String serverId) {
+        ServerRequests requests = plugin.config.getServerRequests(serverName);
+        if (requests != null && requests.matches(panelName, serverId)) {
+            return requests;
+        }
+        Config.PanelConfig panel = getPanel();
+        requests = ServerRequests.create(panelName, panel, serverId, null, RequestTemplate.headersOf(panel), httpClient.getRequestTimeout());
+        return Objects.requireNonNull(requests, "Unsupported panel type: " + panel.type);
     }
 
     /**
@@ -117,19 +169,25 @@ public class PterodactylController implements PowerController {
     private CompletableFuture<Void> restoreBackup(String serverName, String serverId, String backupUuid) {
         logger.info(String.format("Restoring from backup: %s to server: %s (Pterodactyl server ID: %s)", backupUuid, serverName, serverId));
 
-        // Create a path
-        String path = "/api/client/servers/" + serverId + "/backups/" + backupUuid + "/restore";
+        // Get the precompiled request, unless another backup is restored
+        ServerRequests requests = getRequests(serverName, serverId);
+        RequestTemplate template = requests.restore;
+        if (template == null || !backupUuid.equals(requests.backupId)) {
+            Config.PanelConfig panel = getPanel();
+            String path = "/api/client/servers/" + serverId + "/backups/" + backupUuid + "/restore";
+            template = RequestTemplate.of(panel, path, RequestTemplate.headersOf(panel), httpClient.getRequestTimeout());
+        }
 
         // Create a JSON body to delete all files
         String jsonBody = "{\"truncate\":true}";
 
         // Create a request
-        HttpRequest request = requestBuilder(path)
+        HttpRequest request = template.builder()
                 .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                 .build();
 
         // Execute request and register a callback
-        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        return httpClient.sendAsync(request, ResponseBodies.discardingOn(204))
                 .thenApply(status -> {
                     int code = status.statusCode();
                     if (code == 204) {
@@ -139,7 +197,7 @@ public class PterodactylController implements PowerController {
                         String message = "Failed to restore backup: " + backupUuid + " to server: " + serverName + ". Response code: " + code;
                         logger.warning(message);
                         logger.info("Request: " + request + ", Response: " + code + " " + status.body());
-                        throw new RuntimeException(message);
+                        throw new ResponseCodeException(message, code);
                     }
                 })
                 .exceptionally(e -> {
@@ -157,33 +215,39 @@ public class PterodactylController implements PowerController {
      */
     @Override
     public CompletableFuture<PowerStatus> checkPowerStatus(String serverName, String serverId) {
-        // Create a path
-        String path = "/api/client/servers/" + serverId + "/resources";
-
         // Create a request
-        HttpRequest request = requestBuilder(path)
+        HttpRequest request = getRequests(serverName, serverId).status.builder()
                 .GET()
                 .build();
 
         // Execute request and register a callback
-        return HttpClient.newHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        // Stream the body and stop parsing once the state is found
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
                 .thenApply(status -> {
                     int code = status.statusCode();
-                    if (code == 200) {
-                        // Parse JSON (attributes.current_state)
-                        JsonObject root = JsonParser.parseString(status.body()).getAsJsonObject();
-                        String state = root.getAsJsonObject("attributes").get("current_state").getAsString();
-                        try {
-                            return PowerStatus.valueOf(state.toUpperCase());
-                        } catch (IllegalArgumentException e) {
-                            logger.warning("Unknown server state: " + state + " for server: " + serverName);
-                            return PowerStatus.OFFLINE;
+                    try (InputStream body = status.body()) {
+                        if (code == 200) {
+                            // Read JSON (attributes.current_state)
+                            String state = ResponseBodies.readField(body, "attributes", "current_state");
+                            // Read the rest without parsing it, closing the body before the end drops the connection from the pool
+                            body.transferTo(OutputStream.nullOutputStream());
+                            if (state == null) {
+                                throw new RuntimeException("No current state in the response for server: " + serverName);
+                            }
+                            try {
+                                return PowerStatus.valueOf(state.toUpperCase());
+                            } catch (IllegalArgumentException e) {
+                                logger.warning("Unknown server state: " + state + " for server: " + serverName);
+                                return PowerStatus.OFFLINE;
+                            }
+                        } else {
+                            String message = "Failed to get power status of server: " + serverName + ". Response code: " + code;
+                            logger.warning(message);
+                            logger.info("Request: " + request + ", Response: " + code + " " + ResponseBodies.readString(body));
+                            throw new ResponseCodeException(message, code);
                         }
-                    } else {
-                        String message = "Failed to get power status of server: " + serverName + ". Response code: " + code;
-                        logger.warning(message);
-                        logger.info("Request: " + request + ", Response: " + code + " " + status.body());
-                        throw new RuntimeException(message);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
                 })
                 .exceptionally(e -> {
@@ -191,4 +255,38 @@ public class PterodactylController implements PowerController {
                     throw new CompletionException(e);
                 });
     }
+
+    /**
+     * Subscribe to live power status changes of the server over the panel websocket.
+     *
+     * @param serverName The name of the server
+     * @param serverId   The Pterodactyl server ID
+     * @param listener   Called with the new status whenever a status change is received
+     * @return The subscription, or null if live status is disabled
+     */
+    @Override
+    public @Nullable StatusSubscription subscribePowerStatus(String serverName, String serverId, Consumer<PowerStatus> listener) {
+        if (!plugin.config.pterodactylLiveStatus) {
+            return null;
+        }
+        return statusStream.subscribe(serverName, serverId, listener);
+    }
+
+    @Override
+    public PanelHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public void reload() {
+        // Recreate the HTTP client and websockets with the new settings on the next request
+        statusStream.closeAll();
+        httpClient.close();
+    }
+
+    @Override
+    public void close() {
+        statusStream.closeAll();
+        httpClient.close();
+    }
 }
@@ -0,0 +1,432 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.kamesuta.bungeepteropower.Config;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.StatusSubscription;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Live power status of Pterodactyl servers.
+ * Opens the server websocket of the panel while someone is subscribed to the server,
+ * and pushes the state changes to the subscribers as soon as they happen.
+ */
+class PterodactylStatusStream {
+    /**
+     * The maximum number of seconds to wait before reconnecting
+     */
+    private static final int MAX_RECONNECT_DELAY = 30;
+
+    /**
+     * The HTTP client used to fetch credentials and open websockets
+     */
+    private final PanelHttpClient httpClient;
+    /**
+     * Creates a request builder for the websocket credentials from the server name and the server ID
+     */
+    private final BiFunction<String, String, HttpRequest.Builder> credentialsRequest;
+    /**
+     * Gets the current settings of the panel
+     */
+    private final Supplier<Config.PanelConfig> panel;
+    /**
+     * Open connections per Pterodactyl server ID
+     */
+    private final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new status stream
+     *
+     * @param httpClient         The HTTP client of the controller
+     * @param credentialsRequest Creates a request builder for the websocket credentials from the server name and the server ID
+     * @param panel              Gets the current settings of the panel
+     */
+    PterodactylStatusStream(PanelHttpClient httpClient, BiFunction<String, String, HttpRequest.Builder> credentialsRequest, Supplier<Config.PanelConfig> panel) {
+        this.httpClient = httpClient;
+        this.credentialsRequest = credentialsRequest;
+        this.panel = panel;
+    }
+
+    /**
+     * Subscribe to the power status changes of the server.
+     * The websocket is opened if it is not open yet.
+     *
+     * @param serverName The name of the server
+     * @param serverId   The Pterodactyl server ID
+     * @param listener   Called with the new status whenever the status is received
+     * @return The subscription
+     */
+    StatusSubscription subscribe(String serverName, String serverId, Consumer<PowerStatus> listener) {
+        Connection connection = connections.compute(serverId, (id, existing) -> {
+            Connection current = existing != null ? existing : new Connection(serverName, serverId);
+            current.listeners.add(listener);
+            return current;
+        });
+        connection.open();
+
+        return new StatusSubscription() {
+            @Override
+            public boolean isLive() {
+                return connection.live;
+            }
+
+            @Override
+            public void close() {
+                unsubscribe(connection, listener);
+            }
+        };
+    }
+
+    /**
+     * Remove the listener, and close the websocket if nobody is subscribed anymore.
+     *
+     * @param connection The connection the listener is subscribed to
+     * @param listener   The listener to remove
+     */
+    private void unsubscribe(Connection connection, Consumer<PowerStatus> listener) {
+        connections.computeIfPresent(connection.serverId, (id, existing) -> {
+            existing.listeners.remove(listener);
+            if (existing.listeners.isEmpty()) {
+                existing.close();
+                return null;
+            }
+            return existing;
+        });
+    }
+
+    /**
+     * Close all websockets.
+     * Subscribers fall back to polling.
+     */
+    void closeAll() {
+        connections.values().forEach(Connection::close);
+        connections.clear();
+    }
+
+    /**
+     * Websocket credentials returned by the panel
+     */
+    private static class Credentials {
+        private final String token;
+        private final String socket;
+
+        private Credentials(String token, String socket) {
+            this.token = token;
+            this.socket = socket;
+        }
+    }
+
+    /**
+     * Fetch the websocket URL and a token to authenticate with.
+     *
+     * @param serverName The name of the server
+     * @param serverId   The Pterodactyl server ID
+     * @return A future that completes with the credentials
+     */
+    private CompletableFuture<Credentials> fetchCredentials(String serverName, String serverId) {
+        // Create a request
+        HttpRequest request = credentialsRequest.apply(serverName, serverId)
+                .GET()
+                .build();
+
+        // Execute request and parse the credentials (data.token, data.socket)
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(status -> {
+                    int code = status.statusCode();
+                    if (code != 200) {
+                        throw new RuntimeException("Failed to get websocket credentials. Response code: " + code);
+                    }
+                    JsonObject data = JsonParser.parseString(status.body()).getAsJsonObject().getAsJsonObject("data");
+                    return new Credentials(data.get("token").getAsString(), data.get("socket").getAsString());
+                });
+    }
+
+    /**
+     * Parse the state name sent by Wings
+     *
+     * @param state The state name (e.g. "running")
+     * @return The power status, or null if unknown
+     */
+    private static PowerStatus parseState(String state) {
+        try {
+            return PowerStatus.valueOf(state.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The websocket of a single server
+     */
+    private class Connection implements WebSocket.Listener {
+        private final String serverName;
+        private final String serverId;
+        /**
+         * The subscribers of this server
+         */
+        private final Set<Consumer<PowerStatus>> listeners = new CopyOnWriteArraySet<>();
+        /**
+         * Receives fragmented text messages
+         */
+        private final StringBuilder buffer = new StringBuilder();
+        /**
+         * Whether the websocket is authenticated and status changes are being received
+         */
+        private volatile boolean live;
+        /**
+         * The open websocket, or null if not connected
+         */
+        private WebSocket webSocket;
+        /**
+         * Messages are sent one after another, because the websocket does not allow concurrent sends
+         */
+        private CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+        /**
+         * The token to authenticate with after the websocket is opened
+         */
+        private String pendingToken;
+        private boolean connecting;
+        private boolean closed;
+        private int reconnectDelay = 1;
+
+        private Connection(String serverName, String serverId) {
+            this.serverName = serverName;
+            this.serverId = serverId;
+        }
+
+        /**
+         * Open the websocket if it is not open or being opened
+         */
+        private synchronized void open() {
+            if (closed || connecting || webSocket != null) {
+                return;
+            }
+            connecting = true;
+
+            // The panel only accepts websockets from its own origin
+            URI panelUrl = panel.get().url;
+            String origin = panelUrl.getScheme() + "://" + panelUrl.getRawAuthority();
+
+            fetchCredentials(serverName, serverId)
+                    .thenCompose(credentials -> {
+                        synchronized (this) {
+                            pendingToken = credentials.token;
+                        }
+                        return httpClient.getClient().newWebSocketBuilder()
+                                .header("Origin", origin)
+                                .connectTimeout(httpClient.getRequestTimeout())
+                                .buildAsync(URI.create(credentials.socket), this);
+                    })
+                    .whenComplete((ws, error) -> {
+                        synchronized (this) {
+                            connecting = false;
+                        }
+                        if (error != null) {
+                            logger.warning("Failed to connect live status of the server: " + serverName + ". " + error.getMessage());
+                            reconnect();
+                        }
+                    });
+        }
+
+        /**
+         * Close the websocket and stop reconnecting
+         */
+        private synchronized void close() {
+            closed = true;
+            live = false;
+            if (webSocket != null) {
+                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+                webSocket = null;
+            }
+        }
+
+        /**
+         * Drop the current websocket and connect again after a while
+         */
+        private void reconnect() {
+            int delay;
+            synchronized (this) {
+                live = false;
+                if (webSocket != null) {
+                    webSocket.abort();
+                    webSocket = null;
+                }
+                if (closed || listeners.isEmpty()) {
+                    return;
+                }
+                delay = reconnectDelay;
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+            }
+            logger.fine("Reconnecting live status of the server: " + serverName + " in " + delay + " seconds");
+            plugin.getProxy().getScheduler().schedule(plugin, this::open, delay, TimeUnit.SECONDS);
+        }
+
+        /**
+         * Send a message to Wings
+         *
+         * @param event The event name
+         * @param arg   The argument of the event, or null
+         */
+        private synchronized void send(String event, String arg) {
+            WebSocket ws = webSocket;
+            if (ws == null) {
+                return;
+            }
+            JsonObject message = new JsonObject();
+            message.addProperty("event", event);
+            JsonArray args = new JsonArray();
+            args.add(arg);
+            message.add("args", args);
+            String text = message.toString();
+            sending = sending.exceptionally(e -> null).thenCompose(v -> ws.sendText(text, true));
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            synchronized (this) {
+                if (closed) {
+                    webSocket.abort();
+                    return;
+                }
+                this.webSocket = webSocket;
+            }
+            // Authenticate with the token
+            send("auth", pendingToken);
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            buffer.append(data);
+            if (last) {
+                String message = buffer.toString();
+                buffer.setLength(0);
+                try {
+                    handle(message);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Failed to handle live status of the server: " + serverName, e);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        /**
+         * Handle a message from Wings
+         *
+         * @param message The JSON message
+         */
+        private void handle(String message) {
+            JsonObject root = JsonParser.parseString(message).getAsJsonObject();
+            String event = root.get("event").getAsString();
+            JsonArray args = root.has("args") && root.get("args").isJsonArray() ? root.getAsJsonArray("args") : new JsonArray();
+
+            switch (event) {
+                case "auth success":
+                    logger.fine("Connected live status of the server: " + serverName);
+                    synchronized (this) {
+                        live = true;
+                        reconnectDelay = 1;
+                    }
+                    // Ask for the current state, since it is only pushed when it changes
+                    send("send stats", null);
+                    break;
+
+                case "status":
+                    // args[0] is the new state (e.g. "running")
+                    if (args.size() > 0) {
+                        notifyStatus(parseState(args.get(0).getAsString()));
+                    }
+                    break;
+
+                case "stats":
+                    // args[0] is a JSON string including the state
+                    if (args.size() > 0) {
+                        JsonObject stats = JsonParser.parseString(args.get(0).getAsString()).getAsJsonObject();
+                        if (stats.has("state")) {
+                            notifyStatus(parseState(stats.get("state").getAsString()));
+                        }
+                    }
+                    break;
+
+                case "token expiring":
+                    // Authenticate again with a new token before the current one expires
+                    fetchCredentials(serverName, serverId)
+                            .thenAccept(credentials -> send("auth", credentials.token))
+                            .exceptionally(e -> {
+                                logger.warning("Failed to refresh live status token of the server: " + serverName + ". " + e.getMessage());
+                                return null;
+                            });
+                    break;
+
+                case "token expired":
+                case "jwt error":
+                    // The token can no longer be used, start over with a new connection
+                    reconnect();
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Notify the subscribers of the new status
+         *
+         * @param status The new status, or null if unknown
+         */
+        private void notifyStatus(PowerStatus status) {
+            if (status == null) {
+                return;
+            }
+            logger.fine("Live status of the server: " + serverName + " is " + status);
+            listeners.forEach(listener -> listener.accept(status));
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (isCurrent(webSocket)) {
+                reconnect();
+            }
+            return null;
+        }
+
+        /**
+         * Check if the websocket is the current one (not an old one that has already been replaced)
+         *
+         * @param webSocket The websocket
+         * @return true if the websocket is the current one
+         */
+        private synchronized boolean isCurrent(WebSocket webSocket) {
+            return this.webSocket == webSocket;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            logger.warning("Live status of the server: " + serverName + " was disconnected. " + error.getMessage());
+            if (isCurrent(webSocket)) {
+                reconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.kamesuta.bungeepteropower.power;
+
+import java.net.http.HttpHeaders;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter for the requests to a panel.
+ * The bucket is kept in sync with the rate limit headers returned by the panel,
+ * and stops sending requests until the time given by Retry-After when the panel returns 429.
+ */
+public class RateLimiter {
+    /**
+     * Tokens added per nanosecond
+     */
+    private final double tokensPerNano;
+    /**
+     * The maximum number of tokens (burst size)
+     */
+    private final double capacity;
+    /**
+     * The number of available tokens (negative if requests are waiting for tokens)
+     */
+    private double tokens;
+    /**
+     * The time (System.nanoTime) the tokens were last refilled.
+     * This is in the future while the panel has asked us to wait.
+     */
+    private long lastRefill;
+    /**
+     * The last X-RateLimit-Limit returned by the panel, or -1 if unknown
+     */
+    private volatile long panelLimit = -1;
+    /**
+     * The last X-RateLimit-Remaining returned by the panel, or -1 if unknown
+     */
+    private volatile long panelRemaining = -1;
+
+    /**
+     * Create a new rate limiter
+     *
+     * @param requestsPerMinute The number of requests allowed per minute
+     * @param burst             The number of requests that can be sent at once
+     */
+    public RateLimiter(int requestsPerMinute, int burst) {
+        this.tokensPerNano = Math.max(1, requestsPerMinute) / (double) TimeUnit.MINUTES.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take a token for a request.
+     *
+     * @return The number of nanoseconds to wait before sending the request (0 if it can be sent now)
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+        long wait = Math.max(0, lastRefill - now);
+        if (tokens < 0) {
+            wait += (long) (-tokens / tokensPerNano);
+        }
+        return wait;
+    }
+
+    /**
+     * Give back a token that was reserved but not used.
+     */
+    public synchronized void cancel() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * Update the bucket from the response of the panel.
+     *
+     * @param statusCode The response code
+     * @param headers    The response headers
+     * @return true if the request was rate limited by the panel (429)
+     */
+    public boolean update(int statusCode, HttpHeaders headers) {
+        OptionalLong limit = headers.firstValueAsLong("X-RateLimit-Limit");
+        OptionalLong remaining = headers.firstValueAsLong("X-RateLimit-Remaining");
+        limit.ifPresent(value -> panelLimit = value);
+        remaining.ifPresent(value -> panelRemaining = value);
+
+        long now = System.nanoTime();
+        synchronized (this) {
+            refill(now);
+            // Never think we have more tokens than the panel says
+            if (remaining.isPresent() && tokens > remaining.getAsLong()) {
+                tokens = remaining.getAsLong();
+            }
+        }
+
+        boolean limited = statusCode == 429;
+        if (limited || remaining.orElse(-1) == 0) {
+            // Wait until the panel allows us to send requests again
+            long waitSeconds = 1;
+            OptionalLong retryAfter = parseRetryAfter(headers);
+            OptionalLong reset = headers.firstValueAsLong("X-RateLimit-Reset");
+            if (retryAfter.isPresent()) {
+                waitSeconds = retryAfter.getAsLong();
+            } else if (reset.isPresent()) {
+                // X-RateLimit-Reset is a UNIX timestamp
+                waitSeconds = reset.getAsLong() - System.currentTimeMillis() / 1000;
+            }
+            pause(now + TimeUnit.SECONDS.toNanos(Math.max(1, waitSeconds)));
+        }
+        return limited;
+    }
+
+    /**
+     * Stop handing out tokens until the specified time
+     *
+     * @param until The time (System.nanoTime) to wait until
+     */
+    private synchronized void pause(long until) {
+        if (until - lastRefill > 0) {
+            lastRefill = until;
+            tokens = Math.min(tokens, 0);
+        }
+    }
+
+    /**
+     * Add tokens for the elapsed time
+     *
+     * @param now The current time (System.nanoTime)
+     */
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * Parse the Retry-After header in seconds
+     *
+     * @param headers The response headers
+     * @return The number of seconds to wait, if present
+     */
+    private static OptionalLong parseRetryAfter(HttpHeaders headers) {
+        try {
+            return headers.firstValueAsLong("Retry-After");
+        } catch (NumberFormatException e) {
+            // HTTP-date format is not used by the panels
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Get the last X-RateLimit-Limit returned by the panel
+     *
+     * @return The limit, or -1 if unknown
+     */
+    public long getPanelLimit() {
+        return panelLimit;
+    }
+
+    /**
+     * Get the last X-RateLimit-Remaining returned by the panel
+     *
+     * @return The remaining requests, or -1 if unknown
+     */
+    public long getPanelRemaining() {
+        return panelRemaining;
+    }
+}
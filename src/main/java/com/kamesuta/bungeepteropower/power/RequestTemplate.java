@@ -0,0 +1,94 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.Config;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A precompiled request to a panel endpoint.
+ * The URI and the headers are resolved once, so that sending a request only needs to attach a body.
+ */
+public final class RequestTemplate {
+    /**
+     * The resolved URI of the endpoint
+     */
+    private final URI uri;
+    /**
+     * The headers as name/value pairs
+     */
+    private final String[] headers;
+    /**
+     * The timeout of a single request
+     */
+    private final Duration timeout;
+
+    /**
+     * Create a request template
+     *
+     * @param uri     The resolved URI of the endpoint
+     * @param headers The headers as name/value pairs (see {@link #headersOf(Config.PanelConfig)})
+     * @param timeout The timeout of a single request
+     */
+    public RequestTemplate(URI uri, String[] headers, Duration timeout) {
+        this.uri = uri;
+        this.headers = headers;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Create a request template for a path of the panel API
+     *
+     * @param panel   The panel settings
+     * @param path    The path of the endpoint (e.g. "/api/client/servers/abcd1234/power")
+     * @param headers The headers as name/value pairs
+     * @param timeout The timeout of a single request
+     * @return The request template
+     */
+    public static RequestTemplate of(Config.PanelConfig panel, String path, String[] headers, Duration timeout) {
+        return new RequestTemplate(URI.create(panel.url.resolve(path).toString()), headers, timeout);
+    }
+
+    /**
+     * Build the headers sent with every request to the panel.
+     * The array is shared by all templates of the panel and must not be modified.
+     *
+     * @param panel The panel settings
+     * @return The headers as name/value pairs
+     */
+    public static String[] headersOf(Config.PanelConfig panel) {
+        List<String> headers = new ArrayList<>();
+        headers.add("Content-Type");
+        headers.add("application/json");
+        headers.add("Authorization");
+        headers.add("Bearer " + panel.apiKey);
+        panel.customHeaders.forEach((name, value) -> {
+            headers.add(name);
+            headers.add(value);
+        });
+        return headers.toArray(new String[0]);
+    }
+
+    /**
+     * Create a request builder from this template
+     *
+     * @return A request builder with the URI, the headers and the timeout set
+     */
+    public HttpRequest.Builder builder() {
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .headers(headers);
+    }
+
+    /**
+     * Get the resolved URI of the endpoint
+     *
+     * @return The URI
+     */
+    public URI getUri() {
+        return uri;
+    }
+}
@@ -0,0 +1,85 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers to consume panel responses without buffering the whole body.
+ */
+final class ResponseBodies {
+    private ResponseBodies() {
+    }
+
+    /**
+     * Create a body handler that discards the body of a successful response.
+     * The body of other responses is kept as a string for logging.
+     *
+     * @param successCode The response code of a successful response (e.g. 204)
+     * @return The body handler. The body is null for a successful response.
+     */
+    static HttpResponse.BodyHandler<String> discardingOn(int successCode) {
+        return responseInfo -> responseInfo.statusCode() == successCode
+                ? HttpResponse.BodySubscribers.replacing(null)
+                : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a single field from a JSON stream.
+     * Parsing stops as soon as the field is found, and the rest of the stream is left to the caller.
+     *
+     * @param body The JSON stream
+     * @param path The names of the objects to descend into, followed by the name of the field (e.g. "attributes", "current_state")
+     * @return The value of the field as a string, or null if the field is not found or is null
+     * @throws IOException If the stream cannot be read or is not valid JSON
+     */
+    static @Nullable String readField(InputStream body, String... path) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        for (int depth = 0; depth < path.length; depth++) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            // Skip until the name at this depth
+            boolean found = false;
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(path[depth])) {
+                    found = true;
+                    break;
+                }
+                reader.skipValue();
+            }
+            if (!found) {
+                return null;
+            }
+        }
+
+        // Read the value of the field
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Read the rest of the stream as a string (used to log error responses)
+     *
+     * @param body The stream
+     * @return The content of the stream
+     * @throws IOException If the stream cannot be read
+     */
+    static String readString(InputStream body) throws IOException {
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
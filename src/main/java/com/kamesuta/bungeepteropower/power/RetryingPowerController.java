@@ -0,0 +1,168 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.Statistics;
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.ResponseCodeException;
+import com.kamesuta.bungeepteropower.api.StatusSubscription;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static com.kamesuta.bungeepteropower.BungeePteroPower.plugin;
+
+/**
+ * Wraps a power controller and retries failed power signals and restores.
+ * Retries are delayed with exponential backoff and jitter.
+ * Which failures are retried is configured by the response codes and exception types in the config.
+ */
+public class RetryingPowerController implements PowerController {
+    /**
+     * The wrapped power controller
+     */
+    private final PowerController delegate;
+
+    /**
+     * Wrap a power controller
+     *
+     * @param delegate The power controller to wrap
+     */
+    public RetryingPowerController(PowerController delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<Void> sendPowerSignal(String serverName, String serverId, PowerSignal signalType) {
+        return retry("send " + signalType.getSignal() + " signal to", serverName, () -> delegate.sendPowerSignal(serverName, serverId, signalType));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendRestoreSignal(String serverName, String serverId, String backupName) {
+        return retry("restore backup to", serverName, () -> delegate.sendRestoreSignal(serverName, serverId, backupName));
+    }
+
+    @Override
+    public CompletableFuture<PowerStatus> checkPowerStatus(String serverName, String serverId) {
+        // Status checks are repeated by the callers anyway, so they are not retried
+        return delegate.checkPowerStatus(serverName, serverId);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, PowerStatus>> checkPowerStatuses(Map<String, String> servers, int maxConcurrency) {
+        return delegate.checkPowerStatuses(servers, maxConcurrency);
+    }
+
+    @Override
+    public @Nullable StatusSubscription subscribePowerStatus(String serverName, String serverId, Consumer<PowerStatus> listener) {
+        return delegate.subscribePowerStatus(serverName, serverId, listener);
+    }
+
+    @Override
+    public void reload() {
+        delegate.reload();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Run the action and retry it while it fails with a retryable error.
+     *
+     * @param action     The description of the action (used for logs)
+     * @param serverName The name of the server
+     * @param supplier   Starts the action
+     * @param <T>        The result type
+     * @return A future that completes with the result of the first successful attempt, or the error of the last attempt
+     */
+    private <T> CompletableFuture<T> retry(String action, String serverName, Supplier<CompletableFuture<T>> supplier) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(1, action, serverName, supplier, result);
+        return result;
+    }
+
+    /**
+     * Run a single attempt of the action
+     *
+     * @param attempt    The attempt number (starting from 1)
+     * @param action     The description of the action (used for logs)
+     * @param serverName The name of the server
+     * @param supplier   Starts the action
+     * @param result     The future to complete with the final result
+     * @param <T>        The result type
+     */
+    private <T> void attempt(int attempt, String action, String serverName, Supplier<CompletableFuture<T>> supplier, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = supplier.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            if (attempt >= plugin.config.retryMaxAttempts || !isRetryable(error)) {
+                result.completeExceptionally(error);
+                return;
+            }
+
+            // Retry after a while
+            long delay = backoff(attempt);
+            logger.info(String.format("Retrying to %s the server: %s in %d ms (attempt %d/%d)", action, serverName, delay, attempt + 1, plugin.config.retryMaxAttempts));
+            plugin.statistics.actionCounter.increment(Statistics.ActionCounter.ActionType.RETRY_PANEL_REQUEST);
+            plugin.getProxy().getScheduler().schedule(plugin, () -> attempt(attempt + 1, action, serverName, supplier, result), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Calculate the delay before the next attempt.
+     * The delay grows exponentially, and a random jitter spreads out retries from many servers.
+     *
+     * @param attempt The number of the failed attempt (starting from 1)
+     * @return The delay in milliseconds
+     */
+    private static long backoff(int attempt) {
+        double delay = plugin.config.retryInitialDelay * Math.pow(plugin.config.retryMultiplier, attempt - 1);
+        delay = Math.min(delay, plugin.config.retryMaxDelay);
+        // Equal jitter: half of the delay is fixed, the other half is random
+        double jittered = delay / 2 + ThreadLocalRandom.current().nextDouble() * delay / 2;
+        return (long) (jittered * 1000);
+    }
+
+    /**
+     * Check if the error should be retried
+     *
+     * @param error The error of the failed attempt
+     * @return true if the error is retryable
+     */
+    private static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            // Do not retry requests that were not sent because the panel is down or rate limited
+            if (cause instanceof PanelUnavailableException) {
+                return false;
+            }
+            // Retry depending on the response code
+            if (cause instanceof ResponseCodeException) {
+                return plugin.config.retryableStatusCodes.contains(((ResponseCodeException) cause).getStatusCode());
+            }
+            // Retry depending on the exception type (including super classes)
+            for (Class<?> type = cause.getClass(); type != null; type = type.getSuperclass()) {
+                if (plugin.config.retryableExceptions.contains(type.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
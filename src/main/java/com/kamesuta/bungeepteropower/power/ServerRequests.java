@@ -0,0 +1,104 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.Config;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * The precompiled requests of a single server.
+ * Created for every managed server when the config is loaded, and replaced together with the config on reload.
+ */
+public final class ServerRequests {
+    /**
+     * The name of the panel profile the templates were built for
+     */
+    public final String panelName;
+    /**
+     * The server ID in the panel
+     */
+    public final String serverId;
+    /**
+     * Starts the server
+     */
+    public final RequestTemplate start;
+    /**
+     * Stops the server
+     */
+    public final RequestTemplate stop;
+    /**
+     * Gets the power status of the server
+     */
+    public final RequestTemplate status;
+    /**
+     * The backup ID the restore template was built for, or null if not set
+     */
+    public final @Nullable String backupId;
+    /**
+     * Restores the server from the backup, or null if not supported or no backup is set
+     */
+    public final @Nullable RequestTemplate restore;
+    /**
+     * Gets the websocket credentials, or null if not supported
+     */
+    public final @Nullable RequestTemplate websocket;
+
+    private ServerRequests(String panelName, String serverId, RequestTemplate start, RequestTemplate stop, RequestTemplate status,
+                           @Nullable String backupId, @Nullable RequestTemplate restore, @Nullable RequestTemplate websocket) {
+        this.panelName = panelName;
+        this.serverId = serverId;
+        this.start = start;
+        this.stop = stop;
+        this.status = status;
+        this.backupId = backupId;
+        this.restore = restore;
+        this.websocket = websocket;
+    }
+
+    /**
+     * Check if the templates can be used for the server
+     *
+     * @param panelName The name of the panel profile
+     * @param serverId  The server ID in the panel
+     * @return true if the templates were built for the same panel and server
+     */
+    public boolean matches(String panelName, String serverId) {
+        return this.panelName.equals(panelName) && this.serverId.equals(serverId);
+    }
+
+    /**
+     * Build the requests of a server
+     *
+     * @param panelName The name of the panel profile
+     * @param panel     The panel settings
+     * @param serverId  The server ID in the panel
+     * @param backupId  The backup ID to restore from, or null if not set
+     * @param headers   The headers of the panel (see {@link RequestTemplate#headersOf(Config.PanelConfig)})
+     * @param timeout   The timeout of a single request
+     * @return The requests, or null if the panel type is not supported
+     */
+    public static @Nullable ServerRequests create(String panelName, Config.PanelConfig panel, String serverId, @Nullable String backupId, String[] headers, Duration timeout) {
+        switch (panel.type) {
+            case "pterodactyl": {
+                // Start and stop share the power endpoint, the signal is sent in the body
+                RequestTemplate power = RequestTemplate.of(panel, "/api/client/servers/" + serverId + "/power", headers, timeout);
+                RequestTemplate restore = backupId == null || backupId.isEmpty()
+                        ? null
+                        : RequestTemplate.of(panel, "/api/client/servers/" + serverId + "/backups/" + backupId + "/restore", headers, timeout);
+                return new ServerRequests(panelName, serverId, power, power,
+                        RequestTemplate.of(panel, "/api/client/servers/" + serverId + "/resources", headers, timeout),
+                        backupId, restore,
+                        RequestTemplate.of(panel, "/api/client/servers/" + serverId + "/websocket", headers, timeout));
+            }
+            case "crafty":
+                // Crafty does not support restoring backups or websockets
+                return new ServerRequests(panelName, serverId,
+                        RequestTemplate.of(panel, "/api/v2/servers/" + serverId + "/action/start_server", headers, timeout),
+                        RequestTemplate.of(panel, "/api/v2/servers/" + serverId + "/action/stop_server", headers, timeout),
+                        RequestTemplate.of(panel, "/api/v2/servers/" + serverId + "/stats", headers, timeout),
+                        null, null, null);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapacityManagerTest {
+    /**
+     * Three servers of 1 GB running on a node of 4 GB, and a server of 2 GB to start there
+     */
+    private static final String SETTINGS = "servers:\n"
+            + "  s1:\n"
+            + "    id: \"s101\"\n"
+            + "    timeout: 30\n"
+            + "    node: node1\n"
+            + "    memory: 1024\n"
+            + "  s2:\n"
+            + "    id: \"s201\"\n"
+            + "    timeout: 30\n"
+            + "    node: node1\n"
+            + "    memory: 1024\n"
+            + "  s3:\n"
+            + "    id: \"s301\"\n"
+            + "    timeout: 30\n"
+            + "    node: node1\n"
+            + "    memory: 1024\n"
+            + "  big:\n"
+            + "    id: \"big01\"\n"
+            + "    timeout: 30\n"
+            + "    node: node1\n"
+            + "    memory: 2048\n"
+            + "  other:\n"
+            + "    id: \"other01\"\n"
+            + "    timeout: 30\n"
+            + "    node: node2\n"
+            + "    memory: 1024\n"
+            + "capacity:\n"
+            + "  nodes:\n"
+            + "    node1: 4096\n";
+
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private CapacityManager capacity;
+    private ServerLifecycle lifecycle;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        panel.setTransitionDelay(0, 200);
+        for (String id : new String[]{"s101", "s201", "s301", "other01"}) {
+            panel.addServer(id, PowerStatus.RUNNING);
+        }
+        panel.addServer("big01", PowerStatus.OFFLINE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Create the plugin with the servers on node1 running
+     *
+     * @param settings Additional settings
+     */
+    private void start(String settings) throws IOException {
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", SETTINGS + settings);
+        capacity = testPlugin.plugin.capacity;
+        lifecycle = testPlugin.plugin.lifecycle;
+        for (String name : new String[]{"s1", "s2", "s3", "other"}) {
+            lifecycle.force(name, ServerLifecycle.State.RUNNING);
+        }
+    }
+
+    /**
+     * Record uses of the servers, from the least recently used to the most recently used
+     *
+     * @param serverNames The names of the servers
+     */
+    private void touchInOrder(String... serverNames) throws InterruptedException {
+        for (String serverName : serverNames) {
+            capacity.touch(serverName);
+            Thread.sleep(5);
+        }
+    }
+
+    private void makeRoomForBig() throws Exception {
+        CompletableFuture<Void> future = capacity.makeRoom("big", testPlugin.plugin.config.getServerConfig("big"));
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void countsTheServersUsingMemoryOnTheNode() throws IOException {
+        start("");
+        assertEquals(3072, capacity.getUsedMemory("node1", null));
+        assertEquals(2048, capacity.getUsedMemory("node1", "s1"));
+
+        lifecycle.force("s1", ServerLifecycle.State.OFFLINE);
+        lifecycle.force("s2", ServerLifecycle.State.STOPPING);
+        assertEquals(2048, capacity.getUsedMemory("node1", null));
+        assertEquals(1024, capacity.getUsedMemory("node2", null));
+    }
+
+    @Test
+    void nothingIsStoppedWhenTheServerFits() throws Exception {
+        start("");
+        lifecycle.force("s3", ServerLifecycle.State.OFFLINE);
+
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s1"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s2"));
+        assertEquals(0, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void stopsTheLeastRecentlyUsedServers() throws Exception {
+        start("");
+        touchInOrder("s2", "s3", "s1");
+
+        // 3 GB used, 2 GB more needs 1 GB of room
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("s2"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s1"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s3"));
+        // Servers on other nodes are never stopped
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("other"));
+        assertEquals(1, panel.getRequestCount("POST power"));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.STOP_SERVER_PREEMPT));
+    }
+
+    @Test
+    void serversWithPlayersAreNeverStopped() throws Exception {
+        start("");
+        touchInOrder("s2", "s3", "s1");
+        testPlugin.addServerInfo("s2", 1, () -> true);
+
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s2"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("s3"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s1"));
+    }
+
+    @Test
+    void warmStandbyMembersAreNeverStopped() throws Exception {
+        // s1 and s2 are the warm standby of their group, s3 was used the most recently
+        start("groups:\n"
+                + "  pool:\n"
+                + "    servers:\n"
+                + "      - s1\n"
+                + "      - s2\n"
+                + "    minWarm: 2\n");
+        touchInOrder("s1", "s2", "s3");
+
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("s3"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s1"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s2"));
+
+        // With nothing else left, the standby members are kept and the shortage is counted
+        lifecycle.force("s3", ServerLifecycle.State.RUNNING);
+        testPlugin.addServerInfo("s3", 1, () -> true);
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s1"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s2"));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.CAPACITY_SHORTAGE));
+    }
+
+    @Test
+    void justStartedServersAreNotStoppedFirst() throws Exception {
+        start("");
+        touchInOrder("s1", "s2");
+
+        // s3 has never been joined, but has just been started
+        lifecycle.force("s3", ServerLifecycle.State.OFFLINE);
+        ServerController.sendPowerSignal(testPlugin.plugin.getProxy().getConsole(), "s3", testPlugin.plugin.config.getServerConfig("s3"), PowerSignal.START);
+        awaitTrue(() -> lifecycle.get("s3") == ServerLifecycle.State.IDLE_COUNTDOWN, 5000);
+
+        makeRoomForBig();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("s1"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("s2"));
+        assertEquals(ServerLifecycle.State.IDLE_COUNTDOWN, lifecycle.get("s3"));
+    }
+
+    @Test
+    void startsAnywayWhenThereIsNotEnoughRoom() throws Exception {
+        start("");
+        testPlugin.addServerInfo("s1", 1, () -> true);
+        testPlugin.addServerInfo("s2", 1, () -> true);
+        lifecycle.force("s3", ServerLifecycle.State.STARTING);
+
+        // Nothing can be stopped, the future completes right away and the shortage is counted
+        CompletableFuture<Void> future = capacity.makeRoom("big", testPlugin.plugin.config.getServerConfig("big"));
+        assertTrue(future.isDone());
+        assertEquals(0, panel.getRequestCount("POST power"));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.CAPACITY_SHORTAGE));
+    }
+
+    @Test
+    void stopsWhatItCanWhenThereIsNotEnoughRoom() throws Exception {
+        start("");
+        touchInOrder("s1", "s2", "s3");
+        testPlugin.addServerInfo("s1", 1, () -> true);
+        testPlugin.addServerInfo("s2", 1, () -> true);
+
+        // 3 GB used and 3 GB more needs 2 GB of room, but only s3 can be stopped
+        CompletableFuture<Void> future = capacity.makeRoom("big", new Config.ServerConfig("big01", 30, null, null, -1, "node1", 3072));
+        future.get(5, TimeUnit.SECONDS);
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("s3"));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.STOP_SERVER_PREEMPT));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.CAPACITY_SHORTAGE));
+    }
+}
@@ -0,0 +1,206 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.config.ServerInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupAutoscalerTest {
+    /**
+     * A group of the lobby and two more members of 10 players each, with 1 of them kept warm
+     */
+    private static final String SETTINGS = "servers:\n"
+            + "  lobby2:\n"
+            + "    id: \"lobby02\"\n"
+            + "    timeout: 30\n"
+            + "  lobby3:\n"
+            + "    id: \"lobby03\"\n"
+            + "    timeout: 30\n"
+            + "groups:\n"
+            + "  lobbies:\n"
+            + "    servers:\n"
+            + "      - lobby\n"
+            + "      - lobby2\n"
+            + "      - lobby3\n"
+            + "    minWarm: 1\n"
+            + "    autoscale:\n"
+            + "      capacity: 10\n"
+            + "      highWater: 0.8\n"
+            + "      lowWater: 0.3\n";
+
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private GroupAutoscaler autoscaler;
+    private ServerLifecycle lifecycle;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.addServer("lobby02", PowerStatus.OFFLINE);
+        panel.addServer("lobby03", PowerStatus.OFFLINE);
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", SETTINGS);
+        autoscaler = testPlugin.plugin.autoscaler;
+        lifecycle = testPlugin.plugin.lifecycle;
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Make a member running with some players
+     *
+     * @param serverName The name of the server
+     * @param players    The number of players
+     * @return The server info of the member
+     */
+    private ServerInfo running(String serverName, int players) {
+        lifecycle.force(serverName, ServerLifecycle.State.RUNNING);
+        return testPlugin.addServerInfo(serverName, players, () -> true);
+    }
+
+    @Test
+    void startsTheNextMemberAboveHighWater() throws Exception {
+        running("lobby", 9);
+
+        autoscaler.evaluate();
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby2"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+
+        // Nothing more until the started member is running
+        autoscaler.evaluate();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+        awaitTrue(() -> lifecycle.get("lobby2") != ServerLifecycle.State.STARTING, 5000);
+        assertEquals(1, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void joinsAfterScaleOutGoToTheNewMember() throws Exception {
+        StandbyPool standby = testPlugin.plugin.standby;
+        ServerInfo lobby = running("lobby", 10);
+
+        // The only running member is full, so there is nowhere else to go yet
+        autoscaler.evaluate();
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby2"));
+        assertNull(standby.route(lobby));
+
+        // Once the new member is running, the players connecting to the full member are sent there
+        awaitTrue(() -> lifecycle.get("lobby2") != ServerLifecycle.State.STARTING, 5000);
+        ServerInfo lobby2 = testPlugin.addServerInfo("lobby2", 0, () -> true);
+        assertSame(lobby2, standby.route(lobby));
+        // A member with room left is kept
+        assertNull(standby.route(running("lobby", 9)));
+
+        // The new member is being joined, so another one is started as the warm standby
+        awaitTrue(() -> lifecycle.get("lobby3") == ServerLifecycle.State.IDLE_COUNTDOWN, 5000);
+    }
+
+    @Test
+    void doesNothingBetweenTheMarks() {
+        running("lobby", 4);
+        running("lobby2", 3);
+
+        // 7 players on 20 slots
+        autoscaler.evaluate();
+        assertFalse(autoscaler.isDraining("lobby"));
+        assertFalse(autoscaler.isDraining("lobby2"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+    }
+
+    @Test
+    void drainsTheLeastLoadedMemberBelowLowWater() {
+        running("lobby", 4);
+        running("lobby2", 1);
+
+        // 5 players on 20 slots
+        autoscaler.evaluate();
+        assertTrue(autoscaler.isDraining("lobby2"));
+        assertFalse(autoscaler.isDraining("lobby"));
+
+        // The only member left is not drained
+        autoscaler.evaluate();
+        assertFalse(autoscaler.isDraining("lobby"));
+    }
+
+    @Test
+    void takesBackADrainingMemberAboveHighWater() {
+        running("lobby", 4);
+        running("lobby2", 1);
+        autoscaler.evaluate();
+        assertTrue(autoscaler.isDraining("lobby2"));
+
+        // 9 players on the 10 slots left, the draining member is used again instead of starting another
+        running("lobby", 9);
+        autoscaler.evaluate();
+        assertFalse(autoscaler.isDraining("lobby2"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+    }
+
+    @Test
+    void drainsEmptyMembersBeyondMinWarmAndStopsThem() {
+        running("lobby", 2);
+        running("lobby2", 0);
+        running("lobby3", 0);
+
+        // 2 empty members and minWarm 1, the first one is drained and counts down to stop
+        autoscaler.evaluate();
+        assertTrue(autoscaler.isDraining("lobby2"));
+        assertEquals(ServerLifecycle.State.IDLE_COUNTDOWN, lifecycle.get("lobby2"));
+        assertFalse(autoscaler.isDraining("lobby3"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby3"));
+    }
+
+    @Test
+    void neverDrainsTheWarmStandby() {
+        running("lobby", 0);
+        running("lobby2", 1);
+
+        // 1 player on 20 slots, the empty member is the only warm one, so the member with the player is drained
+        autoscaler.evaluate();
+        assertFalse(autoscaler.isDraining("lobby"));
+        assertTrue(autoscaler.isDraining("lobby2"));
+    }
+
+    @Test
+    void scaleInAndStandbyPoolDoNotFightOverEmptyMembers() throws Exception {
+        StandbyPool standby = testPlugin.plugin.standby;
+        running("lobby", 2);
+        running("lobby2", 0);
+        running("lobby3", 0);
+
+        for (int round = 0; round < 5; round++) {
+            standby.maintain();
+            autoscaler.evaluate();
+
+            // One empty member is always left for the players joining the group
+            assertFalse(autoscaler.isDraining("lobby3"), "round " + round);
+            assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby3"), "round " + round);
+        }
+
+        // The extra empty member and then the busy member are drained, and no member had to be started again
+        assertTrue(autoscaler.isDraining("lobby2"));
+        assertTrue(autoscaler.isDraining("lobby"));
+        Thread.sleep(200);
+        assertEquals(0, panel.getRequestCount("POST power"));
+    }
+}
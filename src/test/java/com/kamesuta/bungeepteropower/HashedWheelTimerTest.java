@@ -0,0 +1,252 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.api.scheduler.TaskScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HashedWheelTimerTest {
+    @TempDir
+    File dataFolder;
+
+    private TestPlugin testPlugin;
+    /**
+     * The tasks that advance the wheel, run by hand instead of on a schedule
+     */
+    private final List<Runnable> tickers = new ArrayList<>();
+    private final AtomicInteger cancelledTickers = new AtomicInteger();
+    private HashedWheelTimer timer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testPlugin = new TestPlugin(dataFolder, null, "pterodactyl");
+
+        // Capture the task that advances the wheel, so that the test decides when a tick passes
+        TaskScheduler scheduler = mock(TaskScheduler.class);
+        when(scheduler.schedule(any(), any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            tickers.add(invocation.getArgument(1));
+            ScheduledTask task = mock(ScheduledTask.class);
+            doAnswer(cancel -> cancelledTickers.incrementAndGet()).when(task).cancel();
+            return task;
+        });
+        ProxyServer proxy = mock(ProxyServer.class);
+        when(proxy.getScheduler()).thenReturn(scheduler);
+        when(testPlugin.plugin.getProxy()).thenReturn(proxy);
+
+        timer = new HashedWheelTimer(4, 1, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+    }
+
+    /**
+     * Advance the wheel by some ticks
+     *
+     * @param ticks The number of ticks
+     */
+    private void advance(int ticks) {
+        Runnable ticker = tickers.get(tickers.size() - 1);
+        for (int i = 0; i < ticks; i++) {
+            ticker.run();
+        }
+    }
+
+    @Test
+    void firesAfterTheDelayRoundedUpToTicks() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::incrementAndGet);
+
+        timeout.arm(2500, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.isArmed());
+        advance(2);
+        assertEquals(0, fired.get());
+        advance(1);
+        assertEquals(1, fired.get());
+        assertFalse(timeout.isArmed());
+
+        // It does not fire again until armed again
+        advance(8);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    void waitsForFullRoundsOfTheWheel() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::incrementAndGet);
+
+        // 10 ticks on a wheel of 4 passes its bucket twice before expiring
+        timeout.arm(10, TimeUnit.SECONDS);
+        advance(9);
+        assertEquals(0, fired.get());
+        advance(1);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    void delayOfExactlyOneRoundFiresOnTheFirstPass() {
+        AtomicInteger fired = new AtomicInteger();
+        timer.newTimeout(fired::incrementAndGet).arm(4, TimeUnit.SECONDS);
+
+        advance(3);
+        assertEquals(0, fired.get());
+        advance(1);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    void rearmingReplacesTheDeadline() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::incrementAndGet);
+
+        timeout.arm(3, TimeUnit.SECONDS);
+        advance(2);
+        timeout.arm(3, TimeUnit.SECONDS);
+        advance(2);
+        assertEquals(0, fired.get());
+        advance(1);
+        assertEquals(1, fired.get());
+
+        advance(8);
+        assertEquals(1, fired.get());
+        assertEquals(2, timer.getArmCount());
+        assertEquals(1, timer.getFireCount());
+    }
+
+    @Test
+    void taskCanRearmItself() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout[] timeout = new HashedWheelTimer.Timeout[1];
+        timeout[0] = timer.newTimeout(() -> {
+            if (fired.incrementAndGet() < 3) {
+                timeout[0].arm(2, TimeUnit.SECONDS);
+            }
+        });
+
+        timeout[0].arm(2, TimeUnit.SECONDS);
+        advance(6);
+        assertEquals(3, fired.get());
+        assertFalse(timeout[0].isArmed());
+    }
+
+    @Test
+    void cancelledCountdownDoesNotFire() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::incrementAndGet);
+
+        timeout.arm(2, TimeUnit.SECONDS);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.isArmed());
+        assertFalse(timeout.cancel());
+        advance(8);
+        assertEquals(0, fired.get());
+        assertEquals(1, timer.getCancelCount());
+    }
+
+    @Test
+    void countdownCancelledByAnotherTaskOfTheSameTickDoesNotFire() {
+        // Both countdowns expire on the same tick, whichever runs first cancels the other
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[2];
+        boolean[] cancelled = new boolean[2];
+        for (int i = 0; i < 2; i++) {
+            int other = 1 - i;
+            timeouts[i] = timer.newTimeout(() -> {
+                fired.incrementAndGet();
+                cancelled[other] = timeouts[other].cancel();
+            });
+            timeouts[i].arm(1, TimeUnit.SECONDS);
+        }
+
+        advance(1);
+        assertEquals(1, fired.get());
+        // The countdown had already expired, but cancelling it still reports that it was pending
+        assertTrue(cancelled[0] || cancelled[1]);
+        advance(8);
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    void countdownRearmedByAnotherTaskOfTheSameTickFiresAtTheNewDeadline() {
+        AtomicInteger firstFired = new AtomicInteger();
+        AtomicInteger secondFired = new AtomicInteger();
+        HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[2];
+        timeouts[0] = timer.newTimeout(() -> {
+            firstFired.incrementAndGet();
+            if (secondFired.get() == 0) {
+                timeouts[1].arm(2, TimeUnit.SECONDS);
+            }
+        });
+        timeouts[1] = timer.newTimeout(() -> {
+            secondFired.incrementAndGet();
+            if (firstFired.get() == 0) {
+                timeouts[0].arm(2, TimeUnit.SECONDS);
+            }
+        });
+        timeouts[0].arm(1, TimeUnit.SECONDS);
+        timeouts[1].arm(1, TimeUnit.SECONDS);
+
+        // Whichever runs first postpones the other by 2 ticks
+        advance(1);
+        assertEquals(1, firstFired.get() + secondFired.get());
+        advance(1);
+        assertEquals(1, firstFired.get() + secondFired.get());
+        advance(1);
+        assertEquals(1, firstFired.get());
+        assertEquals(1, secondFired.get());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheOthers() {
+        AtomicInteger fired = new AtomicInteger();
+        timer.newTimeout(() -> {
+            throw new IllegalStateException("task failed");
+        }).arm(1, TimeUnit.SECONDS);
+        timer.newTimeout(fired::incrementAndGet).arm(1, TimeUnit.SECONDS);
+
+        advance(1);
+        assertEquals(1, fired.get());
+        assertEquals(2, timer.getFireCount());
+    }
+
+    @Test
+    void stopKeepsCountdownsUntilArmedAgain() {
+        AtomicInteger fired = new AtomicInteger();
+        HashedWheelTimer.Timeout first = timer.newTimeout(fired::incrementAndGet);
+        first.arm(2, TimeUnit.SECONDS);
+        assertEquals(1, tickers.size());
+
+        timer.stop();
+        assertEquals(1, cancelledTickers.get());
+        assertTrue(first.isArmed());
+
+        // Arming another countdown starts advancing the wheel again
+        timer.newTimeout(fired::incrementAndGet).arm(4, TimeUnit.SECONDS);
+        assertEquals(2, tickers.size());
+        advance(2);
+        assertEquals(1, fired.get());
+        advance(2);
+        assertEquals(2, fired.get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PermissionCacheTest {
+    @TempDir
+    File dataFolder;
+
+    private TestPlugin testPlugin;
+    private PermissionCache cache;
+    /**
+     * The number of times the permission of the lobby was checked
+     */
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testPlugin = new TestPlugin(dataFolder, null, "pterodactyl");
+        cache = testPlugin.plugin.permissionCache;
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+    }
+
+    /**
+     * Create a player who may automatically start the lobby
+     *
+     * @param connected Whether the player is still connected to the proxy
+     * @return The mocked player
+     */
+    private ProxiedPlayer player(boolean connected) {
+        ProxiedPlayer player = mock(ProxiedPlayer.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isConnected()).thenReturn(connected);
+        when(player.hasPermission("ptero.autostart.lobby")).thenAnswer(invocation -> checks.incrementAndGet() > 0);
+        return player;
+    }
+
+    @Test
+    void checksAllPermissionsOnce() {
+        ProxiedPlayer player = player(true);
+
+        assertTrue(cache.has(player, "lobby", PermissionCache.Node.AUTOSTART));
+        assertFalse(cache.has(player, "lobby", PermissionCache.Node.STOP));
+        assertFalse(cache.has(player, "minigame", PermissionCache.Node.START));
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    void checksAgainAfterInvalidate() {
+        ProxiedPlayer player = player(true);
+        assertTrue(cache.has(player, "lobby", PermissionCache.Node.AUTOSTART));
+
+        cache.invalidate(player.getUniqueId());
+        assertTrue(cache.has(player, "lobby", PermissionCache.Node.AUTOSTART));
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    void doesNotKeepPlayersWhoHaveLeft() {
+        // A status check finishing after the player left still gets an answer, but nothing is kept for the player
+        ProxiedPlayer player = player(false);
+
+        assertTrue(cache.has(player, "lobby", PermissionCache.Node.AUTOSTART));
+        assertTrue(cache.has(player, "lobby", PermissionCache.Node.AUTOSTART));
+        assertEquals(2, checks.get());
+    }
+}
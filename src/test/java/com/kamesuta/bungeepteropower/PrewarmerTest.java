@@ -0,0 +1,171 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrewarmerTest {
+    /**
+     * Monday 00:00 of the first week of the tests
+     */
+    private static final ZonedDateTime WEEK_0 = ZonedDateTime.of(2026, 1, 5, 0, 0, 0, 0, ZoneOffset.UTC);
+    /**
+     * Prewarming 3 seconds ahead, and a server that stops 1 second after its start if nobody joins
+     */
+    private static final String SETTINGS = "prewarm:\n"
+            + "  enabled: true\n"
+            + "  leadTime: 3\n"
+            + "servers:\n"
+            + "  survival:\n"
+            + "    id: \"survival01\"\n"
+            + "    timeout: 1\n";
+
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private Prewarmer prewarmer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        panel.addServer("survival01", PowerStatus.OFFLINE);
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", SETTINGS);
+        prewarmer = testPlugin.plugin.prewarmer;
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Get a time in a week of the tests
+     *
+     * @param week   The week, 0 is the first week
+     * @param day    The day of the week, 1 is Monday and 7 is Sunday
+     * @param hour   The hour
+     * @param minute The minute
+     * @return The time
+     */
+    private static ZonedDateTime at(int week, int day, int hour, int minute) {
+        return WEEK_0.plusWeeks(week).plusDays(day - 1).withHour(hour).withMinute(minute);
+    }
+
+    @Test
+    void noProbabilityWithoutAFullWeekOfHistory() {
+        prewarmer.recordJoin("lobby", at(0, 1, 10, 5));
+
+        assertEquals(0, prewarmer.getProbability("lobby", at(0, 1, 10, 15)));
+        assertEquals(0, prewarmer.getProbability("minigame", at(1, 1, 10, 15)));
+        assertEquals(1, prewarmer.getProbability("lobby", at(1, 1, 10, 15)));
+    }
+
+    @Test
+    void countsThePastWeeksWithAJoinInTheSlot() {
+        prewarmer.recordJoin("lobby", at(0, 1, 10, 5));
+        prewarmer.recordJoin("lobby", at(2, 1, 10, 25));
+
+        // Joins in 2 of the 4 past weeks
+        assertEquals(0.5, prewarmer.getProbability("lobby", at(4, 1, 10, 0)));
+        // The next slot has no joins
+        assertEquals(0, prewarmer.getProbability("lobby", at(4, 1, 10, 30)));
+        // Servers that are not configured are not recorded
+        prewarmer.recordJoin("unknown", at(0, 1, 10, 5));
+        assertEquals(0, prewarmer.getProbability("unknown", at(4, 1, 10, 0)));
+    }
+
+    @Test
+    void weekShiftDropsWeeksOutsideTheWindow() {
+        for (int week = 0; week < 8; week++) {
+            prewarmer.recordJoin("lobby", at(week, 3, 20, 0));
+        }
+        assertEquals(1, prewarmer.getProbability("lobby", at(8, 3, 20, 0)));
+
+        // A join 4 weeks later shifts the weeks 0 to 3 out of the window of 8 weeks
+        prewarmer.recordJoin("lobby", at(12, 1, 9, 0));
+        assertEquals(4.0 / 8, prewarmer.getProbability("lobby", at(12, 3, 20, 0)));
+        assertEquals(3.0 / 8, prewarmer.getProbability("lobby", at(13, 3, 20, 0)));
+
+        // A join more than 8 weeks later clears the whole history
+        prewarmer.recordJoin("lobby", at(30, 1, 9, 0));
+        assertEquals(0, prewarmer.getProbability("lobby", at(31, 3, 20, 0)));
+        assertEquals(1.0 / 8, prewarmer.getProbability("lobby", at(31, 1, 9, 0)));
+    }
+
+    @Test
+    void lookAheadAcrossSundayMidnight() {
+        for (int week = 0; week < 8; week++) {
+            prewarmer.recordJoin("lobby", at(week, 1, 0, 10));
+            prewarmer.recordJoin("lobby", at(week, 7, 23, 40));
+        }
+        prewarmer.recordJoin("lobby", at(8, 1, 0, 10));
+
+        // On Sunday 23:50 of week 8, the lead time reaches into Monday of week 9
+        ZonedDateTime now = at(8, 7, 23, 50);
+        ZonedDateTime target = now.plusSeconds(1200);
+        assertEquals(9, (int) (target.toLocalDate().toEpochDay() - WEEK_0.toLocalDate().toEpochDay()) / 7);
+        assertEquals(1, prewarmer.getProbability("lobby", target));
+
+        // Looking ahead does not shift the oldest week out of the current week
+        assertEquals(1, prewarmer.getProbability("lobby", at(8, 7, 23, 40)));
+
+        // A join recorded after looking ahead still counts for its own week
+        prewarmer.recordJoin("lobby", at(8, 7, 23, 55));
+        assertEquals(1, prewarmer.getProbability("lobby", at(9, 7, 23, 40)));
+        assertEquals(1, prewarmer.getProbability("lobby", at(9, 1, 0, 10)));
+        // Looking 2 weeks ahead, week 9 has no join yet
+        assertEquals(7.0 / 8, prewarmer.getProbability("lobby", at(10, 1, 0, 10)));
+    }
+
+    @Test
+    void histogramsAreKeptAcrossRestarts() {
+        for (int week = 0; week < 4; week++) {
+            prewarmer.recordJoin("lobby", at(week, 5, 18, 0));
+        }
+        prewarmer.recordJoin("minigame", at(1, 6, 12, 0));
+        prewarmer.stop();
+
+        Prewarmer restarted = new Prewarmer();
+        restarted.load();
+        assertEquals(1, restarted.getProbability("lobby", at(4, 5, 18, 0)));
+        assertEquals(4.0 / 5, restarted.getProbability("lobby", at(5, 5, 18, 0)));
+        assertEquals(1.0 / 3, restarted.getProbability("minigame", at(4, 6, 12, 0)));
+    }
+
+    @Test
+    void prewarmedServerIsStillRunningAtThePredictedSlot() throws Exception {
+        ServerLifecycle lifecycle = testPlugin.plugin.lifecycle;
+        ZonedDateTime expected = ZonedDateTime.now().plusSeconds(3);
+        for (int week = 8; week > 0; week--) {
+            prewarmer.recordJoin("survival", expected.minusWeeks(week));
+        }
+
+        prewarmer.check();
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("survival"));
+
+        // The timeout of 1 second plus the start timeout of 0 seconds is shorter than the lead time
+        Thread.sleep(3000);
+        ServerLifecycle.State state = lifecycle.get("survival");
+        assertTrue(state == ServerLifecycle.State.RUNNING || state == ServerLifecycle.State.IDLE_COUNTDOWN, state.toString());
+        assertEquals(1, panel.getRequestCount("POST power"));
+
+        // Nobody came, so it is stopped after the lead time plus its timeout
+        awaitTrue(() -> panel.getRequestCount("POST power") == 2, 5000);
+    }
+}
@@ -0,0 +1,134 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.CommandSender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class ServerControllerTest {
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl");
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    @Test
+    void waitUntilCompletesWithoutPollingIfAlreadyReached() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(5, TimeUnit.SECONDS);
+        assertEquals(1, panel.getRequestCount("GET resources"));
+    }
+
+    @Test
+    void waitUntilPollsUntilTargetIsReached() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.setTransitionDelay(1500, 200);
+
+        testPlugin.getController("pterodactyl").sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(5, TimeUnit.SECONDS);
+        assertTrue(panel.getRequestCount("GET resources") >= 2);
+    }
+
+    @Test
+    void waitUntilKeepsPollingThroughErrors() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.setTransitionDelay(500, 200);
+
+        testPlugin.getController("pterodactyl").sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        panel.injectErrors(502);
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentWaitersShareOnePollLoop() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.setTransitionDelay(1500, 200);
+
+        testPlugin.getController("pterodactyl").sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            waiters.add(ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING));
+        }
+        assertEquals(1, testPlugin.plugin.readiness.getActiveCount());
+
+        CompletableFuture.allOf(waiters.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        // One check per poll interval, not one per waiter
+        assertTrue(panel.getRequestCount("GET resources") <= 4);
+        assertEquals(0, testPlugin.plugin.readiness.getActiveCount());
+    }
+
+    @Test
+    void waitUntilTimesOut() {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, TestPlugin.unwrap(error));
+    }
+
+    @Test
+    void stopCancelsTheWaitForTheStart() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        testPlugin.addServerInfo("lobby", 0, () -> false);
+        CommandSender sender = mock(CommandSender.class);
+        Config.ServerConfig server = testPlugin.plugin.config.getServerConfig("lobby");
+
+        ServerController.sendPowerSignal(sender, "lobby", server, PowerSignal.START);
+        awaitTrue(() -> testPlugin.plugin.readiness.getActiveCount() == 1, 2000);
+
+        // The ping loop ends right away instead of running until startupJoin.timeout
+        ServerController.sendPowerSignal(sender, "lobby", server, PowerSignal.STOP);
+        awaitTrue(() -> testPlugin.plugin.readiness.getActiveCount() == 0, 1000);
+
+        // The next start sends a new signal
+        ServerController.sendPowerSignal(sender, "lobby", server, PowerSignal.START);
+        awaitTrue(() -> panel.getRequestCount("POST power") == 3, 2000);
+    }
+
+    @Test
+    void clearingPendingStartsEndsTheirPingLoops() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        testPlugin.addServerInfo("lobby", 0, () -> false);
+        CommandSender sender = mock(CommandSender.class);
+
+        ServerController.sendPowerSignal(sender, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.START);
+        awaitTrue(() -> testPlugin.plugin.readiness.getActiveCount() == 1, 2000);
+
+        ServerController.clearPendingStarts(true);
+        awaitTrue(() -> testPlugin.plugin.readiness.getActiveCount() == 0, 1000);
+    }
+}
@@ -0,0 +1,170 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerLifecycleTest {
+    private ServerLifecycle lifecycle;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        BungeePteroPower.logger = Logger.getLogger("BungeePteroPower");
+        lifecycle = new ServerLifecycle();
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run the tasks on separate threads at the same moment
+     *
+     * @param tasks The tasks
+     * @return The number of tasks that returned true
+     */
+    private int race(List<Callable<Boolean>> tasks) throws Exception {
+        CountDownLatch ready = new CountDownLatch(tasks.size());
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (Callable<Boolean> task : tasks) {
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                go.await();
+                return task.call();
+            }));
+        }
+        ready.await(5, TimeUnit.SECONDS);
+        go.countDown();
+        int won = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(5, TimeUnit.SECONDS)) {
+                won++;
+            }
+        }
+        return won;
+    }
+
+    @Test
+    void serversStartOutOffline() {
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby"));
+        assertTrue(lifecycle.transition("lobby", ServerLifecycle.State.OFFLINE, ServerLifecycle.State.STARTING));
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("minigame"));
+    }
+
+    @Test
+    void transitionsOnlyFromTheExpectedState() {
+        assertFalse(lifecycle.transition("lobby", ServerLifecycle.State.RUNNING, ServerLifecycle.State.STOPPING));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby"));
+
+        assertFalse(lifecycle.transition("lobby", ServerLifecycle.State.STOPPED, ServerLifecycle.State.OFFLINE));
+        assertTrue(lifecycle.transition("lobby", ServerLifecycle.State.STARTABLE, ServerLifecycle.State.STARTING));
+        assertTrue(lifecycle.transition("lobby", ServerLifecycle.State.STARTABLE, ServerLifecycle.State.STARTING));
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby"));
+    }
+
+    @Test
+    void restoringServerCannotBeStarted() {
+        lifecycle.force("lobby", ServerLifecycle.State.RESTORING);
+        assertFalse(lifecycle.transition("lobby", ServerLifecycle.State.STARTABLE, ServerLifecycle.State.STARTING));
+        assertEquals(ServerLifecycle.State.RESTORING, lifecycle.get("lobby"));
+    }
+
+    @Test
+    void forceOverridesAnyState() {
+        for (ServerLifecycle.State from : ServerLifecycle.State.values()) {
+            lifecycle.force("lobby", from);
+            lifecycle.force("lobby", ServerLifecycle.State.STOPPING);
+            assertEquals(ServerLifecycle.State.STOPPING, lifecycle.get("lobby"));
+        }
+    }
+
+    @Test
+    void observeOnlyMovesServersThatAreNotInTransition() {
+        lifecycle.observe("lobby", PowerStatus.RUNNING);
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby"));
+        lifecycle.observe("lobby", PowerStatus.OFFLINE);
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby"));
+
+        // Intermediate statuses of the panel do not change anything
+        lifecycle.observe("lobby", PowerStatus.STARTING);
+        lifecycle.observe("lobby", PowerStatus.STOPPING);
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby"));
+
+        // A start, a stop or a countdown in progress is not overridden by a status check
+        for (ServerLifecycle.State state : EnumSet.of(ServerLifecycle.State.STARTING, ServerLifecycle.State.STOPPING, ServerLifecycle.State.RESTORING)) {
+            lifecycle.force("lobby", state);
+            lifecycle.observe("lobby", PowerStatus.RUNNING);
+            lifecycle.observe("lobby", PowerStatus.OFFLINE);
+            assertEquals(state, lifecycle.get("lobby"));
+        }
+    }
+
+    @Test
+    void observeDoesNotEndAnIdleCountdown() {
+        lifecycle.force("lobby", ServerLifecycle.State.IDLE_COUNTDOWN);
+
+        // A stale status check must not make the countdown lose the server
+        lifecycle.observe("lobby", PowerStatus.OFFLINE);
+        assertEquals(ServerLifecycle.State.IDLE_COUNTDOWN, lifecycle.get("lobby"));
+        lifecycle.observe("lobby", PowerStatus.RUNNING);
+        assertEquals(ServerLifecycle.State.IDLE_COUNTDOWN, lifecycle.get("lobby"));
+    }
+
+    @Test
+    void onlyOneConcurrentStartWins() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            String serverName = "lobby" + round;
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> lifecycle.transition(serverName, ServerLifecycle.State.OFFLINE, ServerLifecycle.State.STARTING));
+            }
+            assertEquals(1, race(tasks));
+            assertEquals(ServerLifecycle.State.STARTING, lifecycle.get(serverName));
+        }
+    }
+
+    @Test
+    void countdownAndJoinAtTheSameMomentLeaveAConsistentState() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            String serverName = "lobby" + round;
+            lifecycle.force(serverName, ServerLifecycle.State.IDLE_COUNTDOWN);
+
+            // The countdown expiring and a player joining at the same moment
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                tasks.add(() -> lifecycle.transition(serverName, EnumSet.of(ServerLifecycle.State.RUNNING, ServerLifecycle.State.IDLE_COUNTDOWN), ServerLifecycle.State.STOPPING));
+                tasks.add(() -> lifecycle.transition(serverName, ServerLifecycle.State.IDLE_COUNTDOWN, ServerLifecycle.State.RUNNING));
+            }
+            int won = race(tasks);
+
+            // Either the stop wins, or the join wins and a later stop may still take the running server
+            ServerLifecycle.State state = lifecycle.get(serverName);
+            assertTrue(state == ServerLifecycle.State.STOPPING || state == ServerLifecycle.State.RUNNING, "state was " + state);
+            assertTrue(won == 1 || won == 2, "won was " + won);
+            if (state == ServerLifecycle.State.RUNNING) {
+                assertEquals(1, won);
+            }
+        }
+    }
+}
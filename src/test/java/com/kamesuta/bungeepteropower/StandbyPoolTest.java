@@ -0,0 +1,160 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.config.ServerInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StandbyPoolTest {
+    /**
+     * A group of the lobby and two more members, with 2 of them kept warm
+     */
+    private static final String SETTINGS = "servers:\n"
+            + "  lobby2:\n"
+            + "    id: \"lobby02\"\n"
+            + "    timeout: 30\n"
+            + "  lobby3:\n"
+            + "    id: \"lobby03\"\n"
+            + "    timeout: 30\n"
+            + "groups:\n"
+            + "  lobbies:\n"
+            + "    servers:\n"
+            + "      - lobby\n"
+            + "      - lobby2\n"
+            + "      - lobby3\n"
+            + "    minWarm: 2\n";
+
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private StandbyPool standby;
+    private ServerLifecycle lifecycle;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.addServer("lobby02", PowerStatus.OFFLINE);
+        panel.addServer("lobby03", PowerStatus.OFFLINE);
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", SETTINGS);
+        standby = testPlugin.plugin.standby;
+        lifecycle = testPlugin.plugin.lifecycle;
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Wait until the starts of the servers are done
+     *
+     * @param serverNames The names of the servers
+     */
+    private void awaitStarted(String... serverNames) throws InterruptedException {
+        for (String serverName : serverNames) {
+            awaitTrue(() -> {
+                ServerLifecycle.State state = lifecycle.get(serverName);
+                return state == ServerLifecycle.State.RUNNING || state == ServerLifecycle.State.IDLE_COUNTDOWN;
+            }, 5000);
+        }
+    }
+
+    @Test
+    void replenishesUpToMinWarm() throws Exception {
+        standby.maintain();
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby"));
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby2"));
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+
+        // The members being started already count as warm
+        standby.maintain();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+
+        // Nobody joins the started members, so they count down to stop and are still warm
+        awaitStarted("lobby", "lobby2");
+        standby.maintain();
+        assertEquals(ServerLifecycle.State.OFFLINE, lifecycle.get("lobby3"));
+        assertEquals(2, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void membersWithPlayersAreNotWarm() throws Exception {
+        lifecycle.force("lobby", ServerLifecycle.State.RUNNING);
+        testPlugin.addServerInfo("lobby", 1, () -> true);
+        lifecycle.force("lobby2", ServerLifecycle.State.RUNNING);
+
+        standby.maintain();
+        awaitStarted("lobby3");
+        assertEquals(1, panel.getRequestCount("POST power"));
+        assertEquals(1, testPlugin.plugin.statistics.actionCounter.collect(Statistics.ActionCounter.ActionType.START_SERVER_STANDBY));
+    }
+
+    @Test
+    void trimsWarmMembersBeyondMinWarm() {
+        lifecycle.force("lobby", ServerLifecycle.State.RUNNING);
+        lifecycle.force("lobby2", ServerLifecycle.State.RUNNING);
+        lifecycle.force("lobby3", ServerLifecycle.State.RUNNING);
+
+        // One member is over minWarm, its stop countdown is armed
+        standby.maintain();
+        assertEquals(ServerLifecycle.State.IDLE_COUNTDOWN, lifecycle.get("lobby"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby2"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby3"));
+
+        // Members counting down are still warm until they stop, so no more countdowns are armed
+        standby.maintain();
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby2"));
+        assertEquals(ServerLifecycle.State.RUNNING, lifecycle.get("lobby3"));
+        assertEquals(0, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void keepsMembersUpToMinWarm() {
+        lifecycle.force("lobby", ServerLifecycle.State.RUNNING);
+        lifecycle.force("lobby2", ServerLifecycle.State.IDLE_COUNTDOWN);
+        assertTrue(standby.keepWarm("lobby"));
+        assertTrue(standby.keepWarm("lobby2"));
+
+        lifecycle.force("lobby3", ServerLifecycle.State.RUNNING);
+        assertFalse(standby.keepWarm("lobby"));
+        // Servers outside of a group are never kept
+        assertFalse(standby.keepWarm("minigame"));
+    }
+
+    @Test
+    void routesToTheRunningMemberWithTheFewestPlayers() throws Exception {
+        lifecycle.force("lobby", ServerLifecycle.State.RUNNING);
+        testPlugin.addServerInfo("lobby", 3, () -> true);
+        lifecycle.force("lobby2", ServerLifecycle.State.RUNNING);
+        ServerInfo lobby2 = testPlugin.addServerInfo("lobby2", 1, () -> true);
+        ServerInfo lobby3 = testPlugin.addServerInfo("lobby3", 0, () -> true);
+
+        assertSame(lobby2, standby.route(lobby3));
+        // No member is warm any more, the offline one is started
+        assertEquals(ServerLifecycle.State.STARTING, lifecycle.get("lobby3"));
+        awaitStarted("lobby3");
+        assertEquals(1, panel.getRequestCount("POST power"));
+
+        // A running target is kept
+        assertNull(standby.route(lobby2));
+    }
+}
@@ -0,0 +1,201 @@
+package com.kamesuta.bungeepteropower;
+
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import net.md_5.bungee.api.CommandSender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartLimiterTest {
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private StartLimiter limiter;
+    private CommandSender console;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", "startLimit:\n  global: 2\n  perNode: 1\n");
+        limiter = testPlugin.plugin.startLimiter;
+        console = testPlugin.plugin.getProxy().getConsole();
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Create a server configuration on a node
+     *
+     * @param node The node name
+     * @return The server configuration
+     */
+    private static Config.ServerConfig onNode(String node) {
+        return new Config.ServerConfig(node + "-server", 30, null, null, -1, node, 0);
+    }
+
+    @Test
+    void servesPlayersBeforeBackgroundStarts() throws Exception {
+        StartLimiter.Slot first = limiter.acquire("first", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        CompletableFuture<StartLimiter.Slot> prewarm = limiter.acquire("prewarm", onNode("node1"), console, false);
+        CompletableFuture<StartLimiter.Slot> standby = limiter.acquire("standby", onNode("node1"), console, false);
+        CompletableFuture<StartLimiter.Slot> player = limiter.acquire("player", onNode("node1"), console, true);
+        assertEquals(3, limiter.getQueueLength());
+
+        // The player goes first, then the background starts in the order they were queued
+        first.release(true);
+        StartLimiter.Slot playerSlot = player.get(1, TimeUnit.SECONDS);
+        assertFalse(prewarm.isDone());
+        playerSlot.release(true);
+        StartLimiter.Slot prewarmSlot = prewarm.get(1, TimeUnit.SECONDS);
+        assertFalse(standby.isDone());
+        prewarmSlot.release(true);
+        standby.get(1, TimeUnit.SECONDS).release(true);
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    void busyNodeDoesNotHoldBackOtherNodes() throws Exception {
+        StartLimiter.Slot busy = limiter.acquire("lobby", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        CompletableFuture<StartLimiter.Slot> sameNode = limiter.acquire("lobby2", onNode("node1"), console, true);
+        CompletableFuture<StartLimiter.Slot> otherNode = limiter.acquire("lobby3", onNode("node2"), console, false);
+
+        // The start on the free node skips the start waiting for the busy node
+        assertFalse(sameNode.isDone());
+        StartLimiter.Slot other = otherNode.get(1, TimeUnit.SECONDS);
+
+        // The global limit of 2 is reached, so a third node waits too
+        CompletableFuture<StartLimiter.Slot> thirdNode = limiter.acquire("lobby4", onNode("node3"), console, true);
+        assertFalse(thirdNode.isDone());
+
+        busy.release(true);
+        sameNode.get(1, TimeUnit.SECONDS);
+        assertFalse(thirdNode.isDone());
+        other.release(true);
+        thirdNode.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void cancelRemovesTheQueuedStart() throws Exception {
+        StartLimiter.Slot busy = limiter.acquire("lobby", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        CompletableFuture<StartLimiter.Slot> cancelled = limiter.acquire("lobby2", onNode("node1"), console, true);
+        CompletableFuture<StartLimiter.Slot> kept = limiter.acquire("lobby3", onNode("node1"), console, false);
+
+        limiter.cancel("lobby2");
+        assertThrows(CancellationException.class, cancelled::join);
+        assertEquals(1, limiter.getQueueLength());
+        // Cancelling a server without a queued start does nothing
+        limiter.cancel("lobby");
+        assertEquals(1, limiter.getQueueLength());
+
+        busy.release(true);
+        kept.get(1, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getQueueLength());
+    }
+
+    @Test
+    void releaseFreesTheSlotOnce() throws Exception {
+        StartLimiter.Slot slot = limiter.acquire("lobby", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        CompletableFuture<StartLimiter.Slot> first = limiter.acquire("lobby2", onNode("node1"), console, false);
+        CompletableFuture<StartLimiter.Slot> second = limiter.acquire("lobby3", onNode("node1"), console, false);
+
+        slot.release(true);
+        slot.release(true);
+        first.get(1, TimeUnit.SECONDS);
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    void onlyReadyStartsRecordTheBootTime() throws Exception {
+        Statistics.StartTimeRecorder recorder = testPlugin.plugin.statistics.startTimeRecorder;
+
+        StartLimiter.Slot failed = limiter.acquire("lobby", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        Thread.sleep(1100);
+        failed.release(false);
+        assertEquals(0, recorder.collectBootSeconds());
+
+        StartLimiter.Slot ready = limiter.acquire("lobby", onNode("node1"), console, false).get(1, TimeUnit.SECONDS);
+        Thread.sleep(1100);
+        ready.release(true);
+        assertEquals(1, recorder.collectBootSeconds());
+    }
+
+    @Test
+    void startHoldsTheSlotUntilThePanelReportsRunning() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.addServer("minigame01", PowerStatus.OFFLINE);
+        panel.setTransitionDelay(1500, 200);
+
+        // The servers are not in the BungeeCord config, so they cannot be pinged
+        ServerController.sendPowerSignal(console, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.START);
+        awaitTrue(() -> panel.getRequestCount("POST power") == 1, 5000);
+        ServerController.sendPowerSignal(console, "minigame", testPlugin.plugin.config.getServerConfig("minigame"), PowerSignal.START);
+        Thread.sleep(500);
+        assertEquals(1, limiter.getQueueLength());
+        assertEquals(ServerLifecycle.State.STARTING, testPlugin.plugin.lifecycle.get("lobby"));
+
+        // Once the panel reports the server as running, the next start proceeds
+        awaitTrue(() -> limiter.getQueueLength() == 0, 5000);
+        awaitTrue(() -> testPlugin.plugin.lifecycle.get("lobby") != ServerLifecycle.State.STARTING, 1000);
+        assertTrue(testPlugin.plugin.statistics.startTimeRecorder.collectBootSeconds() >= 1);
+        awaitTrue(() -> testPlugin.plugin.lifecycle.get("minigame") != ServerLifecycle.State.STARTING, 5000);
+        assertEquals(2, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void stopWhileStartingReleasesTheSlot() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.addServer("minigame01", PowerStatus.OFFLINE);
+        panel.setTransitionDelay(10000, 200);
+
+        ServerController.sendPowerSignal(console, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.START);
+        awaitTrue(() -> panel.getRequestCount("POST power") == 1, 5000);
+        ServerController.sendPowerSignal(console, "minigame", testPlugin.plugin.config.getServerConfig("minigame"), PowerSignal.START);
+        Thread.sleep(200);
+        assertEquals(1, limiter.getQueueLength());
+
+        // The stop gives the slot back without waiting for the wait of the start to time out
+        ServerController.sendPowerSignal(console, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.STOP);
+        awaitTrue(() -> limiter.getQueueLength() == 0, 1000);
+        awaitTrue(() -> panel.getRequestCount("POST power") == 3, 5000);
+        // The cancelled start did not boot
+        assertEquals(0, testPlugin.plugin.statistics.startTimeRecorder.collectBootSeconds());
+    }
+
+    @Test
+    void stopBeforeTheSignalIsAcceptedReleasesTheSlot() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.addServer("minigame01", PowerStatus.OFFLINE);
+        panel.setLatency(1500);
+
+        ServerController.sendPowerSignal(console, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.START);
+        ServerController.sendPowerSignal(console, "minigame", testPlugin.plugin.config.getServerConfig("minigame"), PowerSignal.START);
+        assertEquals(1, limiter.getQueueLength());
+
+        // The slot is given back before the panel answers the start signal
+        ServerController.sendPowerSignal(console, "lobby", testPlugin.plugin.config.getServerConfig("lobby"), PowerSignal.STOP);
+        awaitTrue(() -> limiter.getQueueLength() == 0, 500);
+        awaitTrue(() -> panel.getRequestCount("POST power") == 3, 5000);
+    }
+}
@@ -0,0 +1,188 @@
+package com.kamesuta.bungeepteropower;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StopJournalTest {
+    @TempDir
+    File dataFolder;
+
+    private File journalFile() {
+        return new File(dataFolder, "stop-journal.log");
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(journalFile().toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reopen the journal as the next run of the proxy does
+     *
+     * @return The pending deadlines left by the previous run
+     */
+    private Map<String, Long> reload() {
+        StopJournal journal = new StopJournal(journalFile());
+        Map<String, Long> loaded = journal.load();
+        journal.close();
+        return loaded;
+    }
+
+    @Test
+    void replaysPendingDeadlines() {
+        StopJournal journal = new StopJournal(journalFile());
+        assertTrue(journal.load().isEmpty());
+        journal.armed("lobby", 1000);
+        journal.armed("minigame", 2000);
+        journal.removed("lobby");
+        journal.armed("minigame", 3000);
+        journal.close();
+
+        assertEquals(Map.of("minigame", 3000L), reload());
+    }
+
+    @Test
+    void replaysRecordsAppendedByACrashedRun() throws IOException {
+        Files.write(journalFile().toPath(), Arrays.asList(
+                "ARM\t1000\tlobby",
+                "ARM\t2000\tminigame",
+                "DONE\tlobby",
+                "ARM\t3000\tlobby",
+                "DONE\tunknown"), StandardCharsets.UTF_8);
+
+        assertEquals(Map.of("lobby", 3000L, "minigame", 2000L), reload());
+    }
+
+    @Test
+    void compactsOnClose() throws IOException {
+        StopJournal journal = new StopJournal(journalFile());
+        journal.load();
+        for (int i = 0; i < 10; i++) {
+            journal.armed("lobby", 1000 + i);
+            journal.armed("minigame", 2000 + i);
+            journal.removed("minigame");
+        }
+        journal.close();
+
+        assertEquals(List.of("ARM\t1009\tlobby"), readLines());
+    }
+
+    @Test
+    void compactsWhenTheJournalGrowsTooLarge() throws Exception {
+        StopJournal journal = new StopJournal(journalFile());
+        journal.load();
+        for (int i = 0; i < 1200; i++) {
+            journal.armed("server" + i, 1000 + i);
+        }
+        awaitTrue(() -> lineCount() == 1200, 5000);
+
+        // The DONE records push the journal over the threshold, and it is rewritten with the pending deadlines
+        // Where the rewrite falls depends on how the writer batches the records, but without it the journal would have 2399 lines
+        for (int i = 1; i < 1200; i++) {
+            journal.removed("server" + i);
+        }
+        awaitTrue(() -> replayLines().equals(Map.of("server0", 1000L)), 5000);
+        assertTrue(lineCount() < 2399, "line count was " + lineCount());
+        journal.close();
+    }
+
+    private int lineCount() {
+        try {
+            return readLines().size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replay the journal as it is on disk, without compacting it
+     *
+     * @return The pending deadlines
+     */
+    private Map<String, Long> replayLines() {
+        Map<String, Long> replayed = new HashMap<>();
+        try {
+            for (String line : readLines()) {
+                String[] record = line.split("\t");
+                if (record.length == 3 && record[0].equals("ARM")) {
+                    replayed.put(record[2], Long.parseLong(record[1]));
+                } else if (record.length == 2 && record[0].equals("DONE")) {
+                    replayed.remove(record[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // The writer is in the middle of a line
+            return Map.of();
+        }
+        return replayed;
+    }
+
+    @Test
+    void ignoresLastLineCutOffByACrash() throws IOException {
+        Files.write(journalFile().toPath(), "ARM\t1000\tlobby\nARM\t2000\tmini".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Map.of("lobby", 1000L), reload());
+        // The torn line is dropped from the file
+        assertEquals(List.of("ARM\t1000\tlobby"), readLines());
+    }
+
+    @Test
+    void ignoresLastLineCutOffInTheMiddleOfACharacter() throws IOException {
+        byte[] complete = "ARM\t1000\tlobby\n".getBytes(StandardCharsets.UTF_8);
+        byte[] torn = "ARM\t2000\t\u30ed\u30d3\u30fc".getBytes(StandardCharsets.UTF_8);
+        byte[] content = Arrays.copyOf(complete, complete.length + torn.length - 1);
+        System.arraycopy(torn, 0, content, complete.length, torn.length - 1);
+        Files.write(journalFile().toPath(), content);
+
+        assertEquals(Map.of("lobby", 1000L), reload());
+    }
+
+    @Test
+    void ignoresBrokenLines() throws IOException {
+        Files.write(journalFile().toPath(), Arrays.asList(
+                "ARM\tnot-a-number\tlobby",
+                "ARM\t1000",
+                "UNKNOWN\tlobby",
+                "",
+                "ARM\t2000\tminigame"), StandardCharsets.UTF_8);
+
+        assertEquals(Map.of("minigame", 2000L), reload());
+    }
+
+    @Test
+    void doesNotRecordRemovalOfUnknownCountdown() throws Exception {
+        StopJournal journal = new StopJournal(journalFile());
+        journal.load();
+        journal.armed("lobby", 1000);
+        journal.removed("minigame");
+        awaitTrue(() -> lineCount() == 1, 5000);
+        assertEquals(List.of("ARM\t1000\tlobby"), readLines());
+        journal.close();
+    }
+
+    @Test
+    void closeCanBeCalledTwice() {
+        StopJournal journal = new StopJournal(journalFile());
+        journal.load();
+        journal.armed("lobby", 1000);
+        journal.close();
+
+        assertDoesNotThrow(journal::close);
+        // Changes after closing are dropped
+        assertDoesNotThrow(() -> journal.armed("minigame", 2000));
+        assertEquals(Map.of("lobby", 1000L), reload());
+    }
+}
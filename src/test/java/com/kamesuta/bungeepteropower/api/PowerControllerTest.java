@@ -0,0 +1,90 @@
+package com.kamesuta.bungeepteropower.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PowerControllerTest {
+    /**
+     * A power controller that answers status checks with the given function
+     */
+    private static PowerController controller(Function<String, CompletableFuture<PowerStatus>> check) {
+        return new PowerController() {
+            @Override
+            public CompletableFuture<Void> sendPowerSignal(String serverName, String serverId, PowerSignal signalType) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<PowerStatus> checkPowerStatus(String serverName, String serverId) {
+                return check.apply(serverId);
+            }
+        };
+    }
+
+    private static Map<String, String> servers(int count) {
+        Map<String, String> servers = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            servers.put("server" + i, "id" + i);
+        }
+        return servers;
+    }
+
+    @Test
+    void checksManyServersThatCompleteSynchronously() throws Exception {
+        // Each worker must not recurse once per server
+        PowerController controller = controller(id -> CompletableFuture.completedFuture(PowerStatus.RUNNING));
+
+        Map<String, PowerStatus> result = controller.checkPowerStatuses(servers(100000), 2).get(5, TimeUnit.SECONDS);
+        assertEquals(100000, result.size());
+    }
+
+    @Test
+    void leavesOutFailedChecks() throws Exception {
+        PowerController controller = controller(id -> {
+            if (id.equals("id1")) {
+                throw new IllegalStateException("check failed");
+            }
+            if (id.equals("id2")) {
+                return CompletableFuture.failedFuture(new IllegalStateException("check failed"));
+            }
+            return CompletableFuture.supplyAsync(() -> PowerStatus.OFFLINE);
+        });
+
+        Map<String, PowerStatus> result = controller.checkPowerStatuses(servers(10), 3).get(5, TimeUnit.SECONDS);
+        assertEquals(8, result.size());
+        assertFalse(result.containsKey("server1"));
+        assertFalse(result.containsKey("server2"));
+    }
+
+    @Test
+    void limitsConcurrency() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        PowerController controller = controller(id -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                return PowerStatus.RUNNING;
+            });
+        });
+
+        Map<String, PowerStatus> result = controller.checkPowerStatuses(servers(50), 4).get(5, TimeUnit.SECONDS);
+        assertEquals(50, result.size());
+        assertTrue(maxInFlight.get() <= 4, "max in flight was " + maxInFlight.get());
+    }
+}
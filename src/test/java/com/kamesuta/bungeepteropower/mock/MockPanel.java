@@ -0,0 +1,907 @@
+package com.kamesuta.bungeepteropower.mock;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local panel that implements the Pterodactyl client API and the Crafty v2 API used by the power controllers.
+ * Servers move through the power states with a configurable delay,
+ * and latency, errors and rate limits can be injected to test the behaviour of the controllers.
+ * The server websocket of Wings is served on a separate port, and pushes the state changes to the authenticated sockets.
+ */
+public class MockPanel implements AutoCloseable {
+    private static final Pattern PTERODACTYL_POWER = Pattern.compile("^/api/client/servers/([^/]+)/power$");
+    private static final Pattern PTERODACTYL_RESOURCES = Pattern.compile("^/api/client/servers/([^/]+)/resources$");
+    private static final Pattern PTERODACTYL_RESTORE = Pattern.compile("^/api/client/servers/([^/]+)/backups/([^/]+)/restore$");
+    private static final Pattern CRAFTY_ACTION = Pattern.compile("^/api/v2/servers/([^/]+)/action/([^/]+)$");
+    private static final Pattern CRAFTY_STATS = Pattern.compile("^/api/v2/servers/([^/]+)/stats$");
+    private static final Pattern PTERODACTYL_WEBSOCKET = Pattern.compile("^/api/client/servers/([^/]+)/websocket$");
+    private static final Pattern WINGS_WEBSOCKET = Pattern.compile("^/api/servers/([^/]+)/ws$");
+    /**
+     * The GUID appended to the key of a websocket handshake (RFC 6455)
+     */
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * The API key the panel accepts
+     */
+    public static final String API_KEY = "mock-api-key";
+
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService transitionExecutor;
+    private final Map<String, MockServer> servers = new ConcurrentHashMap<>();
+    private final ServerSocket webSocketServer;
+
+    /**
+     * The open websockets
+     */
+    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    /**
+     * The websocket tokens handed out and not expired yet
+     */
+    private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger tokenCount = new AtomicInteger();
+    /**
+     * The times (System.nanoTime) of the websocket handshakes, including the rejected ones
+     */
+    private final List<Long> handshakeTimes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger rejectedHandshakes = new AtomicInteger();
+
+    /**
+     * Response codes to return instead of handling the next requests
+     */
+    private final Queue<Integer> injectedErrors = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of requests received per endpoint (e.g. "POST power")
+     */
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger totalRequests = new AtomicInteger();
+    /**
+     * The client addresses of the HTTP connections, to tell whether connections are reused
+     */
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile long latencyMillis;
+    private volatile long startDelayMillis = 200;
+    private volatile long stopDelayMillis = 200;
+
+    private volatile int rateLimit;
+    private volatile int rateLimitWindowSeconds = 60;
+    private long rateLimitWindowStart;
+    private int rateLimitUsed;
+
+    /**
+     * A server managed by the panel
+     */
+    public static class MockServer {
+        private final String id;
+        private volatile PowerStatus state = PowerStatus.OFFLINE;
+        private volatile String restoredBackup;
+        /**
+         * Incremented on every transition, so that a delayed transition does not override a newer one
+         */
+        private final AtomicInteger generation = new AtomicInteger();
+
+        private MockServer(String id) {
+            this.id = id;
+        }
+
+        public PowerStatus getState() {
+            return state;
+        }
+
+        public String getRestoredBackup() {
+            return restoredBackup;
+        }
+    }
+
+    /**
+     * Start a mock panel on a free local port
+     *
+     * @throws IOException If the server cannot be started
+     */
+    public MockPanel() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        handlerExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "MockPanel-Handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transitionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MockPanel-Transition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlerExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+
+        webSocketServer = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        handlerExecutor.execute(this::acceptWebSockets);
+    }
+
+    /**
+     * Get the base URL of the panel
+     *
+     * @return The base URL (e.g. "http://127.0.0.1:12345/")
+     */
+    public URI getUrl() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/");
+    }
+
+    /**
+     * Add a server to the panel
+     *
+     * @param serverId The server ID
+     * @param state    The initial power state
+     * @return The server
+     */
+    public MockServer addServer(String serverId, PowerStatus state) {
+        MockServer mockServer = new MockServer(serverId);
+        mockServer.state = state;
+        servers.put(serverId, mockServer);
+        return mockServer;
+    }
+
+    /**
+     * Get a server of the panel
+     *
+     * @param serverId The server ID
+     * @return The server, or null if not found
+     */
+    public MockServer getServer(String serverId) {
+        return servers.get(serverId);
+    }
+
+    /**
+     * Delay every response
+     *
+     * @param millis The delay in milliseconds
+     */
+    public void setLatency(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    /**
+     * Set the time it takes for servers to start and stop
+     *
+     * @param startMillis The time to move from STARTING to RUNNING in milliseconds
+     * @param stopMillis  The time to move from STOPPING to OFFLINE in milliseconds
+     */
+    public void setTransitionDelay(long startMillis, long stopMillis) {
+        this.startDelayMillis = startMillis;
+        this.stopDelayMillis = stopMillis;
+    }
+
+    /**
+     * Fail the next requests with the response codes in order
+     *
+     * @param statusCodes The response codes to return
+     */
+    public void injectErrors(int... statusCodes) {
+        for (int statusCode : statusCodes) {
+            injectedErrors.add(statusCode);
+        }
+    }
+
+    /**
+     * Limit the number of requests per window.
+     * The limit is reported with the X-RateLimit headers, and requests over the limit get 429.
+     *
+     * @param limit         The number of requests per window, or 0 to disable
+     * @param windowSeconds The length of the window in seconds
+     */
+    public synchronized void setRateLimit(int limit, int windowSeconds) {
+        this.rateLimit = limit;
+        this.rateLimitWindowSeconds = windowSeconds;
+        this.rateLimitWindowStart = System.currentTimeMillis();
+        this.rateLimitUsed = 0;
+    }
+
+    /**
+     * Get the number of requests received by an endpoint
+     *
+     * @param endpoint The endpoint (e.g. "POST power", "GET resources", "POST restore", "POST start_server", "GET stats"),
+     *                 or the websocket event (e.g. "WS connect", "WS auth", "WS send stats")
+     * @return The number of requests
+     */
+    public int getRequestCount(String endpoint) {
+        AtomicInteger count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Get the number of requests received by the panel
+     *
+     * @return The number of requests
+     */
+    public int getTotalRequests() {
+        return totalRequests.get();
+    }
+
+    /**
+     * Get the number of HTTP connections opened to the panel
+     *
+     * @return The number of connections
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Reject the next websocket handshakes, as if Wings was not reachable
+     *
+     * @param count The number of handshakes to reject
+     */
+    public void rejectWebSockets(int count) {
+        rejectedHandshakes.set(count);
+    }
+
+    /**
+     * Get the times of the websocket handshakes, including the rejected ones
+     *
+     * @return The times (System.nanoTime) in order
+     */
+    public List<Long> getHandshakeTimes() {
+        return new ArrayList<>(handshakeTimes);
+    }
+
+    /**
+     * Get the number of open websockets of a server
+     *
+     * @param serverId The server ID
+     * @return The number of open websockets
+     */
+    public int getWebSocketCount(String serverId) {
+        return (int) sessions.stream().filter(session -> session.serverId.equals(serverId)).count();
+    }
+
+    /**
+     * Send an event to the websockets of a server, as Wings does (e.g. "token expiring")
+     *
+     * @param serverId The server ID
+     * @param event    The event name
+     */
+    public void sendWebSocketEvent(String serverId, String event) {
+        for (WebSocketSession session : sessions) {
+            if (session.serverId.equals(serverId)) {
+                session.sendEvent(event, null);
+            }
+        }
+    }
+
+    /**
+     * Expire all tokens handed out so far, so that authenticating with them fails
+     */
+    public void expireTokens() {
+        tokens.clear();
+    }
+
+    /**
+     * Close the websockets of a server, as Wings does when it restarts
+     *
+     * @param serverId The server ID
+     */
+    public void closeWebSockets(String serverId) {
+        for (WebSocketSession session : sessions) {
+            if (session.serverId.equals(serverId)) {
+                session.close(1001);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        try {
+            webSocketServer.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        sessions.forEach(WebSocketSession::abort);
+        handlerExecutor.shutdownNow();
+        transitionExecutor.shutdownNow();
+    }
+
+    /**
+     * Handle a request
+     *
+     * @param exchange The request
+     * @throws IOException If the response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            totalRequests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress());
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            // Simulate a slow panel
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            // Authentication
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (!("Bearer " + API_KEY).equals(authorization)) {
+                respond(exchange, 401, error("Unauthenticated."));
+                return;
+            }
+
+            // Rate limit
+            if (!acquireRateLimit(exchange)) {
+                respond(exchange, 429, error("Too Many Attempts."));
+                return;
+            }
+
+            // Injected error
+            Integer injected = injectedErrors.poll();
+            if (injected != null) {
+                respond(exchange, injected, error("Injected error."));
+                return;
+            }
+
+            route(exchange, method, path, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle a request to an endpoint
+     *
+     * @param exchange The request
+     * @param method   The request method
+     * @param path     The request path
+     * @param body     The request body
+     * @throws IOException If the response cannot be sent
+     */
+    private void route(HttpExchange exchange, String method, String path, String body) throws IOException {
+        Matcher matcher;
+        if ((matcher = PTERODACTYL_POWER.matcher(path)).matches() && method.equals("POST")) {
+            count("POST power");
+            MockServer mockServer = servers.get(matcher.group(1));
+            if (mockServer == null) {
+                respond(exchange, 404, error("Not Found."));
+                return;
+            }
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+            String signal = json.get("signal").getAsString();
+            switch (signal) {
+                case "start":
+                    start(mockServer);
+                    break;
+                case "stop":
+                    stop(mockServer);
+                    break;
+                default:
+                    respond(exchange, 422, error("Invalid signal."));
+                    return;
+            }
+            respond(exchange, 204, null);
+
+        } else if ((matcher = PTERODACTYL_RESOURCES.matcher(path)).matches() && method.equals("GET")) {
+            count("GET resources");
+            MockServer mockServer = servers.get(matcher.group(1));
+            if (mockServer == null) {
+                respond(exchange, 404, error("Not Found."));
+                return;
+            }
+            respond(exchange, 200, "{\"object\":\"stats\",\"attributes\":{"
+                    + "\"current_state\":\"" + mockServer.state.name().toLowerCase() + "\","
+                    + "\"is_suspended\":false,"
+                    + "\"resources\":{\"memory_bytes\":0,\"cpu_absolute\":0,\"disk_bytes\":0,\"network_rx_bytes\":0,\"network_tx_bytes\":0,\"uptime\":0}}}");
+
+        } else if ((matcher = PTERODACTYL_RESTORE.matcher(path)).matches() && method.equals("POST")) {
+            count("POST restore");
+            MockServer mockServer = servers.get(matcher.group(1));
+            if (mockServer == null) {
+                respond(exchange, 404, error("Not Found."));
+                return;
+            }
+            // Backups can only be restored while the server is offline
+            if (mockServer.state != PowerStatus.OFFLINE) {
+                respond(exchange, 409, error("The server must be stopped before restoring a backup."));
+                return;
+            }
+            mockServer.restoredBackup = matcher.group(2);
+            respond(exchange, 204, null);
+
+        } else if ((matcher = PTERODACTYL_WEBSOCKET.matcher(path)).matches() && method.equals("GET")) {
+            count("GET websocket");
+            if (!servers.containsKey(matcher.group(1))) {
+                respond(exchange, 404, error("Not Found."));
+                return;
+            }
+            String token = "token-" + tokenCount.incrementAndGet();
+            tokens.add(token);
+            String socket = "ws://" + webSocketServer.getInetAddress().getHostAddress() + ":" + webSocketServer.getLocalPort() + "/api/servers/" + matcher.group(1) + "/ws";
+            respond(exchange, 200, "{\"data\":{\"token\":\"" + token + "\",\"socket\":\"" + socket + "\"}}");
+
+        } else if ((matcher = CRAFTY_ACTION.matcher(path)).matches() && method.equals("POST")) {
+            String action = matcher.group(2);
+            count("POST " + action);
+            MockServer mockServer = servers.get(matcher.group(1));
+            if (mockServer == null) {
+                respond(exchange, 404, "{\"status\":\"error\",\"error\":\"NOT_FOUND\"}");
+                return;
+            }
+            switch (action) {
+                case "start_server":
+                    start(mockServer);
+                    break;
+                case "stop_server":
+                    stop(mockServer);
+                    break;
+                default:
+                    respond(exchange, 400, "{\"status\":\"error\",\"error\":\"INVALID_ACTION\"}");
+                    return;
+            }
+            respond(exchange, 200, "{\"status\":\"ok\"}");
+
+        } else if ((matcher = CRAFTY_STATS.matcher(path)).matches() && method.equals("GET")) {
+            count("GET stats");
+            MockServer mockServer = servers.get(matcher.group(1));
+            if (mockServer == null) {
+                respond(exchange, 404, "{\"status\":\"error\",\"error\":\"NOT_FOUND\"}");
+                return;
+            }
+            // Crafty keeps reporting a stopping server as running until its process exits
+            boolean running = mockServer.state == PowerStatus.RUNNING || mockServer.state == PowerStatus.STOPPING;
+            respond(exchange, 200, "{\"status\":\"ok\",\"data\":{"
+                    + "\"server_id\":{\"server_id\":\"" + matcher.group(1) + "\"},"
+                    + "\"running\":" + running + ","
+                    + "\"cpu\":0,\"mem\":\"0MB\",\"online\":0,\"max\":20}}");
+
+        } else {
+            count("unknown");
+            respond(exchange, 404, error("Not Found."));
+        }
+    }
+
+    /**
+     * Start the server (OFFLINE -> STARTING -> RUNNING)
+     *
+     * @param mockServer The server
+     */
+    private void start(MockServer mockServer) {
+        if (mockServer.state == PowerStatus.RUNNING || mockServer.state == PowerStatus.STARTING) {
+            return;
+        }
+        transition(mockServer, PowerStatus.STARTING, PowerStatus.RUNNING, startDelayMillis);
+    }
+
+    /**
+     * Stop the server (RUNNING -> STOPPING -> OFFLINE)
+     *
+     * @param mockServer The server
+     */
+    private void stop(MockServer mockServer) {
+        if (mockServer.state == PowerStatus.OFFLINE || mockServer.state == PowerStatus.STOPPING) {
+            return;
+        }
+        transition(mockServer, PowerStatus.STOPPING, PowerStatus.OFFLINE, stopDelayMillis);
+    }
+
+    /**
+     * Move the server to an intermediate state, and to the final state after a while
+     *
+     * @param mockServer   The server
+     * @param intermediate The intermediate state
+     * @param target       The final state
+     * @param delayMillis  The time until the final state in milliseconds
+     */
+    private void transition(MockServer mockServer, PowerStatus intermediate, PowerStatus target, long delayMillis) {
+        int generation = mockServer.generation.incrementAndGet();
+        setState(mockServer, intermediate);
+        transitionExecutor.schedule(() -> {
+            if (mockServer.generation.get() == generation) {
+                setState(mockServer, target);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Change the state of the server, and push it to the authenticated websockets of the server
+     *
+     * @param mockServer The server
+     * @param state      The new state
+     */
+    private void setState(MockServer mockServer, PowerStatus state) {
+        mockServer.state = state;
+        for (WebSocketSession session : sessions) {
+            if (session.serverId.equals(mockServer.id) && session.authenticated) {
+                session.sendEvent("status", state.name().toLowerCase());
+            }
+        }
+    }
+
+    /**
+     * Accept websocket connections until the panel is closed
+     */
+    private void acceptWebSockets() {
+        while (!webSocketServer.isClosed()) {
+            try {
+                Socket socket = webSocketServer.accept();
+                handlerExecutor.execute(() -> serveWebSocket(socket));
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    /**
+     * Do the websocket handshake, and handle the messages of the client until the socket is closed
+     *
+     * @param socket The accepted socket
+     */
+    private void serveWebSocket(Socket socket) {
+        WebSocketSession session = null;
+        try (Socket ignored = socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+
+            // Read the upgrade request
+            String[] lines = readHeader(in).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            String key = null;
+            for (String line : lines) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            handshakeTimes.add(System.nanoTime());
+            Matcher matcher = WINGS_WEBSOCKET.matcher(requestLine.length > 1 ? requestLine[1] : "");
+            if (key == null || !matcher.matches() || !servers.containsKey(matcher.group(1))
+                    || rejectedHandshakes.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                out.write("HTTP/1.1 403 Forbidden\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            session = new WebSocketSession(matcher.group(1), socket, out);
+            sessions.add(session);
+            count("WS connect");
+
+            // Handle the messages
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    break;
+                }
+                int second = readByte(in);
+                boolean fin = (first & 0x80) != 0;
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                byte[] mask = (second & 0x80) != 0 ? readBytes(in, 4) : null;
+                byte[] payload = readBytes(in, (int) length);
+                if (mask != null) {
+                    for (int i = 0; i < payload.length; i++) {
+                        payload[i] ^= mask[i % 4];
+                    }
+                }
+
+                if (opcode == 0x8) {
+                    // Close
+                    session.close(1000);
+                    break;
+                } else if (opcode == 0x9) {
+                    // Ping
+                    session.sendFrame(0xA, payload);
+                } else if (opcode == 0x1 || opcode == 0x0) {
+                    // Text, possibly fragmented
+                    message.write(payload);
+                    if (fin) {
+                        handleWebSocketMessage(session, message.toString(StandardCharsets.UTF_8));
+                        message.reset();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Disconnected
+        } finally {
+            if (session != null) {
+                sessions.remove(session);
+            }
+        }
+    }
+
+    /**
+     * Handle a message sent by the client, as Wings does
+     *
+     * @param session The websocket
+     * @param text    The JSON message
+     */
+    private void handleWebSocketMessage(WebSocketSession session, String text) {
+        JsonObject root = JsonParser.parseString(text).getAsJsonObject();
+        String event = root.get("event").getAsString();
+        JsonArray args = root.has("args") ? root.getAsJsonArray("args") : new JsonArray();
+        String arg = args.size() > 0 && !args.get(0).isJsonNull() ? args.get(0).getAsString() : null;
+        count("WS " + event);
+
+        switch (event) {
+            case "auth":
+                if (arg == null || !tokens.contains(arg)) {
+                    session.sendEvent("jwt error", "invalid token");
+                    return;
+                }
+                session.authenticated = true;
+                session.sendEvent("auth success", null);
+                break;
+            case "send stats":
+                if (!session.authenticated) {
+                    return;
+                }
+                MockServer mockServer = servers.get(session.serverId);
+                JsonObject stats = new JsonObject();
+                stats.addProperty("memory_bytes", 0);
+                stats.addProperty("cpu_absolute", 0);
+                stats.addProperty("state", mockServer.state.name().toLowerCase());
+                session.sendEvent("stats", stats.toString());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A websocket opened by a client
+     */
+    private static class WebSocketSession {
+        private final String serverId;
+        private final Socket socket;
+        private final OutputStream out;
+        private volatile boolean authenticated;
+
+        private WebSocketSession(String serverId, Socket socket, OutputStream out) {
+            this.serverId = serverId;
+            this.socket = socket;
+            this.out = out;
+        }
+
+        /**
+         * Send an event in the format of Wings ({"event": ..., "args": [...]})
+         *
+         * @param event The event name
+         * @param arg   The argument, or null for no arguments
+         */
+        private void sendEvent(String event, String arg) {
+            JsonObject message = new JsonObject();
+            message.addProperty("event", event);
+            if (arg != null) {
+                JsonArray args = new JsonArray();
+                args.add(arg);
+                message.add("args", args);
+            }
+            try {
+                sendFrame(0x1, message.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                abort();
+            }
+        }
+
+        /**
+         * Send a close frame
+         *
+         * @param code The close code
+         */
+        private void close(int code) {
+            try {
+                sendFrame(0x8, new byte[]{(byte) (code >> 8), (byte) code});
+            } catch (IOException e) {
+                abort();
+            }
+        }
+
+        /**
+         * Close the connection without a close frame
+         */
+        private void abort() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+
+        /**
+         * Send an unmasked frame
+         *
+         * @param opcode  The opcode
+         * @param payload The payload
+         * @throws IOException If the frame cannot be sent
+         */
+        private synchronized void sendFrame(int opcode, byte[] payload) throws IOException {
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else {
+                out.write(126);
+                out.write(payload.length >> 8);
+                out.write(payload.length);
+            }
+            out.write(payload);
+            out.flush();
+        }
+    }
+
+    /**
+     * Read the header of an HTTP request
+     *
+     * @param in The input
+     * @return The header without the final empty line
+     * @throws IOException If the connection is closed before the end of the header
+     */
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = readByte(in);
+            header.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        String text = header.toString(StandardCharsets.US_ASCII);
+        return text.substring(0, text.length() - 4);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    /**
+     * Compute the Sec-WebSocket-Accept value for the key of the client
+     *
+     * @param key The Sec-WebSocket-Key header
+     * @return The Sec-WebSocket-Accept header
+     */
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Count a request against the rate limit and add the rate limit headers
+     *
+     * @param exchange The request
+     * @return true if the request is allowed
+     */
+    private synchronized boolean acquireRateLimit(HttpExchange exchange) {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long windowMillis = TimeUnit.SECONDS.toMillis(rateLimitWindowSeconds);
+        if (now - rateLimitWindowStart >= windowMillis) {
+            rateLimitWindowStart = now;
+            rateLimitUsed = 0;
+        }
+        boolean allowed = rateLimitUsed < rateLimit;
+        if (allowed) {
+            rateLimitUsed++;
+        }
+        long reset = (rateLimitWindowStart + windowMillis) / 1000;
+        exchange.getResponseHeaders().add("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().add("X-RateLimit-Remaining", String.valueOf(rateLimit - rateLimitUsed));
+        exchange.getResponseHeaders().add("X-RateLimit-Reset", String.valueOf(reset));
+        if (!allowed) {
+            exchange.getResponseHeaders().add("Retry-After", String.valueOf(Math.max(1, reset - now / 1000)));
+        }
+        return allowed;
+    }
+
+    /**
+     * Count a request to an endpoint
+     *
+     * @param endpoint The endpoint
+     */
+    private void count(String endpoint) {
+        requestCounts.computeIfAbsent(endpoint, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Create a Pterodactyl style error body
+     *
+     * @param detail The error message
+     * @return The JSON body
+     */
+    private static String error(String detail) {
+        return "{\"errors\":[{\"code\":\"MockPanelException\",\"status\":\"error\",\"detail\":\"" + detail + "\"}]}";
+    }
+
+    /**
+     * Send a response
+     *
+     * @param exchange   The request
+     * @param statusCode The response code
+     * @param body       The JSON body, or null for no body
+     * @throws IOException If the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(statusCode, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.kamesuta.bungeepteropower.mock;
+
+import com.kamesuta.bungeepteropower.BungeePteroPower;
+import com.kamesuta.bungeepteropower.CapacityManager;
+import com.kamesuta.bungeepteropower.Config;
+import com.kamesuta.bungeepteropower.DelayManager;
+import com.kamesuta.bungeepteropower.GroupAutoscaler;
+import com.kamesuta.bungeepteropower.Messages;
+import com.kamesuta.bungeepteropower.PermissionCache;
+import com.kamesuta.bungeepteropower.Prewarmer;
+import com.kamesuta.bungeepteropower.ReadinessWaiter;
+import com.kamesuta.bungeepteropower.Reconciler;
+import com.kamesuta.bungeepteropower.ServerController;
+import com.kamesuta.bungeepteropower.ServerLifecycle;
+import com.kamesuta.bungeepteropower.StandbyPool;
+import com.kamesuta.bungeepteropower.StartLimiter;
+import com.kamesuta.bungeepteropower.Statistics;
+import com.kamesuta.bungeepteropower.StatusCache;
+import com.kamesuta.bungeepteropower.StatusSweeper;
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.power.CraftyController;
+import com.kamesuta.bungeepteropower.power.PterodactylController;
+import net.md_5.bungee.api.Callback;
+import net.md_5.bungee.api.CommandSender;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.ServerPing;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.plugin.Plugin;
+import net.md_5.bungee.api.scheduler.ScheduledTask;
+import net.md_5.bungee.api.scheduler.TaskScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the plugin outside of the proxy.
+ * The proxy is mocked, and its scheduler runs tasks on a local executor.
+ */
+public class TestPlugin implements AutoCloseable {
+    /**
+     * The executor of the current plugin instance
+     */
+    private static volatile ScheduledThreadPoolExecutor currentScheduler;
+    /**
+     * The mocked proxy, shared by all instances because {@link ProxyServer#setInstance(ProxyServer)} can only be called once
+     */
+    private static final ProxyServer proxy = createProxy();
+
+    /**
+     * The plugin instance (also set to {@link BungeePteroPower#plugin})
+     */
+    public final BungeePteroPower plugin;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Create a plugin that uses the mock panel
+     *
+     * @param dataFolder          The data folder of the plugin
+     * @param panel               The mock panel, or null if no request is sent
+     * @param powerControllerType The power controller to use ("pterodactyl" or "crafty")
+     * @throws IOException If the config cannot be written
+     */
+    public TestPlugin(File dataFolder, MockPanel panel, String powerControllerType) throws IOException {
+        this(dataFolder, panel, powerControllerType, "");
+    }
+
+    /**
+     * Create a plugin that uses the mock panel with additional settings
+     *
+     * @param dataFolder          The data folder of the plugin
+     * @param panel               The mock panel, or null if no request is sent
+     * @param powerControllerType The power controller to use ("pterodactyl" or "crafty")
+     * @param settings            Additional config.yml settings. Top-level sections are added to the default sections, and other top-level keys replace the default values
+     * @throws IOException If the config cannot be written
+     */
+    public TestPlugin(File dataFolder, MockPanel panel, String powerControllerType, String settings) throws IOException {
+        Files.writeString(new File(dataFolder, "config.yml").toPath(), mergeConfig(createConfig(panel, powerControllerType), settings), StandardCharsets.UTF_8);
+
+        // Run scheduled tasks on a local executor
+        scheduler = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "TestPlugin-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        currentScheduler = scheduler;
+
+        // The plugin itself only provides the proxy, the data folder and the resources
+        plugin = mock(BungeePteroPower.class);
+        when(plugin.getProxy()).thenReturn(proxy);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getResourceAsStream(anyString())).thenAnswer(invocation ->
+                TestPlugin.class.getClassLoader().getResourceAsStream(invocation.<String>getArgument(0)));
+        BungeePteroPower.plugin = plugin;
+        BungeePteroPower.logger = Logger.getLogger("BungeePteroPower");
+        // Forget the servers registered by the previous instance
+        when(proxy.getServerInfo(anyString())).thenReturn(null);
+
+        // Fields that are initialized by the constructor of the plugin
+        setField("lifecycle", new ServerLifecycle());
+        setField("prewarmer", new Prewarmer());
+        setField("standby", new StandbyPool());
+        setField("autoscaler", new GroupAutoscaler());
+        setField("startLimiter", new StartLimiter());
+        setField("capacity", new CapacityManager());
+        setField("statusCache", new StatusCache());
+        setField("statusSweeper", new StatusSweeper());
+        setField("permissionCache", new PermissionCache());
+        setField("reconciler", new Reconciler());
+        setField("readiness", new ReadinessWaiter());
+        setField("panelControllers", new ConcurrentHashMap<String, PowerController>());
+        setField("retryingControllers", new ConcurrentHashMap<PowerController, PowerController>());
+
+        plugin.statistics = new Statistics();
+        plugin.config = new Config();
+        plugin.fallbackMessages = Messages.loadFromResource("en", null);
+        plugin.messages = plugin.fallbackMessages;
+        plugin.delay = new DelayManager();
+        plugin.powerControllers = new ConcurrentHashMap<>();
+        plugin.powerControllers.put("pterodactyl", new PterodactylController());
+        plugin.powerControllers.put("crafty", new CraftyController());
+    }
+
+    /**
+     * Create the mocked proxy and register it as the proxy instance
+     *
+     * @return The mocked proxy
+     */
+    private static ProxyServer createProxy() {
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+        when(taskScheduler.schedule(any(), any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            TestTask task = new TestTask(invocation.getArgument(0), invocation.getArgument(1));
+            task.future = currentScheduler.schedule(task.task, invocation.<Long>getArgument(2), invocation.<TimeUnit>getArgument(3));
+            return task;
+        });
+        when(taskScheduler.schedule(any(), any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            TestTask task = new TestTask(invocation.getArgument(0), invocation.getArgument(1));
+            task.future = currentScheduler.scheduleAtFixedRate(task.task, invocation.<Long>getArgument(2), invocation.<Long>getArgument(3), invocation.<TimeUnit>getArgument(4));
+            return task;
+        });
+
+        ProxyServer proxy = mock(ProxyServer.class);
+        when(proxy.getScheduler()).thenReturn(taskScheduler);
+        when(proxy.getConsole()).thenReturn(mock(CommandSender.class));
+        when(proxy.getLogger()).thenReturn(Logger.getLogger("Proxy"));
+        ProxyServer.setInstance(proxy);
+        return proxy;
+    }
+
+    /**
+     * Register a server on the mocked proxy, replacing the server with the same name
+     *
+     * @param name     The server name
+     * @param players  The number of players on the server
+     * @param pingable Whether the server answers pings
+     * @return The mocked server info
+     */
+    public ServerInfo addServerInfo(String name, int players, BooleanSupplier pingable) {
+        List<ProxiedPlayer> playerList = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            playerList.add(mock(ProxiedPlayer.class));
+        }
+        ServerInfo serverInfo = mock(ServerInfo.class);
+        when(serverInfo.getName()).thenReturn(name);
+        when(serverInfo.getPlayers()).thenReturn(playerList);
+        doAnswer(invocation -> {
+            Callback<ServerPing> callback = invocation.getArgument(0);
+            if (pingable.getAsBoolean()) {
+                callback.done(new ServerPing(), null);
+            } else {
+                callback.done(null, new IOException("Connection refused"));
+            }
+            return null;
+        }).when(serverInfo).ping(any());
+        when(proxy.getServerInfo(name)).thenReturn(serverInfo);
+        return serverInfo;
+    }
+
+    /**
+     * A task scheduled on the local executor
+     */
+    private static class TestTask implements ScheduledTask {
+        private static final AtomicInteger ids = new AtomicInteger();
+        private final int id = ids.incrementAndGet();
+        private final Plugin owner;
+        private final Runnable task;
+        private volatile ScheduledFuture<?> future;
+
+        private TestTask(Plugin owner, Runnable task) {
+            this.owner = owner;
+            this.task = task;
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public Plugin getOwner() {
+            return owner;
+        }
+
+        @Override
+        public Runnable getTask() {
+            return task;
+        }
+
+        @Override
+        public void cancel() {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Set a final field of the plugin, since the mocked plugin is created without calling the constructor
+     *
+     * @param name  The field name
+     * @param value The value
+     */
+    private void setField(String name, Object value) {
+        try {
+            Field field = BungeePteroPower.class.getField(name);
+            field.setAccessible(true);
+            field.set(plugin, value);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a config that points to the mock panel
+     *
+     * @param panel               The mock panel, or null if the panel is not used
+     * @param powerControllerType The power controller to use
+     * @return The config.yml
+     */
+    private static String createConfig(MockPanel panel, String powerControllerType) {
+        String url = panel == null ? "http://127.0.0.1:1/" : panel.getUrl().toString();
+        return "version: 1\n"
+                + "language: en\n"
+                + "startTimeout: 0\n"
+                + "powerControllerType: \"" + powerControllerType + "\"\n"
+                + "serverStatusCheckMethod: \"panel\"\n"
+                + "restoreOnStop:\n"
+                + "  timeout: 5\n"
+                + "  pingInterval: 1\n"
+                + "startupJoin:\n"
+                + "  timeout: 3\n"
+                + "  pingInterval: 1\n"
+                + "  joinDelay: 0\n"
+                + "http:\n"
+                + "  connectTimeout: 2\n"
+                + "  requestTimeout: 2\n"
+                + "  rateLimit:\n"
+                + "    requestsPerMinute: 6000\n"
+                + "    burst: 100\n"
+                + "  circuitBreaker:\n"
+                + "    failureThreshold: 100\n"
+                + "retry:\n"
+                + "  maxAttempts: 3\n"
+                + "  initialDelay: 0.05\n"
+                + "  maxDelay: 0.2\n"
+                + "pterodactyl:\n"
+                + "  url: \"" + url + "\"\n"
+                + "  apiKey: \"" + MockPanel.API_KEY + "\"\n"
+                + "crafty:\n"
+                + "  url: \"" + url + "\"\n"
+                + "  apiKey: \"" + MockPanel.API_KEY + "\"\n"
+                + "servers:\n"
+                + "  lobby:\n"
+                + "    id: \"lobby01\"\n"
+                + "    timeout: 30\n"
+                + "  minigame:\n"
+                + "    id: \"minigame01\"\n"
+                + "    timeout: 30\n"
+                + "    backupId: \"backup-0001\"\n";
+    }
+
+    /**
+     * Merge additional settings into a config by top-level key
+     *
+     * @param config   The default config.yml
+     * @param settings The additional settings
+     * @return The merged config.yml
+     */
+    private static String mergeConfig(String config, String settings) {
+        Map<String, StringBuilder> blocks = splitTopLevel(config);
+        splitTopLevel(settings).forEach((key, block) -> {
+            StringBuilder existing = blocks.get(key);
+            String header = block.substring(0, block.indexOf("\n") + 1);
+            if (existing != null && header.trim().endsWith(":") && existing.toString().startsWith(header)) {
+                // Both are sections, add the child settings to the default section
+                existing.append(block.substring(header.length()));
+            } else {
+                blocks.put(key, block);
+            }
+        });
+        return String.join("", blocks.values());
+    }
+
+    /**
+     * Split a config into blocks that start with a top-level key
+     *
+     * @param config The config.yml
+     * @return The blocks by top-level key, in order
+     */
+    private static Map<String, StringBuilder> splitTopLevel(String config) {
+        Map<String, StringBuilder> blocks = new LinkedHashMap<>();
+        StringBuilder current = null;
+        for (String line : config.split("\n")) {
+            if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0))) {
+                current = new StringBuilder();
+                blocks.put(line.substring(0, line.indexOf(':')), current);
+            }
+            if (current != null) {
+                current.append(line).append("\n");
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Get the root cause of a failed future
+     *
+     * @param error The exception thrown by the future
+     * @return The exception without the CompletionException and ExecutionException wrappers
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Wait until the condition is met
+     *
+     * @param condition     The condition
+     * @param timeoutMillis The maximum time to wait
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public static void awaitTrue(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition was not met within " + timeoutMillis + " ms");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Get a power controller without the retry wrapper
+     *
+     * @param type The power controller type
+     * @return The power controller
+     */
+    public PowerController getController(String type) {
+        return plugin.powerControllers.get(type);
+    }
+
+    @Override
+    public void close() {
+        ServerController.clearPendingStarts(true);
+        plugin.delay.close();
+        plugin.powerControllers.values().forEach(PowerController::close);
+        scheduler.shutdownNow();
+    }
+}
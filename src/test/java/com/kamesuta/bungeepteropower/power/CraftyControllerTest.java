@@ -0,0 +1,112 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.ServerController;
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.ResponseCodeException;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CraftyControllerTest {
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private PowerController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        testPlugin = new TestPlugin(dataFolder, panel, "crafty");
+        controller = testPlugin.getController("crafty");
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    @Test
+    void startsServer() throws Exception {
+        MockPanel.MockServer server = panel.addServer("lobby01", PowerStatus.OFFLINE);
+
+        controller.sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.RUNNING, server.getState());
+        assertEquals(1, panel.getRequestCount("POST start_server"));
+    }
+
+    @Test
+    void stopsServer() throws Exception {
+        MockPanel.MockServer server = panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        controller.sendPowerSignal("lobby", "lobby01", PowerSignal.STOP).get(5, TimeUnit.SECONDS);
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.OFFLINE).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.OFFLINE, server.getState());
+        assertEquals(1, panel.getRequestCount("POST stop_server"));
+    }
+
+    @Test
+    void reportsOnlyRunningOrOffline() throws Exception {
+        panel.addServer("lobby01", PowerStatus.STARTING);
+
+        // Crafty does not report intermediate states
+        assertEquals(PowerStatus.OFFLINE, controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failsOnStatusCheckError() {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        panel.injectErrors(500);
+
+        // A running server is not reported as offline just because the panel failed to answer
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+        ResponseCodeException cause = assertInstanceOf(ResponseCodeException.class, TestPlugin.unwrap(error));
+        assertEquals(500, cause.getStatusCode());
+    }
+
+    @Test
+    void reusesConnectionForStatusChecks() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(PowerStatus.RUNNING, controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+        }
+        // The body is read to the end, so the connection goes back to the pool
+        assertEquals(1, panel.getConnectionCount());
+    }
+
+    @Test
+    void failsOnErrorResponse() {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.injectErrors(403);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> controller.sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS));
+        ResponseCodeException cause = assertInstanceOf(ResponseCodeException.class, TestPlugin.unwrap(error));
+        assertEquals(403, cause.getStatusCode());
+    }
+
+    @Test
+    void doesNotSupportRestore() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> controller.sendRestoreSignal("minigame", "minigame01", "backup-0001"));
+    }
+}
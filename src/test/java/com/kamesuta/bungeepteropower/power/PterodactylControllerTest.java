@@ -0,0 +1,187 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.ServerController;
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.ResponseCodeException;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.BungeePteroPower.logger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PterodactylControllerTest {
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private PowerController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl");
+        controller = testPlugin.getController("pterodactyl");
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    @Test
+    void startsServer() throws Exception {
+        MockPanel.MockServer server = panel.addServer("lobby01", PowerStatus.OFFLINE);
+
+        controller.sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.STARTING, controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.RUNNING).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.RUNNING, server.getState());
+        assertEquals(1, panel.getRequestCount("POST power"));
+    }
+
+    @Test
+    void stopsServer() throws Exception {
+        MockPanel.MockServer server = panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        controller.sendPowerSignal("lobby", "lobby01", PowerSignal.STOP).get(5, TimeUnit.SECONDS);
+        ServerController.waitUntil("lobby", "lobby01", PowerStatus.OFFLINE).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.OFFLINE, server.getState());
+    }
+
+    @Test
+    void restoresBackupAfterStop() throws Exception {
+        MockPanel.MockServer server = panel.addServer("minigame01", PowerStatus.RUNNING);
+
+        controller.sendRestoreSignal("minigame", "minigame01", "backup-0001").get(10, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.OFFLINE, server.getState());
+        assertEquals("backup-0001", server.getRestoredBackup());
+        assertEquals(1, panel.getRequestCount("POST restore"));
+    }
+
+    @Test
+    void restoresBackupOtherThanConfigured() throws Exception {
+        MockPanel.MockServer server = panel.addServer("minigame01", PowerStatus.OFFLINE);
+
+        controller.sendRestoreSignal("minigame", "minigame01", "backup-0002").get(10, TimeUnit.SECONDS);
+        assertEquals("backup-0002", server.getRestoredBackup());
+    }
+
+    @Test
+    void reusesConnectionForStatusChecks() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(PowerStatus.RUNNING, controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+        }
+        // The body is read to the end, so the connection goes back to the pool
+        assertEquals(1, panel.getConnectionCount());
+    }
+
+    @Test
+    void failsOnErrorResponse() {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.injectErrors(500);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> controller.sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS));
+        ResponseCodeException cause = assertInstanceOf(ResponseCodeException.class, TestPlugin.unwrap(error));
+        assertEquals(500, cause.getStatusCode());
+    }
+
+    @Test
+    void failsOnUnknownServer() {
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> controller.checkPowerStatus("unknown", "unknown01").get(5, TimeUnit.SECONDS));
+        ResponseCodeException cause = assertInstanceOf(ResponseCodeException.class, TestPlugin.unwrap(error));
+        assertEquals(404, cause.getStatusCode());
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        MockPanel.MockServer server = panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.injectErrors(503, 502);
+
+        testPlugin.plugin.config.getPowerController("lobby")
+                .sendPowerSignal("lobby", "lobby01", PowerSignal.START)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(3, panel.getTotalRequests());
+        assertEquals(PowerStatus.STARTING, server.getState());
+    }
+
+    @Test
+    void reusesRetryWrapper() {
+        PowerController wrapped = testPlugin.plugin.config.getPowerController("lobby");
+        assertSame(wrapped, testPlugin.plugin.config.getPowerController("minigame"));
+        assertNotSame(controller, wrapped);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        panel.injectErrors(422);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> testPlugin.plugin.config.getPowerController("lobby")
+                        .sendPowerSignal("lobby", "lobby01", PowerSignal.START)
+                        .get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ResponseCodeException.class, TestPlugin.unwrap(error));
+        assertEquals(1, panel.getTotalRequests());
+    }
+
+    @Test
+    void stopsSendingWhenRateLimitIsUsedUp() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        panel.setRateLimit(3, 60);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PowerStatus.RUNNING, controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+        }
+
+        // The panel said no requests are remaining until the window resets
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(PanelUnavailableException.class, TestPlugin.unwrap(error));
+        assertEquals(3, panel.getTotalRequests());
+    }
+
+    @Test
+    void measuresStatusCheckLatency() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        panel.setLatency(20);
+
+        int count = 30;
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            controller.checkPowerStatus("lobby", "lobby01").get(5, TimeUnit.SECONDS);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        long p50 = TimeUnit.NANOSECONDS.toMillis(latencies[count / 2]);
+        long p95 = TimeUnit.NANOSECONDS.toMillis(latencies[count * 95 / 100]);
+        long max = TimeUnit.NANOSECONDS.toMillis(latencies[count - 1]);
+        logger.info(String.format("Status check latency with 20 ms panel latency: p50=%d ms, p95=%d ms, max=%d ms", p50, p95, max));
+        assertTrue(p50 >= 20);
+    }
+}
@@ -0,0 +1,155 @@
+package com.kamesuta.bungeepteropower.power;
+
+import com.kamesuta.bungeepteropower.api.PowerController;
+import com.kamesuta.bungeepteropower.api.PowerSignal;
+import com.kamesuta.bungeepteropower.api.PowerStatus;
+import com.kamesuta.bungeepteropower.api.StatusSubscription;
+import com.kamesuta.bungeepteropower.mock.MockPanel;
+import com.kamesuta.bungeepteropower.mock.TestPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.kamesuta.bungeepteropower.mock.TestPlugin.awaitTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PterodactylStatusStreamTest {
+    @TempDir
+    File dataFolder;
+
+    private MockPanel panel;
+    private TestPlugin testPlugin;
+    private PowerController controller;
+    private final BlockingQueue<PowerStatus> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        panel = new MockPanel();
+        testPlugin = new TestPlugin(dataFolder, panel, "pterodactyl", "pterodactyl:\n  liveStatus: true\n");
+        controller = testPlugin.getController("pterodactyl");
+    }
+
+    @AfterEach
+    void tearDown() {
+        testPlugin.close();
+        panel.close();
+    }
+
+    /**
+     * Subscribe to the lobby server and wait until the websocket is authenticated
+     *
+     * @return The subscription
+     */
+    private StatusSubscription subscribe() throws InterruptedException {
+        StatusSubscription subscription = controller.subscribePowerStatus("lobby", "lobby01", received::add);
+        assertNotNull(subscription);
+        awaitTrue(subscription::isLive, 5000);
+        return subscription;
+    }
+
+    @Test
+    void authenticatesAndReceivesCurrentState() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+
+        subscribe();
+        // The current state is asked with "send stats" right after "auth success"
+        assertEquals(PowerStatus.RUNNING, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, panel.getRequestCount("WS auth"));
+        assertEquals(1, panel.getRequestCount("WS send stats"));
+    }
+
+    @Test
+    void receivesStatusChanges() throws Exception {
+        panel.addServer("lobby01", PowerStatus.OFFLINE);
+        subscribe();
+        assertEquals(PowerStatus.OFFLINE, received.poll(5, TimeUnit.SECONDS));
+
+        controller.sendPowerSignal("lobby", "lobby01", PowerSignal.START).get(5, TimeUnit.SECONDS);
+        assertEquals(PowerStatus.STARTING, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(PowerStatus.RUNNING, received.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void reauthenticatesWhenTokenIsExpiring() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        StatusSubscription subscription = subscribe();
+
+        panel.sendWebSocketEvent("lobby01", "token expiring");
+        awaitTrue(() -> panel.getRequestCount("WS auth") == 2, 5000);
+
+        // A new token is fetched and sent on the same connection
+        assertEquals(2, panel.getRequestCount("GET websocket"));
+        assertEquals(1, panel.getRequestCount("WS connect"));
+        assertEquals(0, panel.getRequestCount("WS jwt error"));
+        assertTrue(subscription.isLive());
+    }
+
+    @Test
+    void reconnectsWhenTokenExpired() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        StatusSubscription subscription = subscribe();
+        assertEquals(PowerStatus.RUNNING, received.poll(5, TimeUnit.SECONDS));
+
+        panel.expireTokens();
+        panel.sendWebSocketEvent("lobby01", "token expired");
+        awaitTrue(() -> !subscription.isLive(), 5000);
+
+        // A new connection is opened with a new token, and the current state is asked again
+        awaitTrue(subscription::isLive, 5000);
+        assertEquals(2, panel.getRequestCount("WS connect"));
+        assertEquals(2, panel.getRequestCount("GET websocket"));
+        assertEquals(PowerStatus.RUNNING, received.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void reconnectsWhenWingsClosesTheSocket() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        StatusSubscription subscription = subscribe();
+
+        panel.closeWebSockets("lobby01");
+        awaitTrue(() -> panel.getRequestCount("WS connect") == 2, 5000);
+        awaitTrue(subscription::isLive, 5000);
+        assertEquals(1, panel.getWebSocketCount("lobby01"));
+    }
+
+    @Test
+    void backsOffBetweenReconnects() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        panel.rejectWebSockets(2);
+
+        StatusSubscription subscription = controller.subscribePowerStatus("lobby", "lobby01", received::add);
+        assertNotNull(subscription);
+        assertFalse(subscription.isLive());
+        awaitTrue(subscription::isLive, 10000);
+
+        // Rejected, rejected after 1 second, accepted after 2 more seconds
+        List<Long> handshakes = panel.getHandshakeTimes();
+        assertEquals(3, handshakes.size());
+        long firstDelay = TimeUnit.NANOSECONDS.toMillis(handshakes.get(1) - handshakes.get(0));
+        long secondDelay = TimeUnit.NANOSECONDS.toMillis(handshakes.get(2) - handshakes.get(1));
+        assertTrue(firstDelay >= 900, "first delay was " + firstDelay + " ms");
+        assertTrue(secondDelay >= 1900, "second delay was " + secondDelay + " ms");
+    }
+
+    @Test
+    void closesWebSocketWhenUnsubscribed() throws Exception {
+        panel.addServer("lobby01", PowerStatus.RUNNING);
+        StatusSubscription subscription = subscribe();
+        assertEquals(1, panel.getWebSocketCount("lobby01"));
+
+        subscription.close();
+        awaitTrue(() -> panel.getWebSocketCount("lobby01") == 0, 5000);
+        assertFalse(subscription.isLive());
+    }
+}